@@ -7,13 +7,20 @@ import CCGInduction.experiments.Training;
 import CCGInduction.grammar.Normal_Form;
 import CCGInduction.utils.Math.Log;
 import CCGInduction.ccg.AUTOConversion;
+import CCGInduction.ccg.CategoryProjection;
 import CCGInduction.data.Tagset.TAG_TYPE;
 import CCGInduction.parser.AUTO_TYPE;
 import CCGInduction.utils.Logger;
 import CCGInduction.utils.TextFile;
 
 import java.io.*;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 
 /**
  * @author bisk1 Set of configuration variables read from mandatory Config.txt
@@ -57,6 +64,46 @@ public strictfp final class Configuration implements Serializable {
    * Allow for both  (X/X)\X  and  (X\X)/X
    */
   public static boolean allowXbXbX = false;
+  /**
+   * Decide which category pairs combine before parsing instead of inside
+   * CYK.  Rules are still only created for the pairs CYK uses
+   */
+  public static boolean precomputeCombinations = true;
+  /**
+   * Parse sentences with identical tokens and constraints once, weighting the
+   * chart by its multiplicity ( not compatible with RemapTags )
+   */
+  public static boolean deduplicateCharts = false;
+  /**
+   * Binary cells kept for reuse across charts with identical spans ( 0 = off )
+   */
+  public static int spanMemoSize = 0;
+  /**
+   * Run the training E-step in real space with power-of-two scaling instead
+   * of log space
+   */
+  public static boolean scaledInsideOutside = false;
+  /**
+   * Count charts holding a single derivation ( e.g. gold AUTO parses )
+   * directly from the tree instead of with inside-outside
+   */
+  public static boolean derivationCounts = true;
+  /**
+   * Keep lexical categories within beta of the best ( 0 = off )
+   */
+  public static double lexicalBeta = 0.0;
+  /**
+   * Keep only the k most probable lexical categories per token ( 0 = off )
+   */
+  public static int lexicalTopK = 0;
+  /**
+   * Category projections to prune test charts with, coarsest first ( empty = off )
+   */
+  public static CategoryProjection[] coarseToFine = new CategoryProjection[0];
+  /**
+   * Posterior below which a coarse label is pruned from a span
+   */
+  public static double coarseToFineThreshold = 1e-6;
 
   // // Grammar Induction ////
   /**
@@ -103,6 +150,15 @@ public strictfp final class Configuration implements Serializable {
    * experiment
    */
   public static Action[] trainingRegimen = new Action[] { Action.I, Action.I, Action.B1ModTR, Action.Test };
+  /**
+   * Settings compared by the Sweep action.  Settings are separated by ';'
+   * and each is a space separated list of var=val overrides
+   */
+  public static String[] sweep = new String[0];
+  /**
+   * Operations performed for each sweep setting
+   */
+  public static Action[] sweepRegimen = new Action[] { Action.IO, Action.Test };
   /**
    * Specifies which style of experiment is being run
    */
@@ -119,6 +175,26 @@ public strictfp final class Configuration implements Serializable {
    * EM/BW convergence threshold
    */
   public static double threshold = 0.001; // EM/SGD Convergence threshold
+  /**
+   * Charts per update for stepwise ( online ) EM ( 0 = batch EM )
+   */
+  public static int stepwiseBatchSize = 0;
+  /**
+   * Step size decay for stepwise EM: eta_k = (k+2)^-stepwiseAlpha, 0.5 < alpha <= 1
+   */
+  public static double stepwiseAlpha = 0.7;
+  /**
+   * Freeze charts whose likelihood changes by less than this ( relative ) between EM iterations ( 0 = off )
+   */
+  public static double freezeThreshold = 0.0;
+  /**
+   * Recompute frozen charts every n EM iterations
+   */
+  public static int freezeInterval = 5;
+  /**
+   * Recompute frozen charts while the corpus likelihood changes by more than this ( relative )
+   */
+  public static double freezeBound = 0.01;
   /**
    * Used instead of zeros for small values
    */
@@ -141,6 +217,20 @@ public strictfp final class Configuration implements Serializable {
    * Clusters for HMM
    */
   public static int NumClusters = 45;
+  /**
+   * Randomly initialized HMMs to train concurrently, keeping the most likely.
+   * Cannot be combined with LoadLexicon
+   */
+  public static int hmmRestarts = 1;
+  /**
+   * Clusters to start HMM split-merge training from ( 0 = train NumClusters directly ).
+   * Cannot be combined with hmmRestarts
+   */
+  public static int hmmSplitStart = 0;
+  /**
+   * Fraction of HMM cluster splits merged back after each split
+   */
+  public static double hmmMergeFraction = 0.5;
 
   // // TRAINING DATA ////
   /**
@@ -210,6 +300,15 @@ public strictfp final class Configuration implements Serializable {
    */
   public static int longestTestSentence = 200;
   public static int testK = 1;
+  /**
+   * Flat formats ( AUTO, PARG, CONLL ) of the viterbi parse to write next to
+   * the JSON test output
+   */
+  public static String[] testOutput = new String[0];
+  /**
+   * Test parses buffered for in-order writing before parsing threads block
+   */
+  public static int testWriterBuffer = 4096;
 
   // // SYSTEM ////
   /**
@@ -217,6 +316,21 @@ public strictfp final class Configuration implements Serializable {
    */
   public static int threadCount = Math.min(100, Runtime.getRuntime().availableProcessors());
 
+  /**
+   * Record hot-path metrics and write them per action
+   */
+  public static boolean metrics = false;
+
+  /**
+   * Directory for a disk-backed chart store.  Training data is streamed and
+   * parsed charts are kept on disk rather than in memory ( null = in memory )
+   */
+  public static String chartStore = null;
+  /**
+   * Number of charts written to/read from the chart store at a time
+   */
+  public static int miniBatchSize = 256;
+
   /**
    * Whether to print all intermediate model files
    */
@@ -234,7 +348,7 @@ public strictfp final class Configuration implements Serializable {
 
   ////  AUTO Conversion script ////
   public static String AUTOFileToConvert;
-  public static AUTOConversion ConvertAUTO = AUTOConversion.TEX;
+  public static AUTOConversion[] ConvertAUTO = new AUTOConversion[] {AUTOConversion.TEX};
 
   //// Special cases ////
   public static String typeChangingRules;
@@ -246,7 +360,7 @@ public strictfp final class Configuration implements Serializable {
    * @throws Exception
    */
   public Configuration(String[] cmdLine) throws Exception {
-    this(cmdLine[0]);
+    read(cmdLine[0]);
     if (cmdLine.length > 1) {
       String[] split;
       for (String arg : cmdLine) {
@@ -256,6 +370,7 @@ public strictfp final class Configuration implements Serializable {
         }
       }
     }
+    validate();
   }
 
   /**
@@ -264,6 +379,16 @@ public strictfp final class Configuration implements Serializable {
    * @param file Configuration file
    */
   public Configuration(String file) {
+    read(file);
+    validate();
+  }
+
+  /**
+   * Read parameters from file. Ignore comments (#)
+   *
+   * @param file Configuration file
+   */
+  private static void read(String file) {
     try {
       // Read in Documents
       FileInputStream fstream = new FileInputStream(file);
@@ -289,11 +414,111 @@ public strictfp final class Configuration implements Serializable {
     }
   }
 
+  /**
+   * Exits on settings which cannot be used together
+   */
+  private static void validate() {
+    if (hmmSplitStart > 0 && hmmRestarts > 1) {
+      System.err.println("hmmSplitStart and hmmRestarts cannot be combined: split-merge trains a single HMM");
+      System.exit(1);
+    }
+    // Every restart draws its own random initialization
+    List<Action> regimen = Arrays.asList(trainingRegimen);
+    if (hmmRestarts > 1 && regimen.contains(Action.LoadLexicon)
+        && regimen.indexOf(Action.LoadLexicon) < regimen.lastIndexOf(Action.InduceTags)) {
+      System.err.println("LoadLexicon and hmmRestarts cannot be combined: restarts discard the loaded initialization");
+      System.exit(1);
+    }
+  }
+
   /**
    * A default constructor for setting properties manually.
    */
   public Configuration() { }
 
+  /**
+   * Set a single variable after the configuration has been read, as if it
+   * had been passed on the command line as var=val.  Exits if the new value
+   * cannot be used with the other settings
+   *
+   * @param var variable
+   * @param val value
+   * @throws Exception
+   */
+  public static void set(String var, String val) throws Exception {
+    process(var, val);
+    validate();
+  }
+
+  /**
+   * Captures the current value of every setting
+   *
+   * @return Snapshot which can be restored later
+   */
+  public static Snapshot snapshot() {
+    return new Snapshot();
+  }
+
+  /**
+   * The values of all ( non-final ) settings at one point in time.  Settings
+   * are global, so experiments run one after another in the same JVM ( e.g.
+   * a sweep over hyperparameters sharing the same sentences and charts )
+   * restore a snapshot between runs rather than re-reading the file.
+   * Experiments cannot run concurrently: they would share every setting.
+   */
+  public static final class Snapshot {
+    private final HashMap<Field, Object> values = new HashMap<>();
+
+    private Snapshot() {
+      try {
+        for (Field field : settings()) {
+          values.put(field, copy(field.get(null)));
+        }
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    /**
+     * Returns every setting to its value when the snapshot was taken
+     */
+    public void restore() {
+      try {
+        for (Field field : values.keySet()) {
+          field.set(null, copy(values.get(field)));
+        }
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    /**
+     * Arrays ( alphaPower, trainFile, ... ) are copied so that later edits
+     * to their elements don't reach the snapshot
+     */
+    private static Object copy(Object value) {
+      if (value == null || !value.getClass().isArray()) {
+        return value;
+      }
+      int length = Array.getLength(value);
+      Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+      System.arraycopy(value, 0, copy, 0, length);
+      return copy;
+    }
+
+    private static ArrayList<Field> settings() {
+      ArrayList<Field> fields = new ArrayList<>();
+      for (Field field : Configuration.class.getDeclaredFields()) {
+        int modifiers = field.getModifiers();
+        if (Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers)) {
+          field.setAccessible(true);
+          fields.add(field);
+        }
+      }
+      return fields;
+    }
+  }
+
   /**
    * Assign value (val) to variable (v)
    *
@@ -329,6 +554,21 @@ public strictfp final class Configuration implements Serializable {
       case "maxitr":
         maxItr = Integer.parseInt(val);
         break;
+      case "stepwisebatchsize":
+        stepwiseBatchSize = Integer.parseInt(val);
+        break;
+      case "stepwisealpha":
+        stepwiseAlpha = Double.parseDouble(val);
+        break;
+      case "freezethreshold":
+        freezeThreshold = Double.parseDouble(val);
+        break;
+      case "freezeinterval":
+        freezeInterval = Integer.parseInt(val);
+        break;
+      case "freezebound":
+        freezeBound = Double.parseDouble(val);
+        break;
       case "nf":
         NF = Normal_Form.valueOf(val);
         break;
@@ -368,18 +608,50 @@ public strictfp final class Configuration implements Serializable {
           trainingRegimen[i] = Action.valueOf(spl[i].trim());
         }
         break;
+      case "sweep":
+        sweep = val.trim().isEmpty() ? new String[0] : val.trim().split("\\s*;\\s*");
+        break;
+      case "sweepregimen":
+        if (val.length() > 0 && val.charAt(0) == '[')
+          val = val.substring(1,val.length()-1);
+        String[] sweepActions = val.split(",");
+        sweepRegimen = new Action[sweepActions.length];
+        for (int i = 0; i < sweepActions.length; i++) {
+          sweepRegimen[i] = Action.valueOf(sweepActions[i].trim());
+        }
+        break;
       case "traink":
         trainK = Integer.parseInt(val);
         break;
       case "testk":
         testK = Integer.parseInt(val);
         break;
+      case "testoutput":
+        testOutput = val.isEmpty() ? new String[0] : val.toUpperCase().split(",");
+        for (String output : testOutput) {
+          if (!output.equals("AUTO") && !output.equals("PARG") && !output.equals("CONLL")) {
+            throw new Exception("Unknown test output: \t\"" + output + "\tExpected AUTO, PARG or CONLL");
+          }
+        }
+        break;
+      case "testwriterbuffer":
+        testWriterBuffer = Integer.parseInt(val);
+        break;
       case "source":
         source = Training.valueOf(val);
         break;
       case "threadcount":
         threadCount = Integer.parseInt(val);
         break;
+      case "metrics":
+        metrics = Boolean.parseBoolean(val);
+        break;
+      case "chartstore":
+        chartStore = val;
+        break;
+      case "minibatchsize":
+        miniBatchSize = Integer.parseInt(val);
+        break;
       case "ignorepunctuation":
         ignorePunctuation = Boolean.parseBoolean(val);
         break;
@@ -410,6 +682,39 @@ public strictfp final class Configuration implements Serializable {
       case "allowxbxbx":
         allowXbXbX = Boolean.parseBoolean(val);
         break;
+      case "precomputecombinations":
+        precomputeCombinations = Boolean.parseBoolean(val);
+        break;
+      case "deduplicatecharts":
+        deduplicateCharts = Boolean.parseBoolean(val);
+        break;
+      case "spanmemosize":
+        spanMemoSize = Integer.parseInt(val);
+        break;
+      case "scaledinsideoutside":
+        scaledInsideOutside = Boolean.parseBoolean(val);
+        break;
+      case "derivationcounts":
+        derivationCounts = Boolean.parseBoolean(val);
+        break;
+      case "lexicalbeta":
+        lexicalBeta = Double.parseDouble(val);
+        break;
+      case "lexicaltopk":
+        lexicalTopK = Integer.parseInt(val);
+        break;
+      case "coarsetofine":
+        if (val.length() > 0 && val.charAt(0) == '[')
+          val = val.substring(1,val.length()-1);
+        String[] projections = val.trim().isEmpty() ? new String[0] : val.split(",");
+        coarseToFine = new CategoryProjection[projections.length];
+        for (int i = 0; i < projections.length; i++) {
+          coarseToFine[i] = CategoryProjection.valueOf(projections[i].trim());
+        }
+        break;
+      case "coarsetofinethreshold":
+        coarseToFineThreshold = Double.parseDouble(val);
+        break;
       case "complexargs":
         complexArgs = Boolean.parseBoolean(val);
         break;
@@ -460,6 +765,15 @@ public strictfp final class Configuration implements Serializable {
       case "numclusters":
         NumClusters = Integer.parseInt(val);
         break;
+      case "hmmrestarts":
+        hmmRestarts = Integer.parseInt(val);
+        break;
+      case "hmmsplitstart":
+        hmmSplitStart = Integer.parseInt(val);
+        break;
+      case "hmmmergefraction":
+        hmmMergeFraction = Double.parseDouble(val);
+        break;
       case "hardbracketconstraints":
         hardBracketConstraints = Boolean.parseBoolean(val);
         break;
@@ -487,7 +801,13 @@ public strictfp final class Configuration implements Serializable {
         AUTOFileToConvert = val;
         break;
       case "convertauto":
-        ConvertAUTO = AUTOConversion.valueOf(val);
+        if (val.length() > 0 && val.charAt(0) == '[')
+          val = val.substring(1,val.length()-1);
+        String[] formats = val.split(",");
+        ConvertAUTO = new AUTOConversion[formats.length];
+        for (int i = 0; i < formats.length; i++) {
+          ConvertAUTO[i] = AUTOConversion.valueOf(formats[i].trim());
+        }
         break;
       default:
         if (!var.isEmpty() && (var.isEmpty() || var.charAt(0) != '#')) {
@@ -514,9 +834,20 @@ public strictfp final class Configuration implements Serializable {
     printConfig("hasUniversalTags", hasUniversalTags, "Add column for NAACL Shared Task input/output");
     printConfig("NF", NF.toString(), "Parse with NF: {Full,Full_noPunct,Eisner,Eisner_Orig,None}");
     printConfig("trainingRegimen", Arrays.toString(trainingRegimen), "Operations for experiment");
+    printConfig("sweep", Arrays.toString(sweep), "Settings (var=val ...;var=val ...) trained by Sweep");
+    printConfig("sweepRegimen", Arrays.toString(sweepRegimen), "Operations for each sweep setting");
     printConfig("typeRaising", typeRaising, "Allow TypeRaising");
     printConfig("lexTROnly", lexTROnly, "Restrict TypeRaising to lexical items");
     printConfig("allowXbXbX", allowXbXbX, "Allow for (X/X)\\X and (X\\X)/X");
+    printConfig("precomputeCombinations", precomputeCombinations, "Decide which category pairs combine before parsing");
+    printConfig("deduplicateCharts", deduplicateCharts, "Parse identical training sentences once, weighted");
+    printConfig("spanMemoSize", spanMemoSize, "Binary cells memoized across charts while parsing (0 = off)");
+    printConfig("scaledInsideOutside", scaledInsideOutside, "Scaled real space E-step instead of log space");
+    printConfig("derivationCounts", derivationCounts, "Count single derivation charts without inside-outside");
+    printConfig("lexicalBeta", lexicalBeta, "Keep lexical categories within beta of the best (0 = off)");
+    printConfig("lexicalTopK", lexicalTopK, "Keep the k most probable lexical categories per token (0 = off)");
+    printConfig("coarseToFine", Arrays.toString(coarseToFine), "Projections to prune test charts with, coarsest first");
+    printConfig("coarseToFineThreshold", coarseToFineThreshold, "Posterior below which coarse labels are pruned");
 
     printConfig("##### Grammar Induction #####", "", "");
     // // Grammar Induction ////
@@ -541,6 +872,11 @@ public strictfp final class Configuration implements Serializable {
     printConfig("viterbi", viterbi, "");
     printConfig("maxItr", maxItr, "Max # of EM/BW Iterations");
     printConfig("threshold", threshold, "EM/BW convergence threshold");
+    printConfig("stepwiseBatchSize", stepwiseBatchSize, "Charts per stepwise EM update (0 = batch EM)");
+    printConfig("stepwiseAlpha", stepwiseAlpha, "Stepwise EM step size decay: (k+2)^-alpha");
+    printConfig("freezeThreshold", freezeThreshold, "Replay counts of charts whose likelihood stopped changing (0 = off)");
+    printConfig("freezeInterval", freezeInterval, "Recompute frozen charts every n iterations");
+    printConfig("freezeBound", freezeBound, "Recompute frozen charts while the corpus likelihood moves more than this");
     printConfig("# EPSILON", EPSILON, "");
 
     printConfig("##### Training Model #####", "", "");
@@ -549,6 +885,9 @@ public strictfp final class Configuration implements Serializable {
     printConfig("smallRule", smallRule, "Minimum prob/val allowed for a rule");
     printConfig("# largeRule", largeRule, "When interpolating models, lambda cannot grow larger than 1#smallRule");
     printConfig("NumClusters", NumClusters, "Number of clusters to induce with HMM");
+    printConfig("hmmRestarts", hmmRestarts, "HMMs trained from random initializations, keeping the best");
+    printConfig("hmmSplitStart", hmmSplitStart, "Clusters to start HMM split-merge from (0 = off)");
+    printConfig("hmmMergeFraction", hmmMergeFraction, "Fraction of HMM cluster splits merged back");
 
     printConfig("##### Training Data #####", "", "");
     // // TRAINING DATA ////
@@ -565,6 +904,9 @@ public strictfp final class Configuration implements Serializable {
     printConfig("CondProb_threshold", CondProb_threshold , "Threshold for discarding categories based on cond prob");
     // // SYSTEM ////
     printConfig("threadCount", threadCount, "Number of threads to use");
+    printConfig("metrics", metrics, "Write Metrics.[n].[action].json after every action");
+    printConfig("chartStore", chartStore, "Directory for disk-backed charts, streams training data (null = in memory)");
+    printConfig("miniBatchSize", miniBatchSize, "Charts per read/write of the chart store");
     ////  Push Notification ////
     printConfig("api_key", api_key, "API Key for push notification from notifymyandroid.com");
 
@@ -585,11 +927,13 @@ public strictfp final class Configuration implements Serializable {
         "Whether CoNLL style viterbi parses should be printed and how conjunction should be treated");
     printConfig("longestTestSentence", longestTestSentence, "Longest allowable test sentence (else: right branch)");
     printConfig("testK", testK, "Number of parses to produces at test time");
+    printConfig("testOutput", Arrays.toString(testOutput), "AUTO/PARG/CONLL files written next to the JSON");
+    printConfig("testWriterBuffer", testWriterBuffer, "Test parses buffered for in-order writing");
     printConfig("AUTO_TYPE", auto_type.toString(), "CCGBANK vs CANDC auto files");
 
     printConfig("##### AUTO Conversion #####", "", "");
     printConfig("AUTOFileToConvert", AUTOFileToConvert, "Input file [1 auto per line] to convert");
-    printConfig("ConvertAUTO", ConvertAUTO.toString(), "Format to convert AUTOs to");
+    printConfig("ConvertAUTO", Arrays.toString(ConvertAUTO), "Formats to convert AUTOs to");
 
     printConfig("##### Knowledge Graph #####", "", "");
     printConfig("hardBracketConstraints", hardBracketConstraints, "Use Hard Entity constraints when parsing");
@@ -3,6 +3,7 @@ package CCGInduction;
 import CCGInduction.experiments.*;
 import CCGInduction.utils.AndroidPushNotification;
 import CCGInduction.utils.Logger;
+import CCGInduction.utils.Metrics;
 
 import java.io.File;
 import java.io.IOException;
@@ -72,6 +73,7 @@ public strictfp class Main {
         Logger.logln("Performing:", action.toString());
         Logger.timestamp("Performing " + action);
         experiment.perform(action);
+        Metrics.write(action.toString());
       }
       // -------------------------- Print Times -------------------- //
       Logger.timestamp("Finish");
@@ -1,5 +1,5 @@
 package CCGInduction.ccg;
 
 public enum AUTOConversion {
-  PARG, CONLL, TEX
+  PARG, CONLL, TEX, JSON
 }
@@ -24,12 +24,14 @@ public class CCGAtomic implements Serializable {
    * @param val String representation of category
    */
   public CCGAtomic(String val) {
-    int i = IDS.indexOf(val);
-    if (i == -1) {
-      IDS.add(val);
-      ID = IDS.size() - 1;
-    } else {
-      ID = i;
+    synchronized (IDS) {
+      int i = IDS.indexOf(val);
+      if (i == -1) {
+        IDS.add(val);
+        ID = IDS.size() - 1;
+      } else {
+        ID = i;
+      }
     }
   }
 
@@ -52,8 +54,10 @@ public class CCGAtomic implements Serializable {
     return valueOf(String.valueOf(str));
   }
   private static CCGAtomic valueOf(String str){
-    if(IDS.contains(str)) {
-      return new CCGAtomic(str);
+    synchronized (IDS) {
+      if (IDS.contains(str)) {
+        return new CCGAtomic(str);
+      }
     }
     return null;
   }
@@ -4,6 +4,7 @@ import CCGInduction.Configuration;
 
 import java.io.PrintStream;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -88,14 +89,15 @@ public class CCGcat implements Cloneable {
   private static final int NODIR = -1;
 
   /**
-   * a counter for category instances
+   * counters for category and head instances of the derivation being built
+   * on this thread: { id, headId }
    */
-  private static int idCounter = 0;
+  private static final ThreadLocal<int[]> counters = ThreadLocal.withInitial(() -> new int[] {0, 1});
   /**
-   * a counter for head instances
+   * parsed category structures, keyed by category string. Templates carry no
+   * ids, heads or dependencies and are only ever copied.
    */
-
-  private static int headIdCounter = 1;
+  private static final ConcurrentHashMap<String, CCGcat> templates = new ConcurrentHashMap<>();
   /**
    * the ID of this category -- unifiable categories which are part of the
    * same category have the same ID
@@ -158,8 +160,15 @@ public class CCGcat implements Cloneable {
    * parseCat(String)
    */
   private CCGcat(String string) {
-    id = newId();
-    headId = newHeadId();
+    this(string, newId(), newHeadId());
+  }
+
+  /**
+   * Creates a category with the given ids
+   */
+  private CCGcat(String string, int id, int headId) {
+    this.id = id;
+    this.headId = headId;
     catString = string;
     argument = null;
     result = null;
@@ -376,11 +385,13 @@ public class CCGcat implements Cloneable {
     return target;
   }
 
-  public static synchronized void resetCounters() {
-    // TODO: this method is unsafe with newHeadId()
-    /*
-     * idCounter = 0; headIdCounter = 1;//reset the counters
-     */
+  /**
+   * Restarts the ids of this thread, once a derivation is complete
+   */
+  public static void resetCounters() {
+    int[] counter = counters.get();
+    counter[0] = 0;
+    counter[1] = 1;
   }
 
   // ##########################################################
@@ -692,16 +703,50 @@ public class CCGcat implements Cloneable {
 
   /**
    * parseCat(String cat) This works only if cat really spans an entire
-   * category
+   * category. The string is parsed once into a template, which is then
+   * copied with fresh ids.
    */
   private static CCGcat parseCat(String cat) {
-    // Create a new category
+    if (cat.endsWith(CONJFEATURE)) {// otherwise it might crash
+      int index = cat.lastIndexOf(CONJFEATURE);
+      cat = cat.substring(0, index);
+    }
+    CCGcat template = templates.get(cat);
+    if (template == null) {
+      template = parseTemplate(cat);
+      templates.putIfAbsent(cat, template);
+    }
+    return template.instantiate();
+  }
+
+  /**
+   * Copies a template, numbering its nodes in the order parseTemplate
+   * creates them ( parent, result, argument )
+   */
+  private CCGcat instantiate() {
+    CCGcat newCat = new CCGcat(catString);
+    newCat.argDir = argDir;
+    if (result != null) {
+      newCat.result = result.instantiate();
+      newCat.result.function = newCat;
+    }
+    if (argument != null) {
+      newCat.argument = argument.instantiate();
+      newCat.argument.function = newCat;
+    }
+    return newCat;
+  }
+
+  /**
+   * Parses a category string into a template
+   */
+  private static CCGcat parseTemplate(String cat) {
     if (cat.endsWith(CONJFEATURE)) {// otherwise it might crash
       int index = cat.lastIndexOf(CONJFEATURE);
       cat = cat.substring(0, index);
     }
 
-    CCGcat newCat = new CCGcat(cat);
+    CCGcat newCat = new CCGcat(cat, 0, 0);
     // CASE 1: No brackets
     if (cat.indexOf(OB) == -1 && cat.indexOf(CB) == -1) {
 
@@ -721,11 +766,11 @@ public class CCGcat implements Cloneable {
           newCat.argDir = FW;
         }
         // Recurse on rescat
-        CCGcat resCat = parseCat(cat.substring(0, slashIndex));
+        CCGcat resCat = parseTemplate(cat.substring(0, slashIndex));
         resCat.function = newCat;
         newCat.result = resCat;
         // Recurse on argcat
-        CCGcat argCat = parseCat(cat.substring(slashIndex + 1));
+        CCGcat argCat = parseTemplate(cat.substring(slashIndex + 1));
         argCat.function = newCat;
         newCat.argument = argCat;
       }
@@ -757,7 +802,7 @@ public class CCGcat implements Cloneable {
           newCat.argDir = FW;
           if (newCat.result == null) {
             end = i;
-            CCGcat resCat = parseCat(cat.substring(start, end));
+            CCGcat resCat = parseTemplate(cat.substring(start, end));
             resCat.function = newCat;
             newCat.result = resCat;
           }
@@ -771,7 +816,7 @@ public class CCGcat implements Cloneable {
           newCat.argDir = BW;
           if (newCat.result == null) {
             end = i;
-            CCGcat resCat = parseCat(cat.substring(start, end));
+            CCGcat resCat = parseTemplate(cat.substring(start, end));
             resCat.function = newCat;
             newCat.result = resCat;
           }
@@ -785,11 +830,11 @@ public class CCGcat implements Cloneable {
           if (obNumber == 0) {
             end = i;
             if (newCat.result == null) {
-              CCGcat resCat = parseCat(cat.substring(start, end));
+              CCGcat resCat = parseTemplate(cat.substring(start, end));
               resCat.function = newCat;
               newCat.result = resCat;
             } else {
-              CCGcat argCat = parseCat(cat.substring(start, end));
+              CCGcat argCat = parseTemplate(cat.substring(start, end));
               argCat.function = newCat;
               newCat.argument = argCat;
             }
@@ -800,11 +845,11 @@ public class CCGcat implements Cloneable {
           end = i + 1;
 
           if (newCat.result == null) {
-            CCGcat resCat = parseCat(cat.substring(start, end));
+            CCGcat resCat = parseTemplate(cat.substring(start, end));
             resCat.function = newCat;
             newCat.result = resCat;
           } else {
-            CCGcat argCat = parseCat(cat.substring(start, end));
+            CCGcat argCat = parseTemplate(cat.substring(start, end));
             argCat.function = newCat;
             newCat.argument = argCat;
           }
@@ -1074,7 +1119,7 @@ public class CCGcat implements Cloneable {
     } else {
       tmp2 = cat2;
     }
-    return (new StringBuffer(tmp1).append(FSLASH).append(tmp2)).toString();
+    return (new StringBuilder(tmp1).append(FSLASH).append(tmp2)).toString();
   }
 
   private static String backward(String cat1, String cat2) {
@@ -1089,14 +1134,14 @@ public class CCGcat implements Cloneable {
     } else {
       tmp2 = cat2;
     }
-    return (new StringBuffer(tmp1).append(BSLASH).append(tmp2)).toString();
+    return (new StringBuilder(tmp1).append(BSLASH).append(tmp2)).toString();
   }
 
   /**
    * bracket
    */
   private static String bracket(String cat) {
-    return (new StringBuffer("(").append(cat).append(CB)).toString();
+    return (new StringBuilder("(").append(cat).append(CB)).toString();
   }
 
   /**
@@ -1134,22 +1179,24 @@ public class CCGcat implements Cloneable {
     }
   }
 
-  private static synchronized int newId() {
-    if (idCounter < Integer.MAX_VALUE) {
-      ++idCounter;
+  private static int newId() {
+    int[] counter = counters.get();
+    if (counter[0] < Integer.MAX_VALUE) {
+      ++counter[0];
     } else {
-      idCounter = 0;
+      counter[0] = 0;
     }
-    return idCounter;
+    return counter[0];
   }
 
-  private static synchronized int newHeadId() {
-    if (headIdCounter < Integer.MAX_VALUE) {
-      ++headIdCounter;
+  private static int newHeadId() {
+    int[] counter = counters.get();
+    if (counter[1] < Integer.MAX_VALUE) {
+      ++counter[1];
     } else {
-      headIdCounter = 0;
+      counter[1] = 0;
     }
-    return headIdCounter;
+    return counter[1];
   }
 
   // ##########################################################
@@ -0,0 +1,61 @@
+package CCGInduction.ccg;
+
+/**
+ * Projections of InducedCATs onto coarser label sets, used for coarse-to-fine
+ * parsing.  Each projection is a function of the next finer one, so a label
+ * surviving at one level names the set of finer labels allowed at the next:
+ *   FEATURES  (S[dcl]\NP)/NP[conj]  -->  (S\NP)/NP[conj]
+ *   ATOMS     ((S\NP)/(S\NP))/N     -->  ((S\NP)/S)/N   ( arguments become their result atom )
+ *   ARITY     (S\NP)/NP             -->  (X\X)/X
+ *
+ * @author bisk1
+ */
+public enum CategoryProjection {
+  /** Only the shape: slash directions with every atom X */
+  ARITY,
+  /** Result spine with each argument collapsed to its atom */
+  ATOMS,
+  /** Full category without CCGbank features */
+  FEATURES;
+
+  /**
+   * @param category Category to project
+   * @return Label of the category at this level
+   */
+  public String project(InducedCAT category) {
+    StringBuilder label = new StringBuilder();
+    project(category, label);
+    return label.toString();
+  }
+
+  private void project(InducedCAT category, StringBuilder label) {
+    if (category.D.equals(Direction.None)) {
+      label.append(this == ARITY ? "X" : category.atom.toString());
+    } else {
+      wrap(category.Res, label);
+      label.append(category.D.toString());
+      if (this == FEATURES) {
+        wrap(category.Arg, label);
+      } else {
+        InducedCAT atom = category.Arg;
+        while (atom.Res != null) {
+          atom = atom.Res;
+        }
+        label.append(this == ARITY ? "X" : atom.atom.toString());
+      }
+    }
+    if (category.has_conj) {
+      label.append("[conj]");
+    }
+  }
+
+  private void wrap(InducedCAT category, StringBuilder label) {
+    if (category.D.equals(Direction.None)) {
+      project(category, label);
+    } else {
+      label.append('(');
+      project(category, label);
+      label.append(')');
+    }
+  }
+}
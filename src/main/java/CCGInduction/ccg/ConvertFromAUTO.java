@@ -1,7 +1,10 @@
 package CCGInduction.ccg;
 
 import CCGInduction.Configuration;
+import CCGInduction.data.JSON.CoNLLDep;
 import CCGInduction.data.JSON.JSONFormat;
+import CCGInduction.data.JSON.PARGDep;
+import CCGInduction.data.JSON.SynParObj;
 import CCGInduction.data.Sentence;
 import CCGInduction.data.Tagset;
 import CCGInduction.experiments.Action;
@@ -11,19 +14,33 @@ import CCGInduction.utils.Logger;
 import CCGInduction.grammar.Tree;
 import CCGInduction.parser.Chart;
 import CCGInduction.parser.InductionParser;
+import CCGInduction.utils.OrderedWriter;
 import CCGInduction.utils.TextFile;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static CCGInduction.ccg.AUTOConversion.*;
 
 /**
- * A Simple class for converting AUTO parses into dependencies or TeX
+ * A Simple class for converting AUTO parses into dependencies, JSON or TeX.
+ * Chunks of sentences are converted by a pool of threads, each with its own
+ * grammar, and written in input order with one output file per format.  A
+ * sentence which cannot be converted is written as "%FAIL: " + AUTO ( and
+ * left out of the JSON ) without stopping the run.
  */
 public class ConvertFromAUTO {
+  /** Sentences handed to a thread at a time */
+  private static final int CHUNK = 64;
 
   public static void main(String[] args) throws Exception {
     if (args.length == 0) {
@@ -31,71 +48,197 @@ public class ConvertFromAUTO {
       System.out.println("java -jar hdpccg.jar ConvertFromAUTO Config.txt");
       System.out.println("Params to set:");
       System.out.println("AUTOFileToConvert=<FileOfStrings>");
-      System.out.println("ConvertAUTO=PARG/CONLL/TEX");
+      System.out.println("ConvertAUTO=PARG,CONLL,TEX,JSON");
       return;
     }
     new Configuration(args);
     Tagset.readTagMapping(Configuration.TAGSET);
 
-    Grammar grammar = new Grammar();
-    ArgumentModel model = new ArgumentModel(grammar);
-    InductionParser parser = new InductionParser(Action.B3Mod_B2TR_B0Else);
-
+    AUTOConversion[] formats = Configuration.ConvertAUTO;
     String filename = Configuration.AUTOFileToConvert;
+    String[] names = new String[formats.length];
+    for (int i = 0; i < formats.length; ++i) {
+      names[i] = filename;
+      if (names[i].contains("gz"))
+        names[i] = names[i].replace(".gz", '.' + formats[i].toString().toLowerCase() + ".gz");
+      else
+        names[i] = names[i] + '.' + formats[i].toString().toLowerCase();
+    }
+
+    int threads = Configuration.threadCount;
+    OrderedWriter writer = new OrderedWriter(names, 2 * threads * CHUNK);
+    // The reader converts a chunk itself when every thread is busy
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(threads), new ThreadPoolExecutor.CallerRunsPolicy());
+    ThreadLocal<Converter> converters = ThreadLocal.withInitial(Converter::create);
+    List<Exception> exceptions = Collections.synchronizedList(new ArrayList<>());
+    AtomicInteger converted = new AtomicInteger();
+    AtomicInteger failed = new AtomicInteger();
+
     BufferedReader reader = TextFile.Reader(filename);
-    String name = filename;
-    if (name.contains("gz"))
-      name = name.replace(".gz", '.' + Configuration.ConvertAUTO.toString().toLowerCase() + ".gz");
-    else
-      name = name + '.' + Configuration.ConvertAUTO.toString().toLowerCase();
-    BufferedWriter writer = TextFile.Writer(name);
+    ArrayList<String> chunk = new ArrayList<>(CHUNK);
     String line;
     int count = 0;
-    while ((line = reader.readLine()) != null) {
-      if (line.startsWith("ID")) // Skip IDs
+    while (exceptions.isEmpty()) {
+      line = reader.readLine();
+      if (line != null && line.startsWith("ID")) // Skip IDs
         continue;
-      Sentence sentence = new Sentence(line, grammar);
-      Tree<Grammar> parse_tree = new Tree<>(line, model, parser);
-
-      String output = "%FAIL: " + line;
-      switch (Configuration.ConvertAUTO) {
-        case PARG:
-          Chart.featureStructure(parse_tree, CCGcat.DepType.CCG, model); // CCGCat issue
-          JSONFormat.createFromSentence(sentence, grammar);
-          output = JSONFormat.pargString(Chart.CCGdependencies(parse_tree, sentence), sentence.JSON);
-          break;
-        case CONLL:
-          Chart.featureStructure(parse_tree, CCGcat.DepType.CoNLL, model); // CCGCat issue
-          JSONFormat.createFromSentence(sentence, grammar);
-          output = JSONFormat.conllString(Chart.CoNLLdependencies(parse_tree, sentence), sentence.JSON) + "\n";
-          break;
-        case TEX:
-          if (count == 0) {
-            createTeXHeader(writer);
-          }
-          ArrayList<ArrayList<ArrayList<String>>> viterbiParse = new ArrayList<>();
-          for (int i = 0; i < sentence.length(); i++) {
-            viterbiParse.add(new ArrayList<>());
-            for (int j = 0; j < sentence.length(); j++) {
-              viterbiParse.get(i).add(new ArrayList<>());
+      if (line != null)
+        chunk.add(line);
+      if (chunk.size() == CHUNK || (line == null && !chunk.isEmpty())) {
+        final String[] lines = chunk.toArray(new String[chunk.size()]);
+        final int first = count;
+        executor.execute(() -> {
+          try {
+            Converter converter = converters.get();
+            for (int i = 0; i < lines.length; ++i) {
+              writer.put(first + i, converter.convert(lines[i], formats, first + i == 0, failed));
+              Logger.stat(converted.incrementAndGet());
             }
+          } catch (Exception e) {
+            exceptions.add(e);
+            writer.abort(e);
           }
-          Chart.buildTeXCells(viterbiParse, model, parse_tree);
-          output = Chart.buildTeX(viterbiParse, sentence, grammar);
-          break;
+        });
+        count += lines.length;
+        chunk = new ArrayList<>(CHUNK);
       }
-      writer.write(output + "\n");
-      Logger.stat(++count);
-    }
-    if (Configuration.ConvertAUTO == TEX){
-      closeTeXFile(writer);
+      if (line == null)
+        break;
     }
+    executor.shutdown();
+    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
     reader.close();
+    if (!exceptions.isEmpty()) {
+      writer.abort(exceptions.get(0));
+      throw exceptions.get(0);
+    }
+
+    // Close the TeX documents
+    String[] footer = new String[formats.length];
+    boolean tex = false;
+    for (int i = 0; i < formats.length; ++i) {
+      if (formats[i] == TEX) {
+        StringWriter end = new StringWriter();
+        if (count == 0) {
+          createTeXHeader(end);
+        }
+        closeTeXFile(end);
+        footer[i] = end.toString();
+        tex = true;
+      }
+    }
+    if (tex) {
+      writer.put(count, footer);
+    }
     writer.close();
-    System.out.println("Converted " + filename + "\tto\t" + name);
+    if (failed.get() > 0) {
+      System.err.println("Failed to convert " + failed.get() + " of " + count + " sentences");
+    }
+    for (String name : names) {
+      System.out.println("Converted " + filename + "\tto\t" + name);
+    }
+  }
+
+  /**
+   * Each thread converts with its own grammar, model and parser, which grow
+   * with the categories and rules of the trees it reads
+   */
+  private static final class Converter {
+    private final Grammar grammar;
+    private final ArgumentModel model;
+    private final InductionParser<Grammar> parser;
+
+    private Converter() {
+      grammar = new Grammar();
+      model = new ArgumentModel(grammar);
+      parser = new InductionParser<>(Action.B3Mod_B2TR_B0Else);
+    }
+
+    // Models write their outcome IDs to shared statics while being built
+    private static synchronized Converter create() {
+      return new Converter();
+    }
+
+    /**
+     * Converts one AUTO parse to every format
+     * @param line AUTO parse
+     * @param formats Output formats
+     * @param first If this is the first sentence of the file
+     * @param failed Count of sentences which could not be converted
+     * @return One record per format
+     */
+    String[] convert(String line, AUTOConversion[] formats, boolean first, AtomicInteger failed) throws IOException {
+      String[] output = new String[formats.length];
+      try {
+        Sentence sentence = new Sentence(line, grammar);
+        Tree<Grammar> parse_tree = new Tree<>(line, model, parser);
+        JSONFormat.createFromSentence(sentence, grammar);
+
+        PARGDep[] parg = null;
+        CoNLLDep[] conll = null;
+        for (AUTOConversion format : formats) {
+          if ((format == PARG || format == JSON) && parg == null) {
+            Chart.featureStructure(parse_tree, CCGcat.DepType.CCG, model); // CCGCat issue
+            parg = Chart.CCGdependencies(parse_tree, sentence);
+          }
+          if ((format == CONLL || format == JSON) && conll == null) {
+            Chart.featureStructure(parse_tree, CCGcat.DepType.CoNLL, model); // CCGCat issue
+            conll = Chart.CoNLLdependencies(parse_tree, sentence);
+          }
+        }
+
+        for (int i = 0; i < formats.length; ++i) {
+          switch (formats[i]) {
+            case PARG:
+              output[i] = JSONFormat.pargString(parg, sentence.JSON);
+              break;
+            case CONLL:
+              output[i] = JSONFormat.conllString(conll, sentence.JSON) + "\n";
+              break;
+            case JSON:
+              SynParObj synPar = new SynParObj();
+              synPar.synPar = line;
+              synPar.depParse = parg;
+              synPar.conllParse = conll;
+              sentence.JSON.synPars = new SynParObj[] { synPar };
+              output[i] = sentence.JSON.toString();
+              break;
+            case TEX:
+              ArrayList<ArrayList<ArrayList<String>>> viterbiParse = new ArrayList<>();
+              for (int x = 0; x < sentence.length(); x++) {
+                viterbiParse.add(new ArrayList<>());
+                for (int y = 0; y < sentence.length(); y++) {
+                  viterbiParse.get(x).add(new ArrayList<>());
+                }
+              }
+              Chart.buildTeXCells(viterbiParse, model, parse_tree);
+              output[i] = Chart.buildTeX(viterbiParse, sentence, grammar);
+              break;
+          }
+        }
+      } catch (Exception | AssertionError e) {
+        System.err.println("Could not convert: " + line + "\t" + e);
+        failed.incrementAndGet();
+        for (int i = 0; i < formats.length; ++i) {
+          output[i] = formats[i] == JSON ? null : "%FAIL: " + line;
+        }
+      }
+
+      if (first) {
+        for (int i = 0; i < formats.length; ++i) {
+          if (formats[i] == TEX) {
+            StringWriter header = new StringWriter();
+            createTeXHeader(header);
+            output[i] = header + output[i];
+          }
+        }
+      }
+      return output;
+    }
   }
 
-  static void createTeXHeader(BufferedWriter writer) throws IOException {
+  static void createTeXHeader(Writer writer) throws IOException {
     writer.write("\\documentclass[11pt]{beamer}\n");
     writer.write("\\usetheme{default}\n");
     writer.write("\\usepackage{ccg}\n");
@@ -111,7 +254,7 @@ public class ConvertFromAUTO {
     writer.write("\\begin{document}\n");
   }
 
-  static void closeTeXFile(BufferedWriter writer) throws IOException {
+  static void closeTeXFile(Writer writer) throws IOException {
     writer.write("\\end{document}");
   }
 }
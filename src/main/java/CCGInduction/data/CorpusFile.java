@@ -0,0 +1,306 @@
+package CCGInduction.data;
+
+import CCGInduction.Configuration;
+import CCGInduction.experiments.Training;
+import CCGInduction.grammar.Grammar;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+
+/**
+ * Compact binary form of a corpus.  Strings are stored once in tables and
+ * tokens as columns of indices into them, each column only as wide ( 1, 2 or
+ * 4 bytes ) as its largest index needs, so a file is loaded with a single read
+ * and the grammar only hashes each distinct string once.  Files must be read
+ * with the tag and punctuation settings they were written with.
+ *
+ * Layout ( big-endian ):  magic, word / tag / category / other string tables,
+ * token columns ( raw, word, lemma, 4 tags, freebase id, number of supertags ),
+ * supertags, sentence columns ( length, question, AUTO parse ) and the
+ * punctuation tags.
+ *
+ * @author bisk1
+ */
+public final class CorpusFile {
+  private static final byte[] MAGIC = "CCGCOLS1".getBytes(StandardCharsets.US_ASCII);
+  private static final int[] TAGS = {TokenColumns.COARSE, TokenColumns.FINE, TokenColumns.UNIVERSAL,
+      TokenColumns.INDUCED};
+
+  private CorpusFile() {}
+
+  /**
+   * @param filename File
+   * @return If the file starts with the corpus file header
+   */
+  public static boolean is(String filename) {
+    byte[] header = new byte[MAGIC.length];
+    try (DataInputStream in = new DataInputStream(new FileInputStream(filename))) {
+      in.readFully(header);
+    } catch (IOException exception) {
+      return false;
+    }
+    return Arrays.equals(header, MAGIC);
+  }
+
+  /**
+   * Writes sentences ( with punctuation, supertags, entity ids and AUTO parses )
+   * @param sentences Sentences to store
+   * @param grammar   Grammar holding their word and category hashes
+   * @param filename  Output file
+   * @throws IOException
+   */
+  static void write(Iterable<Sentence> sentences, Grammar grammar, String filename) throws IOException {
+    Table words = new Table(), tags = new Table(), categories = new Table(), other = new Table();
+    ArrayList<int[]> tokens = new ArrayList<>();
+    ArrayList<Integer> supertags = new ArrayList<>();
+    ArrayList<int[]> rows = new ArrayList<>();
+    LinkedHashSet<Integer> punctuation = new LinkedHashSet<>();
+    for (Sentence sentence : sentences) {
+      TokenColumns columns = sentence.columns();
+      for (int row = sentence.start(); row < sentence.start() + sentence.length_wP(); ++row) {
+        int[] token = new int[9];
+        token[0] = words.id(word(grammar, columns.raw(row)));
+        token[1] = words.id(word(grammar, columns.word(row)));
+        token[2] = words.id(word(grammar, columns.lemma(row)));
+        for (int t = 0; t < TAGS.length; ++t) {
+          token[3 + t] = tags.id(columns.tag(TAGS[t], row).toString());
+        }
+        String fbid = columns.freebase(row);
+        token[7] = fbid.isEmpty() ? -1 : other.id(fbid);
+        long[] cats = columns.categories(row);
+        token[8] = cats == null ? -1 : cats.length;
+        if (cats != null) {
+          for (long cat : cats) {
+            String string = grammar.Categories.get(cat).toString();
+            if (Sentence.category(string, grammar) != cat) {
+              throw new IllegalStateException("Category does not survive being stored: " + string);
+            }
+            supertags.add(categories.id(string));
+          }
+        }
+        POS tag = new LexicalToken(columns, row).tag();
+        if (Tagset.Punct(tag)) {
+          punctuation.add(tags.id(tag.toString()));
+        }
+        tokens.add(token);
+      }
+      rows.add(new int[] {sentence.length_wP(), sentence.isQuestion() ? 1 : 0,
+          sentence.AUTOparse == null ? -1 : other.id(sentence.AUTOparse)});
+    }
+
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+      out.write(MAGIC);
+      words.write(out);
+      tags.write(out);
+      categories.write(out);
+      other.write(out);
+      out.writeInt(tokens.size());
+      for (int c = 0; c < 9; ++c) {
+        int[] column = new int[tokens.size()];
+        for (int i = 0; i < column.length; ++i) {
+          column[i] = tokens.get(i)[c];
+        }
+        column(out, column);
+      }
+      out.writeInt(supertags.size());
+      column(out, supertags.stream().mapToInt(Integer::intValue).toArray());
+      out.writeInt(rows.size());
+      for (int c = 0; c < 3; ++c) {
+        int[] column = new int[rows.size()];
+        for (int i = 0; i < column.length; ++i) {
+          column[i] = rows.get(i)[c];
+        }
+        column(out, column);
+      }
+      out.writeInt(punctuation.size());
+      column(out, punctuation.stream().mapToInt(Integer::intValue).toArray());
+    }
+  }
+
+  /**
+   * Loads a corpus file into columns of its own, registering its words,
+   * categories and punctuation with the grammar
+   * @param filename Corpus file
+   * @param grammar  Grammar
+   * @return Sentences in file order
+   * @throws IOException
+   */
+  static ArrayList<Sentence> read(String filename, Grammar grammar) throws IOException {
+    ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(Paths.get(filename)));
+    byte[] header = new byte[MAGIC.length];
+    in.get(header);
+    if (!Arrays.equals(header, MAGIC)) {
+      throw new IOException(filename + " is not a corpus file");
+    }
+    String[] wordStrings = strings(in), tagStrings = strings(in), categoryStrings = strings(in), other = strings(in);
+    long[] words = new long[wordStrings.length];
+    for (int i = 0; i < words.length; ++i) {
+      words[i] = grammar.Lex(wordStrings[i]);
+    }
+    POS[] tags = new POS[tagStrings.length];
+    for (int i = 0; i < tags.length; ++i) {
+      tags[i] = Tagset.intern(tagStrings[i]);
+    }
+    long[] categories = new long[categoryStrings.length];
+    for (int i = 0; i < categories.length; ++i) {
+      categories[i] = Sentence.category(categoryStrings[i], grammar);
+    }
+
+    int size = in.getInt();
+    int[][] token = new int[9][];
+    for (int c = 0; c < token.length; ++c) {
+      token[c] = ints(in, size);
+    }
+    int[] supertags = ints(in, in.getInt());
+    int sentences = in.getInt();
+    int[] lengths = ints(in, sentences);
+    int[] questions = ints(in, sentences);
+    int[] parses = ints(in, sentences);
+    int[] punctuation = ints(in, in.getInt());
+
+    // Punctuation must be known before the sentences split off their words
+    if (!Configuration.ignorePunctuation && Configuration.source != Training.supervised) {
+      for (int id : punctuation) {
+        Sentence.punctuation(tags[id], grammar, Configuration.source.equals(Training.induction));
+      }
+    }
+
+    TokenColumns columns = new TokenColumns(TokenColumns.CORPUS);
+    int supertag = 0;
+    for (int i = 0; i < size; ++i) {
+      int row = columns.add(words[token[0][i]], words[token[1][i]], words[token[2][i]],
+          tags[token[3][i]], tags[token[4][i]], tags[token[5][i]], tags[token[6][i]],
+          token[7][i] == -1 ? "" : other[token[7][i]]);
+      if (token[8][i] != -1) {
+        long[] cats = new long[token[8][i]];
+        for (int c = 0; c < cats.length; ++c) {
+          cats[c] = categories[supertags[supertag++]];
+        }
+        columns.categories(row, cats);
+      }
+    }
+
+    ArrayList<Sentence> loaded = new ArrayList<>(sentences);
+    int start = 0;
+    for (int s = 0; s < sentences; ++s) {
+      Sentence sentence = new Sentence(columns, start, lengths[s], questions[s] == 1);
+      sentence.AUTOparse = parses[s] == -1 ? null : other[parses[s]];
+      loaded.add(sentence);
+      start += lengths[s];
+    }
+    return loaded;
+  }
+
+  private static String word(Grammar grammar, long hash) {
+    String word = grammar.Words.get(hash);
+    if (word == null) {
+      throw new IllegalStateException("Word hash " + hash + " is not in the grammar");
+    }
+    return word;
+  }
+
+  /**
+   * Writes a column of values >= -1 as its width in bytes followed by the
+   * values shifted up by one
+   */
+  private static void column(DataOutputStream out, int[] values) throws IOException {
+    int max = 0;
+    for (int value : values) {
+      max = Math.max(max, value + 1);
+    }
+    int width = max < (1 << 8) ? 1 : max < (1 << 16) ? 2 : 4;
+    out.writeByte(width);
+    for (int value : values) {
+      switch (width) {
+        case 1:
+          out.writeByte(value + 1);
+          break;
+        case 2:
+          out.writeShort(value + 1);
+          break;
+        default:
+          out.writeInt(value + 1);
+      }
+    }
+  }
+
+  private static int[] ints(ByteBuffer in, int count) {
+    int width = in.get();
+    int[] values = new int[count];
+    switch (width) {
+      case 1:
+        for (int i = 0; i < count; ++i) {
+          values[i] = (in.get() & 0xFF) - 1;
+        }
+        break;
+      case 2:
+        for (int i = 0; i < count; ++i) {
+          values[i] = (in.getShort() & 0xFFFF) - 1;
+        }
+        break;
+      default:
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4 * count);
+        for (int i = 0; i < count; ++i) {
+          values[i] -= 1;
+        }
+    }
+    return values;
+  }
+
+  private static String[] strings(ByteBuffer in) {
+    String[] strings = new String[in.getInt()];
+    for (int i = 0; i < strings.length; ++i) {
+      int length = in.getInt();
+      if (length >= 0) {
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        strings[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+    }
+    return strings;
+  }
+
+  /**
+   * Distinct strings in order of first use ( tags may be null )
+   */
+  private static final class Table {
+    private final HashMap<String, Integer> ids = new HashMap<>();
+    private final ArrayList<String> strings = new ArrayList<>();
+
+    int id(String string) {
+      Integer id = ids.get(string);
+      if (id == null) {
+        id = strings.size();
+        ids.put(string, id);
+        strings.add(string);
+      }
+      return id;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      out.writeInt(strings.size());
+      for (String string : strings) {
+        if (string == null) {
+          out.writeInt(-1);
+          continue;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+    }
+  }
+}
@@ -16,7 +16,7 @@ public class CoNLLDep {
 
   @Override
   public String toString() {
-    return JSONFormat.gsonBuilder.disableHtmlEscaping().create().toJson(this);
+    return JSONCodec.toString(out -> JSONCodec.write(out, this));
   }
 
   public String toPrettyString(JSONFormat json) {
@@ -19,7 +19,7 @@ public class EntityObj {
 
   @Override
   public String toString() {
-    return JSONFormat.gsonBuilder.disableHtmlEscaping().create().toJson(this);
+    return JSONCodec.toString(out -> JSONCodec.write(out, this));
   }
 
   @Override
@@ -0,0 +1,572 @@
+package CCGInduction.data.JSON;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+
+/**
+ * Streaming reader/writer for JSONFormat and its parts built on Gson's
+ * JsonReader/JsonWriter.  Produces the same bytes as reflective Gson with
+ * HTML escaping disabled: fields in declaration order, null fields omitted.
+ * Number words are written with their lemma as the word form ( without
+ * modifying the WordObj ) as JSONFormat.toString() always has.
+ *
+ * @author bisk1
+ */
+final class JSONCodec {
+  private JSONCodec() {}
+
+  /**
+   * @param out Destination
+   * @return Writer configured as Gson.toJson configures it
+   */
+  static JsonWriter writer(Writer out) {
+    JsonWriter writer = new JsonWriter(out);
+    writer.setHtmlSafe(false);
+    writer.setSerializeNulls(false);
+    writer.setLenient(true);
+    return writer;
+  }
+
+  /**
+   * @param in Source
+   * @return Reader configured as Gson.fromJson configures it
+   */
+  static JsonReader reader(Reader in) {
+    JsonReader reader = new JsonReader(in);
+    reader.setLenient(true);
+    return reader;
+  }
+
+  // ---------- Writing ---------- //
+
+  /** Writes one value */
+  interface Value {
+    void write(JsonWriter out) throws IOException;
+  }
+
+  /**
+   * @param value Value to serialize
+   * @return JSON string
+   */
+  static String toString(Value value) {
+    StringWriter buffer = new StringWriter();
+    try {
+      value.write(writer(buffer));
+    } catch (IOException e) {
+      throw new JsonIOException(e);
+    }
+    return buffer.toString();
+  }
+
+  static void write(JsonWriter out, JSONFormat json) throws IOException {
+    write(out, json, true);
+  }
+
+  /**
+   * @param numbers Whether numbers are printed with their lemma as the word form
+   */
+  static void write(JsonWriter out, JSONFormat json, boolean numbers) throws IOException {
+    if (json == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    if (json.entities != null) {
+      out.name("entities").beginArray();
+      for (EntityObj entity : json.entities) {
+        write(out, entity);
+      }
+      out.endArray();
+    }
+    if (json.words != null) {
+      out.name("words").beginArray();
+      for (WordObj word : json.words) {
+        write(out, word, numbers);
+      }
+      out.endArray();
+    }
+    writeSynPars(out, "synPars", json.synPars);
+    writeSynPars(out, "goldSynPars", json.goldSynPars);
+    out.name("sentence").value(json.sentence);
+    out.name("parses");
+    number(out, json.parses);
+    writeStrings(out, "answerSubset", json.answerSubset);
+    out.name("boundedVarCount").value(json.boundedVarCount);
+    out.name("freeVarCount").value(json.freeVarCount);
+    out.name("freeEntityCount").value(json.freeEntityCount);
+    out.name("foreignEntityCount").value(json.foreignEntityCount);
+    out.name("negationCount").value(json.negationCount);
+    out.endObject();
+  }
+
+  /**
+   * @param numbers Whether numbers are printed with their lemma as the word form
+   */
+  static void write(JsonWriter out, WordObj word, boolean numbers) throws IOException {
+    if (word == null) {
+      out.nullValue();
+      return;
+    }
+    boolean number = numbers && word.lemma != null && ("NUM".equals(word.upos) || "CD".equals(word.pos));
+    out.beginObject();
+    out.name("ner").value(word.ner);
+    out.name("word").value(number ? word.lemma : word.word);
+    out.name("lemma").value(number ? null : word.lemma);
+    out.name("cluster").value(word.cluster);
+    out.name("pos").value(word.pos);
+    out.name("cpos").value(word.cpos);
+    out.name("upos").value(word.upos);
+    writeStrings(out, "supertags", word.supertags);
+    out.endObject();
+  }
+
+  static void write(JsonWriter out, SynParObj synPar) throws IOException {
+    if (synPar == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    out.name("synPar").value(synPar.synPar);
+    if (synPar.depParse != null) {
+      out.name("depParse").beginArray();
+      for (PARGDep dep : synPar.depParse) {
+        write(out, dep);
+      }
+      out.endArray();
+    }
+    if (synPar.conllParse != null) {
+      out.name("conllParse").beginArray();
+      for (CoNLLDep dep : synPar.conllParse) {
+        write(out, dep);
+      }
+      out.endArray();
+    }
+    out.name("score");
+    number(out, synPar.score);
+    out.endObject();
+  }
+
+  static void write(JsonWriter out, PARGDep dep) throws IOException {
+    if (dep == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    out.name("category").value(dep.category);
+    out.name("slot").value(dep.slot);
+    out.name("dependent").value(dep.dependent);
+    out.name("head").value(dep.head);
+    out.name("bounded").value(dep.bounded);
+    out.endObject();
+  }
+
+  static void write(JsonWriter out, CoNLLDep dep) throws IOException {
+    if (dep == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    out.name("index").value(dep.index);
+    out.name("head").value(dep.head);
+    out.name("label").value(dep.label);
+    out.endObject();
+  }
+
+  static void write(JsonWriter out, EntityObj entity) throws IOException {
+    if (entity == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    out.name("index").value(entity.index);
+    out.name("score");
+    number(out, entity.score);
+    out.name("entity").value(entity.entity);
+    out.endObject();
+  }
+
+  private static void writeSynPars(JsonWriter out, String name, SynParObj[] synPars) throws IOException {
+    if (synPars != null) {
+      out.name(name).beginArray();
+      for (SynParObj synPar : synPars) {
+        write(out, synPar);
+      }
+      out.endArray();
+    }
+  }
+
+  private static void writeStrings(JsonWriter out, String name, String[] values) throws IOException {
+    if (values != null) {
+      out.name(name).beginArray();
+      for (String value : values) {
+        out.value(value);
+      }
+      out.endArray();
+    }
+  }
+
+  private static void number(JsonWriter out, double value) throws IOException {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      throw new IllegalArgumentException(value + " is not a valid double value as per JSON specification.");
+    }
+    out.value(value);
+  }
+
+  // ---------- Reading ---------- //
+
+  /**
+   * @param serialized One JSON object
+   * @return The object, or null if the string is empty
+   */
+  static JSONFormat read(String serialized) {
+    if (serialized == null) {
+      return null;
+    }
+    JsonReader reader = reader(new StringReader(serialized));
+    try {
+      if (reader.peek() == JsonToken.END_DOCUMENT) {
+        return null;
+      }
+      JSONFormat json = readJSONFormat(reader);
+      if (reader.peek() != JsonToken.END_DOCUMENT) {
+        throw new JsonIOException("JSON document was not fully consumed.");
+      }
+      return json;
+    } catch (EOFException e) {
+      return null;
+    } catch (IllegalStateException | MalformedJsonException e) {
+      throw new JsonSyntaxException(e);
+    } catch (IOException e) {
+      throw new JsonIOException(e);
+    }
+  }
+
+  static JSONFormat readJSONFormat(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    JSONFormat json = new JSONFormat();
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "entities":
+          json.entities = readEntities(in);
+          break;
+        case "words":
+          json.words = readWords(in);
+          break;
+        case "synPars":
+          json.synPars = readSynPars(in);
+          break;
+        case "goldSynPars":
+          json.goldSynPars = readSynPars(in);
+          break;
+        case "sentence":
+          json.sentence = readString(in);
+          break;
+        case "parses":
+          Double parses = readDouble(in);
+          if (parses != null) {
+            json.parses = parses;
+          }
+          break;
+        case "answerSubset":
+          json.answerSubset = readStrings(in);
+          break;
+        case "boundedVarCount":
+          json.boundedVarCount = readInt(in);
+          break;
+        case "freeVarCount":
+          json.freeVarCount = readInt(in);
+          break;
+        case "freeEntityCount":
+          json.freeEntityCount = readInt(in);
+          break;
+        case "foreignEntityCount":
+          json.foreignEntityCount = readInt(in);
+          break;
+        case "negationCount":
+          json.negationCount = readInt(in);
+          break;
+        default:
+          in.skipValue();
+      }
+    }
+    in.endObject();
+    return json;
+  }
+
+  private static WordObj readWord(JsonReader in) throws IOException {
+    WordObj word = new WordObj();
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "ner":
+          word.ner = readString(in);
+          break;
+        case "word":
+          word.word = readString(in);
+          break;
+        case "lemma":
+          word.lemma = readString(in);
+          break;
+        case "cluster":
+          word.cluster = readString(in);
+          break;
+        case "pos":
+          word.pos = readString(in);
+          break;
+        case "cpos":
+          word.cpos = readString(in);
+          break;
+        case "upos":
+          word.upos = readString(in);
+          break;
+        case "supertags":
+          word.supertags = readStrings(in);
+          break;
+        default:
+          in.skipValue();
+      }
+    }
+    in.endObject();
+    return word;
+  }
+
+  private static SynParObj readSynPar(JsonReader in) throws IOException {
+    SynParObj synPar = new SynParObj();
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "synPar":
+          synPar.synPar = readString(in);
+          break;
+        case "depParse":
+          synPar.depParse = readPARG(in);
+          break;
+        case "conllParse":
+          synPar.conllParse = readCoNLL(in);
+          break;
+        case "score":
+          Double score = readDouble(in);
+          if (score != null) {
+            synPar.score = score;
+          }
+          break;
+        default:
+          in.skipValue();
+      }
+    }
+    in.endObject();
+    return synPar;
+  }
+
+  private static PARGDep readPARGDep(JsonReader in) throws IOException {
+    String category = null, bounded = null;
+    int slot = 0, dependent = 0, head = 0;
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "category":
+          category = readString(in);
+          break;
+        case "slot":
+          slot = readPrimitiveInt(in, slot);
+          break;
+        case "dependent":
+          dependent = readPrimitiveInt(in, dependent);
+          break;
+        case "head":
+          head = readPrimitiveInt(in, head);
+          break;
+        case "bounded":
+          bounded = readString(in);
+          break;
+        default:
+          in.skipValue();
+      }
+    }
+    in.endObject();
+    return new PARGDep(category, slot, dependent, head, bounded);
+  }
+
+  private static CoNLLDep readCoNLLDep(JsonReader in) throws IOException {
+    String label = null;
+    int index = 0, head = 0;
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "index":
+          index = readPrimitiveInt(in, index);
+          break;
+        case "head":
+          head = readPrimitiveInt(in, head);
+          break;
+        case "label":
+          label = readString(in);
+          break;
+        default:
+          in.skipValue();
+      }
+    }
+    in.endObject();
+    return new CoNLLDep(index, head, label);
+  }
+
+  private static EntityObj readEntity(JsonReader in) throws IOException {
+    String entity = null;
+    int index = 0;
+    double score = 0.0;
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "index":
+          index = readPrimitiveInt(in, index);
+          break;
+        case "score":
+          Double value = readDouble(in);
+          score = value == null ? score : value;
+          break;
+        case "entity":
+          entity = readString(in);
+          break;
+        default:
+          in.skipValue();
+      }
+    }
+    in.endObject();
+    return new EntityObj(index, entity, score);
+  }
+
+  // Arrays: null, or one element per entry ( null entries stay null )
+
+  private static EntityObj[] readEntities(JsonReader in) throws IOException {
+    if (nullArray(in)) return null;
+    ArrayList<EntityObj> list = new ArrayList<>();
+    while (in.hasNext()) {
+      list.add(nullElement(in) ? null : readEntity(in));
+    }
+    in.endArray();
+    return list.toArray(new EntityObj[list.size()]);
+  }
+
+  private static WordObj[] readWords(JsonReader in) throws IOException {
+    if (nullArray(in)) return null;
+    ArrayList<WordObj> list = new ArrayList<>();
+    while (in.hasNext()) {
+      list.add(nullElement(in) ? null : readWord(in));
+    }
+    in.endArray();
+    return list.toArray(new WordObj[list.size()]);
+  }
+
+  private static SynParObj[] readSynPars(JsonReader in) throws IOException {
+    if (nullArray(in)) return null;
+    ArrayList<SynParObj> list = new ArrayList<>();
+    while (in.hasNext()) {
+      list.add(nullElement(in) ? null : readSynPar(in));
+    }
+    in.endArray();
+    return list.toArray(new SynParObj[list.size()]);
+  }
+
+  private static PARGDep[] readPARG(JsonReader in) throws IOException {
+    if (nullArray(in)) return null;
+    ArrayList<PARGDep> list = new ArrayList<>();
+    while (in.hasNext()) {
+      list.add(nullElement(in) ? null : readPARGDep(in));
+    }
+    in.endArray();
+    return list.toArray(new PARGDep[list.size()]);
+  }
+
+  private static CoNLLDep[] readCoNLL(JsonReader in) throws IOException {
+    if (nullArray(in)) return null;
+    ArrayList<CoNLLDep> list = new ArrayList<>();
+    while (in.hasNext()) {
+      list.add(nullElement(in) ? null : readCoNLLDep(in));
+    }
+    in.endArray();
+    return list.toArray(new CoNLLDep[list.size()]);
+  }
+
+  private static String[] readStrings(JsonReader in) throws IOException {
+    if (nullArray(in)) return null;
+    ArrayList<String> list = new ArrayList<>();
+    while (in.hasNext()) {
+      list.add(readString(in));
+    }
+    in.endArray();
+    return list.toArray(new String[list.size()]);
+  }
+
+  /**
+   * Consumes a null or the start of an array
+   * @return If the value was null
+   */
+  private static boolean nullArray(JsonReader in) throws IOException {
+    if (nullElement(in)) {
+      return true;
+    }
+    in.beginArray();
+    return false;
+  }
+
+  private static boolean nullElement(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return true;
+    }
+    return false;
+  }
+
+  // Scalars follow Gson's type adapters ( e.g. numbers are accepted as strings )
+
+  private static String readString(JsonReader in) throws IOException {
+    JsonToken token = in.peek();
+    if (token == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    if (token == JsonToken.BOOLEAN) {
+      return Boolean.toString(in.nextBoolean());
+    }
+    return in.nextString();
+  }
+
+  private static Integer readInt(JsonReader in) throws IOException {
+    if (nullElement(in)) {
+      return null;
+    }
+    try {
+      return in.nextInt();
+    } catch (NumberFormatException e) {
+      throw new JsonSyntaxException(e);
+    }
+  }
+
+  private static int readPrimitiveInt(JsonReader in, int current) throws IOException {
+    Integer value = readInt(in);
+    return value == null ? current : value;
+  }
+
+  private static Double readDouble(JsonReader in) throws IOException {
+    if (nullElement(in)) {
+      return null;
+    }
+    return in.nextDouble();
+  }
+}
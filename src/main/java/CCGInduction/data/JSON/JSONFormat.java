@@ -2,8 +2,6 @@ package CCGInduction.data.JSON;
 
 import CCGInduction.ccg.CCGCategoryUtilities;
 import CCGInduction.grammar.Grammar;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import CCGInduction.Configuration;
 import CCGInduction.data.LexicalToken;
 import CCGInduction.data.Sentence;
@@ -13,6 +11,7 @@ import CCGInduction.utils.TextFile;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -24,9 +23,6 @@ import java.util.List;
  */
 public class JSONFormat {
 
-  static final GsonBuilder gsonBuilder = new GsonBuilder();
-  private static final Gson gsonReader = new Gson();
-
   public EntityObj[] entities;
   public WordObj[] words;
   public SynParObj[] synPars;
@@ -44,17 +40,17 @@ public class JSONFormat {
   public Integer negationCount;
 
   public static String pargString(PARGDep[] deps, JSONFormat json) {
-    String s = "<s> " + deps.length + "\n";
+    StringBuilder s = new StringBuilder("<s> ").append(deps.length).append('\n');
     for (PARGDep dep : deps)
-      s += dep.toPrettyString(json);
-    return s + "<\\s>";
+      s.append(dep.toPrettyString(json));
+    return s.append("<\\s>").toString();
   }
 
   public static String conllString(CoNLLDep[] deps, JSONFormat json) {
-    String s = "";
+    StringBuilder s = new StringBuilder();
     for (CoNLLDep dep : deps)
-      s += dep.toPrettyString(json);
-    return s;
+      s.append(dep.toPrettyString(json));
+    return s.toString();
   }
 
   public boolean equals(Object o) {
@@ -68,15 +64,22 @@ public class JSONFormat {
     // Does not require variable accounts in equality
   }
 
+  /**
+   * Serializes to one line of JSON.  Numbers are written with their lemma as
+   * the word form ( the words themselves are left untouched )
+   */
   @Override
   public String toString() {
-    for (WordObj word : words){
-      if (word.lemma != null && (word.upos.equals("NUM") || word.pos.equals("CD"))) {
-        word.word = word.lemma;
-        word.lemma= null;
-      }
-    }
-    return gsonBuilder.disableHtmlEscaping().create().toJson(this);
+    return JSONCodec.toString(out -> JSONCodec.write(out, this));
+  }
+
+  /**
+   * Streams the JSON straight to a writer ( same output as toString() )
+   * @param writer Destination
+   * @throws IOException
+   */
+  public void write(Writer writer) throws IOException {
+    JSONCodec.write(JSONCodec.writer(writer), this);
   }
 
   /**
@@ -227,9 +230,10 @@ public class JSONFormat {
           return;
       }
       BufferedWriter writer = TextFile.Writer(args[i].split(".gz")[0] + ".json.gz");
-      GsonBuilder gson = new GsonBuilder();
+      // Converted words are written as read, numbers keep their surface form
       for (JSONFormat JSON : input) {
-        writer.write(gson.disableHtmlEscaping().create().toJson(JSON) + "\n");
+        JSONCodec.write(JSONCodec.writer(writer), JSON, false);
+        writer.write('\n');
       }
       System.out.println("\t\t" + input.size() + " sentences");
       writer.close();
@@ -245,7 +249,7 @@ public class JSONFormat {
     ArrayList<JSONFormat> parses = new ArrayList<>();
     List<String> file = TextFile.Read(filename);
     for (String line : file)
-      parses.add(gsonReader.fromJson(line, JSONFormat.class));
+      parses.add(JSONCodec.read(line));
     return parses;
   }
 
@@ -254,7 +258,7 @@ public class JSONFormat {
    * @param serializedString JSON formatted string
    */
   public static JSONFormat deSerialize(String serializedString) {
-    return gsonReader.fromJson(serializedString, JSONFormat.class);
+    return JSONCodec.read(serializedString);
   }
 
   /**
@@ -24,7 +24,7 @@ public class PARGDep {
 
   @Override
   public String toString() {
-    return JSONFormat.gsonBuilder.disableHtmlEscaping().create().toJson(this);
+    return JSONCodec.toString(out -> JSONCodec.write(out, this));
   }
 
   @Override
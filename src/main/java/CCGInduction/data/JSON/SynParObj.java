@@ -13,7 +13,7 @@ public class SynParObj {
 
   @Override
   public String toString() {
-    return JSONFormat.gsonBuilder.disableHtmlEscaping().create().toJson(this);
+    return JSONCodec.toString(out -> JSONCodec.write(out, this));
   }
 
   @Override
@@ -34,7 +34,7 @@ public class WordObj {
 
   @Override
   public String toString() {
-    return JSONFormat.gsonBuilder.disableHtmlEscaping().create().toJson(this);
+    return JSONCodec.toString(out -> JSONCodec.write(out, this, false));
   }
 
   @Override
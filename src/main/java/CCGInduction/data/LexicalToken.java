@@ -5,93 +5,67 @@ import CCGInduction.grammar.Grammar;
 import CCGInduction.hmm.BigramModel;
 
 import java.io.IOException;
-import java.io.Serializable;
 import java.io.Writer;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
-import static CCGInduction.data.Tagset.TAG_TYPE.*;
-
 /**
  * A Lexical item which contains part-of-speech tags, word forms and optional
- * category
+ * category.  Tokens are views of a row in the TokenColumns of their sentence,
+ * so setting a tag or word changes the stored sentence.
  * 
  * @author bisk1
  */
-public class LexicalToken implements Serializable {
-  private final long[] words = new long[3];
-  /**
-   * The POS tags ( coarse, fine, universal, induced )
-   */
-  private final POS[] tags = new POS[4];
-  private long[] categories;
-  private String freebase = "";
+public class LexicalToken {
+  private final TokenColumns columns;
+  private final int index;
 
   /**
-   * Definte a lexical item
-   * 
-   * @param word    word hash
-   * @param lemma   lemma hash
-   * @param CPOSTAG Coarse POS tag
-   * @param POSTAG  Fine POS tag
-   * @param UNIVERSAL Universal POS tag
+   * View of a stored token
+   *
+   * @param columns Token store
+   * @param index   Row of the token
    */
-  public LexicalToken(long raw, long word, long lemma, POS CPOSTAG, POS POSTAG, POS UNIVERSAL, POS INDUCED, String fbid) {
-    words[0] = word;
-    words[1] = lemma;
-    words[2] = raw;
-    tags[0] = CPOSTAG;
-    tags[1] = POSTAG;
-    tags[2] = UNIVERSAL;
-    tags[3] = INDUCED;
-    if (!fbid.equals("_")) {
-      freebase = fbid;
-    }
+  LexicalToken(TokenColumns columns, int index) {
+    this.columns = columns;
+    this.index = index;
   }
 
   /**
-   * Set's the POS tag
-   * 
-   * @param posTag POS tag
+   * @return The column holding the configured tag type
    */
-  public void tag(POS posTag) {
+  private static int tagColumn() {
     switch (Configuration.tagType) {
     case Coarse:
-      tags[0] = posTag;
-      break;
+      return TokenColumns.COARSE;
     case Custom:
     case Fine:
-      tags[1] = posTag;
-      break;
+      return TokenColumns.FINE;
     case Universal:
-      tags[2] = posTag;
-      break;
+      return TokenColumns.UNIVERSAL;
     case Induced:
-      tags[3] = posTag;
-      break;
+      return TokenColumns.INDUCED;
     default:
       throw new Grammar.GrammarException("Invalid tag type:" + Configuration.tagType);
     }
   }
 
+  /**
+   * Set's the POS tag
+   * 
+   * @param posTag POS tag
+   */
+  public void tag(POS posTag) {
+    columns.tag(tagColumn(), index, posTag);
+  }
+
   /**
    * Retrieves the POS tag
    * 
    * @return POS
    */
   public POS tag() {
-    switch (Configuration.tagType) {
-    case Coarse:
-      return tags[0];
-    case Custom:
-    case Fine:
-      return tags[1];
-    case Universal:
-      return tags[2];
-    case Induced:
-      return tags[3];
-    }
-    return null;
+    return columns.tag(tagColumn(), index);
   }
 
   /**
@@ -99,7 +73,7 @@ public class LexicalToken implements Serializable {
    * @return Induced POS tag
    */
   public POS induced() {
-    return tags[3];
+    return columns.tag(TokenColumns.INDUCED, index);
   }
 
   /**
@@ -125,12 +99,12 @@ public class LexicalToken implements Serializable {
    * @throws IOException
    */
   public final void print(Grammar grammar, Writer writer) throws IOException {
-    String word = grammar.Words.get(words[0]);
-    String lemma = grammar.Words.get(words[1]);
-    String CPOS = tags[0].toString();
-    String POS = tags[1].toString();
-    String UPOS = tags[2].toString();
-    String IPOS = tags[3].toString();
+    String word = grammar.Words.get(word());
+    String lemma = grammar.Words.get(lemma());
+    String CPOS = coarse().toString();
+    String POS = fine().toString();
+    String UPOS = universal().toString();
+    String IPOS = induced().toString();
     writer.write(String.format("%-25s %-20s %-10s %-10s %-10s %-10s\n", word, lemma, CPOS, POS, UPOS, IPOS));
   }
 
@@ -140,11 +114,11 @@ public class LexicalToken implements Serializable {
    * @return word hash
    */
   public long word() {
-    return words[0];
+    return columns.word(index);
   }
 
   public long rawWord() {
-    return words[2];
+    return columns.raw(index);
   }
 
   /**
@@ -154,7 +128,7 @@ public class LexicalToken implements Serializable {
    * @return String representation of word
    */
   public String word(Grammar grammar) {
-    return grammar.Words.get(words[0]);
+    return grammar.Words.get(word());
   }
 
   /**
@@ -163,7 +137,7 @@ public class LexicalToken implements Serializable {
    * @param val New Word representation
    */
   public void word(long val) {
-    words[0] = val;
+    columns.word(index, val);
   }
 
   /**
@@ -172,7 +146,7 @@ public class LexicalToken implements Serializable {
    * @return lemma hash
    */
   public long lemma() {
-    return words[1];
+    return columns.lemma(index);
   }
 
   /**
@@ -182,7 +156,7 @@ public class LexicalToken implements Serializable {
    * @return String representation of lemma
    */
   public String lemma(Grammar grammar) {
-    return grammar.Words.get(words[1]);
+    return grammar.Words.get(lemma());
   }
 
   /**
@@ -191,7 +165,7 @@ public class LexicalToken implements Serializable {
    * @return Coarse POS
    */
   public POS coarse() {
-    return tags[0];
+    return columns.tag(TokenColumns.COARSE, index);
   }
 
   /**
@@ -200,7 +174,7 @@ public class LexicalToken implements Serializable {
    * @return Fine POS
    */
   public POS fine() {
-    return tags[1];
+    return columns.tag(TokenColumns.FINE, index);
   }
 
   /**
@@ -209,7 +183,7 @@ public class LexicalToken implements Serializable {
    * @return Universal POS
    */
   public POS universal() {
-    return tags[2];
+    return columns.tag(TokenColumns.UNIVERSAL, index);
   }
 
   /**
@@ -218,7 +192,7 @@ public class LexicalToken implements Serializable {
    * @param inducedTag Induced POS Tag
    */
   public void induced(POS inducedTag) {
-    tags[3] = inducedTag;
+    columns.tag(TokenColumns.INDUCED, index, inducedTag);
   }
 
   /**
@@ -227,7 +201,7 @@ public class LexicalToken implements Serializable {
    * @return SuperTags' hash
    */
   public long[] cat() {
-    return categories;
+    return columns.categories(index);
   }
 
   /**
@@ -235,9 +209,10 @@ public class LexicalToken implements Serializable {
    * @param superTags Category
    */
   public void cat(List<Long> superTags){
-    categories = new long[superTags.size()];
+    long[] categories = new long[superTags.size()];
     for (int i = 0; i < categories.length; ++i)
       categories[i] = superTags.get(i);
+    columns.categories(index, categories);
   }
 
   /**
@@ -247,6 +222,7 @@ public class LexicalToken implements Serializable {
    * @return String representation of SuperTag
    */
   public String[] cat(Grammar grammar) {
+    long[] categories = cat();
     if (categories == null)
       return null;
     String[] cats = new String[categories.length];
@@ -256,7 +232,7 @@ public class LexicalToken implements Serializable {
   }
 
   public String FBid() {
-    return freebase;
+    return columns.freebase(index);
   }
 
   public long wordOrUnk(ConcurrentHashMap<Long, Boolean> knownWords) {
@@ -23,6 +23,13 @@ final public class POS implements Serializable {
     id = Tagset.add(pos);
   }
 
+  /**
+   * @return Index of the tag in Tagset.STRINGS
+   */
+  int id() {
+    return id;
+  }
+
   @Override
   public boolean equals(Object o) {
     return this == o || POS.class.isInstance(o) && id == ((POS)o).id;
@@ -17,16 +17,30 @@ import java.util.Arrays;
 import java.util.Iterator;
 
 /**
- * Data-structure for data read in that stores all information given.
+ * Data-structure for data read in that stores all information given.  The
+ * tokens live in TokenColumns, which an in-memory corpus shares between its
+ * sentences, and a Sentence is a view of a contiguous range of rows.
  *
  * @author bisk1
  */
 public class Sentence implements Externalizable, Iterable<LexicalToken> {
-  private LexicalToken[] sentence = new LexicalToken[0];
+  private static final int[] EMPTY = new int[0];
+  /**
+   * Token store and the row of the first token
+   */
+  private TokenColumns columns;
+  private int start;
   /**
    * Full sentence with punctuation
    */
-  public LexicalToken[] sentence_wP = new LexicalToken[0];
+  private int length_wP = 0;
+  /**
+   * Sentence without punctuation, as offsets into the full sentence.  Grows
+   * by doubling while words are added and is trimmed once the sentence is
+   * complete
+   */
+  private int[] noP = EMPTY;
+  private int length_noP = 0;
 
   // Store the input JSON.  We are not serializaing this object
   // so it will be returned to null during training.  But will last
@@ -49,9 +63,39 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
   private boolean question = false;
 
   /**
-   * Empty sentence
+   * Empty sentence, which stores its own tokens
    */
   public Sentence() {
+    this(new TokenColumns(TokenColumns.SENTENCE));
+  }
+
+  /**
+   * Empty sentence whose tokens are appended to columns.  Sentences sharing
+   * columns must be read one after the other.
+   *
+   * @param columns Token store
+   */
+  Sentence(TokenColumns columns) {
+    this.columns = columns;
+    this.start = columns.size();
+  }
+
+  /**
+   * Sentence over rows which are already stored
+   *
+   * @param columns  Token store
+   * @param start    Row of the first token
+   * @param length   Number of tokens ( with punctuation )
+   * @param question Ends in a question mark
+   */
+  Sentence(TokenColumns columns, int start, int length, boolean question) {
+    this.columns = columns;
+    this.start = start;
+    this.length_wP = length;
+    this.question = question;
+    this.statement = !question;
+    refactorPunctuation();
+    computeFirstAndLast();
   }
 
   /**
@@ -61,6 +105,7 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
    * @param grammar Grammar instance
    */
   public Sentence(String AUTO, Grammar grammar) {
+    this();
     String[] words = CCGCategoryUtilities.AUTOtoWords(AUTO);
     String[] tags = CCGCategoryUtilities.AUTOtoTags(AUTO);
     String[] categories = CCGCategoryUtilities.AUTOtoCATS(AUTO);
@@ -86,8 +131,11 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
    * @param toCopy  Sentence to copy
    */
   void copy(Sentence toCopy) {
-    sentence = Arrays.copyOf(toCopy.sentence, toCopy.sentence.length);
-    sentence_wP = Arrays.copyOf(toCopy.sentence_wP, toCopy.sentence_wP.length);
+    for (int i = 0; i < toCopy.length_wP; ++i) {
+      added(columns.add(toCopy.columns, toCopy.start + i));
+    }
+    noP = Arrays.copyOf(toCopy.noP, toCopy.length_noP);
+    length_noP = toCopy.length_noP;
     JSON = toCopy.JSON;
     AUTOparse = toCopy.AUTOparse;
     statement = toCopy.statement;
@@ -111,7 +159,7 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
     if (s[3].contains("null")) {
       s[3] = "CD";
     }
-    POS tag = new POS(s[3]);
+    POS tag = Tagset.intern(s[3]);
     s[1] = s[1].toLowerCase();
     if (s[1].equals("?")) {
       question = true;
@@ -130,11 +178,11 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
 
     word = grammar.Lex(w);
 
-    POS CPOSTAG = new POS(s[3]);
-    POS POSTAG = new POS(process(s[4]));
-    POS Universal = new POS("_");
+    POS CPOSTAG = Tagset.intern(s[3]);
+    POS POSTAG = Tagset.intern(process(s[4]));
+    POS Universal = Tagset.intern("_");
     if (Configuration.hasUniversalTags) {
-      Universal = new POS(s[5]);
+      Universal = Tagset.intern(s[5]);
     }
     if (s[3].equals("_")) {
       CPOSTAG = Universal;
@@ -148,26 +196,16 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
       fbid = s[6];
     }
 
-    LexicalToken lt = new LexicalToken(raw, word, lemma, CPOSTAG, POSTAG, Universal, new POS("_"), fbid);
+    LexicalToken lt = add(raw, word, lemma, CPOSTAG, POSTAG, Universal, Tagset.intern("_"), fbid);
     // Use actual word form as the tag for punctuation
     if (!Configuration.ignorePunctuation && Configuration.source != Training.supervised &&
         (Tagset.Punct(lt.tag()))) {// || TAGSET.Punct(lt.coarse()))) {// || TAGSET.Punct(lt.universal()))) {
-      POS new_tag = new POS(s[1]);
+      POS new_tag = Tagset.intern(s[1]);
       lt.tag(new_tag);
-      Tagset.addPunctuationTag(new_tag);
-      if (Configuration.source.equals(Training.induction)) {
-        CCGAtomic atomic_p = new CCGAtomic(new_tag.toString());
-        grammar.createRule(grammar.NT(new InducedCAT(atomic_p)), grammar.Lex(new_tag.toString()), Rule_Type.PRODUCTION);
-        InducedCAT.punc = InducedCAT.add(InducedCAT.punc, atomic_p);
-      }
+      punctuation(new_tag, grammar, Configuration.source.equals(Training.induction));
     }
 
-    sentence_wP = Arrays.copyOf(sentence_wP, sentence_wP.length + 1);
-    sentence_wP[sentence_wP.length - 1] = lt;
-    if (!Tagset.Punct(lt.tag())) {
-      sentence = Arrays.copyOf(sentence, sentence.length + 1);
-      sentence[sentence.length - 1] = lt;
-    }
+    index(lt);
   }
 
   /**
@@ -191,7 +229,7 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
     }
 
     long raw = g.Lex(word_obj.word);
-    POS POSTAG = new POS(word_obj.pos);
+    POS POSTAG = Tagset.intern(word_obj.pos);
 
     if (word_obj.cpos == null) {
       word_obj.cpos = "_";
@@ -199,13 +237,13 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
     if (word_obj.upos == null) {
       word_obj.upos = "_";
     }
-    POS CPOSTAG = new POS(word_obj.cpos);
-    POS Universal = new POS(word_obj.upos);
+    POS CPOSTAG = Tagset.intern(word_obj.cpos);
+    POS Universal = Tagset.intern(word_obj.upos);
     long lemma = g.Lex("_");
     if (word_obj.lemma != null) {
       lemma = g.Lex(word_obj.lemma);
     }
-    POS Induced = new POS(word_obj.cluster);
+    POS Induced = Tagset.intern(word_obj.cluster);
 
     // In the case of numbers, we lexicalize with the word converted: 10.00 -> XX.XX
     // but store the original value in the lemma
@@ -213,19 +251,13 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
         || (word_obj.upos != null && word_obj.upos.equals("NUM"))) {
       word = g.Lex(Tagset.convertNumber(word_obj.word));
     }
-    LexicalToken lt = new LexicalToken(raw, word, lemma, CPOSTAG, POSTAG, Universal, Induced, FBID);
+    LexicalToken lt = add(raw, word, lemma, CPOSTAG, POSTAG, Universal, Induced, FBID);
 
     // Create emission rule based on SuperTag
     if (word_obj.supertags != null && word_obj.supertags.length != 0) {
       ArrayList<Long> cats = new ArrayList<>();
       for (String cat : word_obj.supertags) {
-        // Check if this is a primitive (like punctuation)
-        if (Tagset.valueOf(cat) != null) {
-          CCGAtomic atomic_p = new CCGAtomic(cat);
-          cats.add(g.NT(new InducedCAT(atomic_p)));
-        } else {
-          cats.add(g.NT(InducedCAT.valueOf(cat)));
-        }
+        cats.add(category(cat, g));
       }
       lt.cat(cats);
     }
@@ -233,21 +265,87 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
     // Special case of punctuation changing tagset.
     // We elevate the lexical punctuation emissions to being grammatical symbols
     if (!Configuration.ignorePunctuation && Tagset.Punct(lt.tag()) && Configuration.source != Training.supervised) {
-      POS new_tag = new POS(word_obj.word);
+      POS new_tag = Tagset.intern(word_obj.word);
       lt.tag(new_tag);
-      Tagset.addPunctuationTag(new_tag);
-      CCGAtomic atomic_p = new CCGAtomic(new_tag.toString());
-      g.createRule(g.NT(new InducedCAT(atomic_p)), g.Lex(new_tag.toString()), Rule_Type.PRODUCTION);
-      InducedCAT.punc = InducedCAT.add(InducedCAT.punc, atomic_p);
+      punctuation(new_tag, g, true);
     }
 
     // Add as newest word in the sentence
-    sentence_wP = Arrays.copyOf(sentence_wP, sentence_wP.length + 1);
-    sentence_wP[sentence_wP.length - 1] = lt;
-    // Also store a copy of the sentence without punctuation
+    index(lt);
+  }
+
+  /**
+   * Registers a tag as punctuation, and optionally as a grammatical symbol
+   * which emits its word
+   * @param tag     Punctuation tag ( the word form )
+   * @param grammar Grammar
+   * @param rule    Create the lexical rule
+   */
+  static void punctuation(POS tag, Grammar grammar, boolean rule) {
+    Tagset.addPunctuationTag(tag);
+    if (rule) {
+      CCGAtomic atomic_p = new CCGAtomic(tag.toString());
+      grammar.createRule(grammar.NT(new InducedCAT(atomic_p)), grammar.Lex(tag.toString()), Rule_Type.PRODUCTION);
+      InducedCAT.punc = InducedCAT.add(InducedCAT.punc, atomic_p);
+    }
+  }
+
+  /**
+   * Hash of a supertag
+   * @param cat     Category string
+   * @param grammar Grammar
+   * @return Category id
+   */
+  static long category(String cat, Grammar grammar) {
+    // Check if this is a primitive (like punctuation)
+    if (Tagset.valueOf(cat) != null) {
+      return grammar.NT(new InducedCAT(new CCGAtomic(cat)));
+    }
+    return grammar.NT(InducedCAT.valueOf(cat));
+  }
+
+  /**
+   * Adds a token to the end of the sentence
+   * @return View of the new token
+   */
+  private LexicalToken add(long raw, long word, long lemma, POS coarse, POS fine, POS universal, POS induced,
+                           String fbid) {
+    int row = columns.add(raw, word, lemma, coarse, fine, universal, induced, fbid);
+    added(row);
+    return new LexicalToken(columns, row);
+  }
+
+  /**
+   * Extends the sentence by the row just appended to its columns
+   * @param row Row of the new token
+   */
+  private void added(int row) {
+    if (row != start + length_wP) {
+      throw new IllegalStateException("Sentences sharing columns must be read one at a time");
+    }
+    ++length_wP;
+  }
+
+  /**
+   * Adds the last token to the sentence without punctuation unless it is
+   * punctuation.  Called once its tag is final.
+   * @param lt Token
+   */
+  private void index(LexicalToken lt) {
     if (!Tagset.Punct(lt.tag())) {
-      sentence = Arrays.copyOf(sentence, sentence.length + 1);
-      sentence[sentence.length - 1] = lt;
+      if (length_noP == noP.length) {
+        noP = Arrays.copyOf(noP, Math.max(8, 2 * length_noP));
+      }
+      noP[length_noP++] = length_wP - 1;
+    }
+  }
+
+  /**
+   * Drops the unused capacity left by index()
+   */
+  private void trim() {
+    if (noP.length != length_noP) {
+      noP = Arrays.copyOf(noP, length_noP);
     }
   }
 
@@ -258,7 +356,7 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
       }
       if (Configuration.TAGSET.contains("danish")) {
         String n = s.substring(0, 3);
-        if (Tagset.STRINGS.contains(n)) {
+        if (Tagset.valueOf(n) != null) {
           return n;
         }
         return s.substring(0, 2);
@@ -268,13 +366,15 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
   }
 
   final void computeFirstAndLast() {
+    // Called once the sentence has been read
+    trim();
     if (Configuration.ignorePunctuation) {
-      lastWord = sentence.length - 1;
+      lastWord = length_noP - 1;
       firstWord = 0;
       return;
     }
-    for (int i = 0; i < sentence_wP.length; i++) {
-      if (!Tagset.Punct(sentence_wP[i].tag())) {
+    for (int i = 0; i < length_wP; i++) {
+      if (!Tagset.Punct(getWP(i).tag())) {
         lastWord = i;
         if (firstWord == -1) {
           firstWord = i;
@@ -283,13 +383,27 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
     }
   }
 
+  /**
+   * @return Token store of the sentence
+   */
+  final TokenColumns columns() {
+    return columns;
+  }
+
+  /**
+   * @return Row of the first token in columns()
+   */
+  final int start() {
+    return start;
+  }
+
   /**
    * Returns the length of the sentence without punctuation
    *
    * @return int
    */
   public final int length_noP() {
-    return sentence.length;
+    return length_noP;
   }
 
   /**
@@ -300,9 +414,18 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
    */
   public final int length() {
     if (Configuration.ignorePunctuation) {
-      return sentence.length;
+      return length_noP;
     }
-    return sentence_wP.length;
+    return length_wP;
+  }
+
+  /**
+   * Returns the length of the sentence with punctuation
+   *
+   * @return int
+   */
+  public final int length_wP() {
+    return length_wP;
   }
 
   /**
@@ -313,9 +436,9 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
    */
   public final LexicalToken get(int index) {
     if (Configuration.ignorePunctuation) {
-      return sentence[index];
+      return getNP(index);
     }
-    return sentence_wP[index];
+    return getWP(index);
   }
 
   /**
@@ -325,7 +448,10 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
    * @return LexicalToken
    */
   public final LexicalToken getWP(int index) {
-    return sentence_wP[index];
+    if (index < 0 || index >= length_wP) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+    return new LexicalToken(columns, start + index);
   }
 
   /**
@@ -335,7 +461,10 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
    * @return Lexical Token
    */
   public final LexicalToken getNP(int index) {
-    return sentence[index];
+    if (index >= length_noP) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+    return new LexicalToken(columns, start + noP[index]);
   }
 
   /**
@@ -358,8 +487,8 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
    */
   final String withPunctuation() {
     String toRet = "";
-    for (LexicalToken token : sentence_wP) {
-      toRet += token.fine() + " ";
+    for (int i = 0; i < length_wP; i++) {
+      toRet += getWP(i).fine() + " ";
     }
     return toRet;
   }
@@ -406,14 +535,8 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
    * @throws IOException
    */
   public final void print(Grammar grammar, Writer writer) throws IOException {
-    if (Configuration.ignorePunctuation) {
-      for (LexicalToken lt : sentence) {
-        lt.print(grammar, writer);
-      }
-    } else {
-      for (LexicalToken lt : sentence_wP) {
-        lt.print(grammar, writer);
-      }
+    for (int i = 0; i < length(); i++) {
+      get(i).print(grammar, writer);
     }
     writer.write("\n");
   }
@@ -445,13 +568,13 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
   final String subStringWithP(int leftIndex, int rightIndex, Grammar grammar) {
     String toRet = "";
     for (int i = leftIndex; i <= rightIndex; i++) {
-      toRet += "< " + grammar.Words.get(sentence_wP[i].word()) + " "
-          + sentence_wP[i].tag() + " > ";
+      toRet += "< " + grammar.Words.get(getWP(i).word()) + " "
+          + getWP(i).tag() + " > ";
     }
-    for (int i = rightIndex; i < sentence_wP.length; i++) {
-      if (Tagset.Punct(sentence_wP[i].tag())) {
-        toRet += "< " + grammar.Words.get(sentence_wP[i].word()) + " "
-            + sentence_wP[i].tag() + " > ";
+    for (int i = rightIndex; i < length_wP; i++) {
+      if (Tagset.Punct(getWP(i).tag())) {
+        toRet += "< " + grammar.Words.get(getWP(i).word()) + " "
+            + getWP(i).tag() + " > ";
       } else {
         return toRet;
       }
@@ -463,30 +586,77 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
    * Redefine punctuation
    */
   public final void refactorPunctuation() {
-    ArrayList<LexicalToken> noP = new ArrayList<>();
-    for (LexicalToken lt : sentence_wP) {
-      if (!Tagset.Punct(lt.tag())) {
-        noP.add(lt);
+    noP = new int[length_wP];
+    length_noP = 0;
+    for (int i = 0; i < length_wP; i++) {
+      if (!Tagset.Punct(getWP(i).tag())) {
+        noP[length_noP++] = i;
       }
     }
-    sentence = new LexicalToken[noP.size()];
-    for (int i = 0; i < sentence.length; i++) {
-      sentence[i] = noP.get(i);
-    }
+    trim();
   }
 
+  /**
+   * Reads a sentence into columns of its own
+   */
   @Override
   public void readExternal(ObjectInput in) throws IOException,
       ClassNotFoundException {
-    sentence = (LexicalToken[]) in.readObject();
-    sentence_wP = (LexicalToken[]) in.readObject();
+    int length = in.readInt();
+    columns = TokenColumns.sized(length);
+    start = 0;
+    length_wP = 0;
+    for (int i = 0; i < length; ++i) {
+      long raw = in.readLong();
+      long word = in.readLong();
+      long lemma = in.readLong();
+      POS coarse = Tagset.get(in.readInt());
+      POS fine = Tagset.get(in.readInt());
+      POS universal = Tagset.get(in.readInt());
+      POS induced = Tagset.get(in.readInt());
+      add(raw, word, lemma, coarse, fine, universal, induced, in.readUTF());
+      int cats = in.readInt();
+      if (cats >= 0) {
+        long[] categories = new long[cats];
+        for (int c = 0; c < cats; ++c) {
+          categories[c] = in.readLong();
+        }
+        columns.categories(start + i, categories);
+      }
+    }
+    length_noP = in.readInt();
+    noP = new int[length_noP];
+    for (int i = 0; i < length_noP; ++i) {
+      noP[i] = in.readInt();
+    }
     computeFirstAndLast();
   }
 
   @Override
   public void writeExternal(ObjectOutput out) throws IOException {
-    out.writeObject(sentence);
-    out.writeObject(sentence_wP);
+    out.writeInt(length_wP);
+    for (int i = 0; i < length_wP; ++i) {
+      int row = start + i;
+      out.writeLong(columns.raw(row));
+      out.writeLong(columns.word(row));
+      out.writeLong(columns.lemma(row));
+      out.writeInt(columns.tag(TokenColumns.COARSE, row).id());
+      out.writeInt(columns.tag(TokenColumns.FINE, row).id());
+      out.writeInt(columns.tag(TokenColumns.UNIVERSAL, row).id());
+      out.writeInt(columns.tag(TokenColumns.INDUCED, row).id());
+      out.writeUTF(columns.freebase(row));
+      long[] categories = columns.categories(row);
+      out.writeInt(categories == null ? -1 : categories.length);
+      if (categories != null) {
+        for (long category : categories) {
+          out.writeLong(category);
+        }
+      }
+    }
+    out.writeInt(length_noP);
+    for (int i = 0; i < length_noP; ++i) {
+      out.writeInt(noP[i]);
+    }
   }
 
   /**
@@ -508,9 +678,9 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
    * @return POS[] with Punct
    */
   public POS[] getTagsWithPunct() {
-    POS[] arr = new POS[sentence_wP.length];
-    for (int i = 0; i < sentence_wP.length; i++) {
-      arr[i] = sentence_wP[i].tag();
+    POS[] arr = new POS[length_wP];
+    for (int i = 0; i < length_wP; i++) {
+      arr[i] = getWP(i).tag();
     }
     return arr;
   }
@@ -527,12 +697,12 @@ public class Sentence implements Externalizable, Iterable<LexicalToken> {
 
       @Override
       public boolean hasNext() {
-        return currentIndex < sentence_wP.length && sentence_wP[currentIndex] != null;
+        return currentIndex < length_wP;
       }
 
       @Override
       public LexicalToken next() {
-        return sentence_wP[currentIndex++];
+        return getWP(currentIndex++);
       }
 
       @Override
@@ -7,10 +7,13 @@ import CCGInduction.utils.TextFile;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -34,6 +37,11 @@ public class Sentences implements Iterable<Sentence> {
   private BufferedReader reader;
   /** Stored data */
   private final ArrayList<Sentence> data;
+  /** Token store shared by the stored sentences ( null when streaming ) */
+  private final TokenColumns columns;
+  /** Sentences of the current file when it is a CorpusFile */
+  private ArrayList<Sentence> bulk = null;
+  private int bulk_index = 0;
   /** Has the data been read */
   public boolean all_data_has_been_read = false;
   /** Next chart to be read */
@@ -41,6 +49,8 @@ public class Sentences implements Iterable<Sentence> {
   private final int shortest_allowable_sentence;
   private final int longest_allowable_sentence;
   private int returned_count = 0;
+  /** Most sentences returned by a single pass over streamed data */
+  private int streamed_count = 0;
 
   /**
    * Creates a sentence reading object
@@ -63,8 +73,10 @@ public class Sentences implements Iterable<Sentence> {
     this.streaming = stream;
     if (this.streaming) {
       data = null;
+      columns = null;
     } else {
       data = new ArrayList<>();
+      columns = new TokenColumns(TokenColumns.CORPUS);
     }
 
     openCurrentFileForReading();
@@ -90,6 +102,7 @@ public class Sentences implements Iterable<Sentence> {
     this.shortest_allowable_sentence = 0;
     this.longest_allowable_sentence = Integer.MAX_VALUE;
     data = sentences;
+    columns = null;
   }
 
   /**
@@ -113,12 +126,26 @@ public class Sentences implements Iterable<Sentence> {
     }
 
     try {
+      if (bulk != null) {
+        if (bulk_index < bulk.size()) {
+          Sentence loaded = bulk.get(bulk_index++);
+          if (!streaming) {
+            data.add(loaded);
+            current_index.getAndIncrement();
+          }
+          return loaded;
+        }
+        bulk = null;
+      }
       String read = this.reader.readLine();
       // Nothing in the buffer to read:  Close the buffer and open a new file
       if (read == null && this.current_file + 1 < this.file_location.length) {
         reader.close();
         ++this.current_file;
         openCurrentFileForReading();
+        if (bulk != null) {
+          return readSentence();
+        }
         // Now read the first line of the new file
         read = this.reader.readLine();
       } else if (read == null && this.current_file + 1 >= this.file_location.length) {
@@ -130,7 +157,7 @@ public class Sentences implements Iterable<Sentence> {
       }
 
       // Read actual sentence
-      Sentence current_sentence = new Sentence();
+      Sentence current_sentence = columns == null ? new Sentence() : new Sentence(columns);
       if (read.charAt(0) == '{') {
         readJSONSentence(read, current_sentence, grammar);
       } else if (read.charAt(0) == 'I') {
@@ -206,6 +233,7 @@ public class Sentences implements Iterable<Sentence> {
       if (current_sentence.length_noP() <= this.longest_allowable_sentence
           && current_sentence.length_noP() >= this.shortest_allowable_sentence) {
         current_sentence.id = returned_count++;
+        streamed_count = Math.max(streamed_count, returned_count);
         Logger.stat(current_sentence.id);
         return current_sentence;
       }
@@ -238,6 +266,11 @@ public class Sentences implements Iterable<Sentence> {
     if (streaming) {
       current_file = 0;
       this.all_data_has_been_read = false;
+      try {
+        reader.close();
+      } catch (IOException exception) {
+        exception.printStackTrace();
+      }
       openCurrentFileForReading();
     }
   }
@@ -249,26 +282,83 @@ public class Sentences implements Iterable<Sentence> {
    *  Max of the number of saved and read sentences
    */
   public int size() { if(streaming) {
-    return current_index.get();
+    return streamed_count;
   } return data.size(); }
 
   /**
    * Refreshes the File reader with a reference to the currently indexed file
    */
   void openCurrentFileForReading() {
-    reader = TextFile.Reader(this.file_location[current_file]);
+    String file = this.file_location[current_file];
+    if (CorpusFile.is(file)) {
+      try {
+        bulk = CorpusFile.read(file, grammar);
+      } catch (IOException exception) {
+        throw new UncheckedIOException(exception);
+      }
+      bulk_index = 0;
+      // Nothing to read as text
+      reader = new BufferedReader(new StringReader(""));
+      return;
+    }
+    bulk = null;
+    reader = TextFile.Reader(file);
   }
 
+  /**
+   * Iterates over the corpus.  When streaming, the files are re-read from the
+   * start with next() and the reader is reset again once exhausted, so the
+   * sentences returned are fresh copies and edits to them are not kept.
+   */
   @Override
   public Iterator<Sentence> iterator() {
-    return data.iterator();
+    if (!streaming) {
+      return data.iterator();
+    }
+    reset_index();
+    return new Iterator<Sentence>() {
+      private Sentence upcoming = Sentences.this.next();
+
+      @Override
+      public boolean hasNext() {
+        return upcoming != null;
+      }
+
+      @Override
+      public Sentence next() {
+        if (upcoming == null) {
+          throw new NoSuchElementException();
+        }
+        Sentence current = upcoming;
+        upcoming = Sentences.this.next();
+        if (upcoming == null) {
+          reset_index();
+        }
+        return current;
+      }
+    };
+  }
+
+  /**
+   * Writes every sentence of the corpus as a CorpusFile, which can then be
+   * read in place of the original files
+   * @param filename Output file
+   * @throws IOException
+   */
+  public void writeColumns(String filename) throws IOException {
+    while (!streaming && !all_data_has_been_read) {
+      readSentence();
+    }
+    CorpusFile.write(this, grammar, filename);
+    reset_index();
   }
 
   public void writeToDisk(String filename) throws IOException {
     Writer writer = TextFile.Writer(filename);
     for (Sentence sentence : this) {
       JSONFormat.createFromSentence(sentence, grammar);
-      writer.write(sentence.JSON.toString() + "\n");
+      sentence.JSON.write(writer);
+      writer.write('\n');
     }
     writer.close();
   }
@@ -7,6 +7,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 
 /**
  * Specifices the tagset. This includes defining classes.
@@ -18,6 +19,18 @@ public class Tagset {
    * String representations of the tags
    */
   public final static ArrayList<String> STRINGS = new ArrayList<>();
+  /**
+   * Index of each tag in STRINGS
+   */
+  private final static HashMap<String, Integer> INDEX = new HashMap<>();
+  /**
+   * One shared POS object per tag, so tokens don't each carry their own copies
+   */
+  private final static HashMap<String, POS> INTERNED = new HashMap<>();
+  /**
+   * Interned POS objects by id, read without locking by token columns
+   */
+  private static volatile POS[] BY_ID = new POS[0];
   /**
    * A None tag.
    */
@@ -275,25 +288,65 @@ public class Tagset {
    * @param tagAsString POS tag as string
    * @return Hashed value
    */
-  static int add(String tagAsString) {
-    int i = STRINGS.indexOf(tagAsString);
-    if (i == -1) {
+  static synchronized int add(String tagAsString) {
+    Integer i = INDEX.get(tagAsString);
+    if (i == null) {
+      i = STRINGS.size();
       STRINGS.add(tagAsString);
-      return STRINGS.size() - 1;
+      INDEX.put(tagAsString, i);
     }
     return i;
   }
 
+  /**
+   * Returns the shared POS object for a tag, creating it if necessary
+   * @param tagAsString POS tag as string
+   * @return POS object for tag
+   */
+  public static synchronized POS intern(String tagAsString) {
+    POS tag = INTERNED.get(tagAsString);
+    if (tag == null) {
+      tag = new POS(tagAsString);
+      INTERNED.put(tagAsString, tag);
+      POS[] byId = BY_ID;
+      if (tag.id() >= byId.length) {
+        byId = Arrays.copyOf(byId, Math.max(tag.id() + 1, 2 * byId.length));
+      }
+      byId[tag.id()] = tag;
+      BY_ID = byId;
+    }
+    return tag;
+  }
+
+  /**
+   * Shared POS object for an id
+   * @param id Tag id
+   * @return Interned POS
+   */
+  static POS get(int id) {
+    POS[] byId = BY_ID;
+    if (id < byId.length && byId[id] != null) {
+      return byId[id];
+    }
+    String tagAsString;
+    synchronized (Tagset.class) {
+      tagAsString = STRINGS.get(id);
+    }
+    return intern(tagAsString);
+  }
+
   /**
    * Returns the POS value of a string if present.  Returns null otherwise.
    * @param tagAsString human readable POS
    * @return POS object for tag
    */
   public static POS valueOf(String tagAsString){
-    if (!STRINGS.contains(tagAsString)) {
-      return null;
+    synchronized (Tagset.class) {
+      if (!INDEX.containsKey(tagAsString)) {
+        return null;
+      }
     }
-    return new POS(tagAsString);
+    return intern(tagAsString);
   }
 
   /**
@@ -0,0 +1,208 @@
+package CCGInduction.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Columnar store of the tokens of many sentences: words ( as indices into a
+ * vocabulary of hashes ) and tag ids are kept in primitive arrays, one entry
+ * per token, and Sentence/LexicalToken are views onto them.  Columns are
+ * split into fixed size blocks which are never reallocated, so tokens can be
+ * appended while earlier ones are read or retagged.  Appends must come from
+ * one thread at a time.
+ *
+ * @author bisk1
+ */
+final class TokenColumns {
+  /** Block size of a corpus shared by many sentences ( 16K tokens ) */
+  static final int CORPUS = 14;
+  /** Block size of a sentence that owns its columns */
+  static final int SENTENCE = 4;
+
+  static final int COARSE = 0;
+  static final int FINE = 1;
+  static final int UNIVERSAL = 2;
+  static final int INDUCED = 3;
+
+  private final int bits;
+  private final int mask;
+  private int[][] raw = new int[0][];
+  private int[][] word = new int[0][];
+  private int[][] lemma = new int[0][];
+  /** Tag ids ( Tagset ) indexed by [tag type][block][offset] */
+  private char[][][] tags = new char[4][0][];
+  /** Word hash of each vocabulary index */
+  private volatile long[] hashes = new long[16];
+  private final HashMap<Long, Integer> vocabulary = new HashMap<>();
+  /** Supertags and Freebase ids are rare, so their blocks are only made when used */
+  private long[][][] categories = new long[0][][];
+  private String[][] freebase = new String[0][];
+  private int size = 0;
+
+  /**
+   * @param bits Log2 of the number of tokens per block
+   */
+  TokenColumns(int bits) {
+    this.bits = bits;
+    this.mask = (1 << bits) - 1;
+  }
+
+  /**
+   * Columns for a single sentence of known length
+   * @param length Number of tokens
+   * @return Columns with one block
+   */
+  static TokenColumns sized(int length) {
+    int bits = 0;
+    while ((1 << bits) < length) {
+      ++bits;
+    }
+    return new TokenColumns(bits);
+  }
+
+  /**
+   * @return Number of tokens stored
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Appends a token
+   * @return Index of the new token
+   */
+  int add(long rawWord, long wordHash, long lemmaHash, POS coarse, POS fine, POS universal, POS induced,
+          String fbid) {
+    int block = size >>> bits;
+    if (block == raw.length) {
+      grow();
+    }
+    int offset = size & mask;
+    raw[block][offset] = vocabulary(rawWord);
+    word[block][offset] = vocabulary(wordHash);
+    lemma[block][offset] = vocabulary(lemmaHash);
+    tags[COARSE][block][offset] = tagId(coarse);
+    tags[FINE][block][offset] = tagId(fine);
+    tags[UNIVERSAL][block][offset] = tagId(universal);
+    tags[INDUCED][block][offset] = tagId(induced);
+    if (!fbid.isEmpty() && !fbid.equals("_")) {
+      freebase(size, fbid);
+    }
+    return size++;
+  }
+
+  /**
+   * Appends a copy of another store's token
+   * @param other Source columns
+   * @param index Index of the token in other
+   * @return Index of the new token
+   */
+  int add(TokenColumns other, int index) {
+    int added = add(other.raw(index), other.word(index), other.lemma(index),
+        other.tag(COARSE, index), other.tag(FINE, index), other.tag(UNIVERSAL, index),
+        other.tag(INDUCED, index), other.freebase(index));
+    long[] cats = other.categories(index);
+    if (cats != null) {
+      categories(added, cats);
+    }
+    return added;
+  }
+
+  /**
+   * @param hash Word hash
+   * @return Index of the hash in the vocabulary, adding it if new
+   */
+  private synchronized int vocabulary(long hash) {
+    Integer index = vocabulary.get(hash);
+    if (index == null) {
+      index = vocabulary.size();
+      long[] grown = hashes;
+      if (index == grown.length) {
+        grown = Arrays.copyOf(grown, 2 * grown.length);
+      }
+      grown[index] = hash;
+      hashes = grown;
+      vocabulary.put(hash, index);
+    }
+    return index;
+  }
+
+  private static char tagId(POS tag) {
+    int id = Tagset.intern(tag.toString()).id();
+    if (id > Character.MAX_VALUE) {
+      throw new IllegalStateException("More than " + Character.MAX_VALUE + " tags");
+    }
+    return (char) id;
+  }
+
+  private void grow() {
+    int blocks = raw.length + 1;
+    raw = Arrays.copyOf(raw, blocks);
+    word = Arrays.copyOf(word, blocks);
+    lemma = Arrays.copyOf(lemma, blocks);
+    raw[blocks - 1] = new int[mask + 1];
+    word[blocks - 1] = new int[mask + 1];
+    lemma[blocks - 1] = new int[mask + 1];
+    for (int t = 0; t < tags.length; ++t) {
+      tags[t] = Arrays.copyOf(tags[t], blocks);
+      tags[t][blocks - 1] = new char[mask + 1];
+    }
+    categories = Arrays.copyOf(categories, blocks);
+    freebase = Arrays.copyOf(freebase, blocks);
+  }
+
+  long raw(int index) {
+    return hashes[raw[index >>> bits][index & mask]];
+  }
+
+  long word(int index) {
+    return hashes[word[index >>> bits][index & mask]];
+  }
+
+  void word(int index, long value) {
+    word[index >>> bits][index & mask] = vocabulary(value);
+  }
+
+  long lemma(int index) {
+    return hashes[lemma[index >>> bits][index & mask]];
+  }
+
+  /**
+   * @param type COARSE, FINE, UNIVERSAL or INDUCED
+   * @param index Token
+   * @return Tag of the token
+   */
+  POS tag(int type, int index) {
+    return Tagset.get(tags[type][index >>> bits][index & mask]);
+  }
+
+  void tag(int type, int index, POS tag) {
+    tags[type][index >>> bits][index & mask] = tagId(tag);
+  }
+
+  long[] categories(int index) {
+    long[][] block = categories[index >>> bits];
+    return block == null ? null : block[index & mask];
+  }
+
+  void categories(int index, long[] cats) {
+    int block = index >>> bits;
+    if (categories[block] == null) {
+      categories[block] = new long[mask + 1][];
+    }
+    categories[block][index & mask] = cats;
+  }
+
+  String freebase(int index) {
+    String[] block = freebase[index >>> bits];
+    return block == null || block[index & mask] == null ? "" : block[index & mask];
+  }
+
+  private void freebase(int index, String fbid) {
+    int block = index >>> bits;
+    if (freebase[block] == null) {
+      freebase[block] = new String[mask + 1];
+    }
+    freebase[block][index & mask] = fbid;
+  }
+}
@@ -17,12 +17,16 @@ public enum Action {
   ITr,
   /** Induce Tags ( Baum-Welch ) {@link UnsupervisedInduction} */
   InduceTags,
+  /** Tag testFile with the HMM, streaming it to tagged.test.json.gz {@link TagInduction} */
+  TagFiles,
   /** Loads a lexicon that was (presumably) induced in a previous run */
   LoadLexicon,
   /** Run Baum-Welch updates until convergence */
   BW,
   /** Read Training files */
   readTrainingFiles,
+  /** Write the training sentences to train.corpus, a compact file that can be used as trainFile */
+  SaveCorpus,
   /** Parse with Application */
   B0,
   /** Parse with Composition: B<sup>1</sup> */
@@ -46,6 +50,10 @@ public enum Action {
   SupervisedTest,
   /** Train with Inside-Outside {@link Model#InsideOutside} **/
   IO,
+  /** Train with hard ( Viterbi ) EM {@link Model#HardEM}, e.g. as a warm start for IO **/
+  HardEM,
+  /** Run sweepRegimen on a copy of the model for every sweep setting, reusing the parsed charts **/
+  Sweep,
   /** Run Test **/
   Test,
   /** Simply prints a model (loaded or otherwise) to human readable files */
@@ -1,6 +1,7 @@
 package CCGInduction.experiments;
 
 import CCGInduction.Configuration;
+import CCGInduction.grammar.CombinationTable;
 import CCGInduction.grammar.Grammar;
 import CCGInduction.parser.*;
 import CCGInduction.ccg.InducedCAT;
@@ -15,11 +16,13 @@ import CCGInduction.utils.TextFile;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 
 /**
@@ -73,8 +76,12 @@ public class Experiment<G extends Grammar> {
             Tagset.readTagMapping(Configuration.TAGSET);
         }
         Tagset.print();
-        training_sentences = new Sentences(grammar, Configuration.shortestSentence,
-            Configuration.longestSentence, Configuration.trainFile);
+        if (Configuration.chartStore != null && Arrays.asList(Configuration.trainingRegimen).contains(Action.RemapTags)) {
+          System.err.println("RemapTags rewrites sentences in memory and cannot be used with chartStore. Exiting...");
+          System.exit(-1);
+        }
+        training_sentences = new Sentences(grammar, Configuration.chartStore != null,
+            Configuration.shortestSentence, Configuration.longestSentence, Configuration.trainFile);
         kwords(training_sentences);
         break;
       case Test:
@@ -83,6 +90,9 @@ public class Experiment<G extends Grammar> {
       case Save:
         model.writeToDisk();
         break;
+      case SaveCorpus:
+        training_sentences.writeColumns(Configuration.Folder + "/train.corpus");
+        break;
       case PrintModel:
         model.print("Print");
         break;
@@ -232,14 +242,22 @@ public class Experiment<G extends Grammar> {
       // Read all sentences and set max percent for logger
       testing_charts.readSentences();
       model.grammar.print("loadedTest");
+      CoarseGrammar coarse = null;
+      if (Configuration.coarseToFine.length > 0) {
+        coarse = new CoarseGrammar(model.grammar, Configuration.coarseToFine,
+            action == Action.Test || action == Action.SupervisedTest);
+        Logger.logln("Coarse grammar labels " + Arrays.toString(Configuration.coarseToFine)
+            + ": " + Arrays.toString(coarse.sizes()));
+      }
       createPool();
       String file_name = Configuration.Folder + '/' + base_filename + '.'
           + test_iterations + '.' + document_number;
       for (int i = 0; i < Configuration.threadCount; ++i) {
         executor.execute(new TestTimeParser<>(testing_charts, model,
-            new InductionParser(action), file_name, exceptions));
+            new InductionParser(action, null, coarse), file_name, exceptions));
       }
       closePool();
+      LexicalPruning.log(action.toString());
       ++document_number;
     }
     ++test_iterations;
@@ -260,11 +278,47 @@ public class Experiment<G extends Grammar> {
       throw exceptions.get(0);
   }
 
+  /**
+   * Decides the combinability of every pair of categories in the grammar for
+   * the given parse action, one row per task, and attaches the resulting table
+   * to the grammar so that parsing only tries to build rules for pairs which
+   * combine.
+   * @param action Parse action
+   * @throws Exception
+   */
+  void precomputeCombinations(Action action) throws Exception {
+    CombinationTable table = new CombinationTable(action, new ArrayList<>(model.grammar.Categories.keySet()));
+    InductionParser<G> parser = new InductionParser<>(action);
+    AtomicInteger next_row = new AtomicInteger(0);
+    createPool();
+    for (int i = 0; i < Configuration.threadCount; ++i) {
+      executor.execute(() -> {
+        try {
+          int row;
+          while ((row = next_row.getAndIncrement()) < table.size()) {
+            parser.precomputeCombinations(model, table, row);
+          }
+        } catch (Exception e) {
+          e.printStackTrace();
+          exceptions.add(e);
+        }
+      });
+    }
+    closePool();
+    model.grammar.combinationTable = table;
+    Logger.logln("\rPrecomputed combinations:", table.size() + "x" + table.size());
+  }
+
   void parseAndSerialize(SerializableCharts<G,CoarseToFineChart<G>> charts_to_parse, Action action) throws Exception {
+    SpanMemo memo = Configuration.spanMemoSize > 0 ? new SpanMemo(Configuration.spanMemoSize) : null;
     createPool();
     for (int i = 0; i < Configuration.threadCount; ++i) {
-      executor.execute(new InductionUniformInitParser<>(charts_to_parse, new InductionParser(action), model, exceptions));
+      executor.execute(new InductionUniformInitParser<>(charts_to_parse, new InductionParser(action, memo), model, exceptions));
     }
     closePool();
+    LexicalPruning.log(action.toString());
+    if (memo != null) {
+      memo.log(action.toString());
+    }
   }
 }
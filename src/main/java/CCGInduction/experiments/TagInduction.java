@@ -14,7 +14,7 @@ import java.util.zip.GZIPInputStream;
  * Simple experiment class for calling the HMM inducer
  * Created by bisk1 on 2/13/15.
  */
-public class TagInduction extends Experiment {
+public class TagInduction extends Experiment<Grammar> {
 
   public TagInduction(Configuration configuration) throws Exception {
     super(configuration);
@@ -31,7 +31,12 @@ public class TagInduction extends Experiment {
         ((BigramModel)model).initFromData();
         break;
       case InduceTags:
-        ((BigramModel)model).train();
+        if (Configuration.hmmSplitStart > 0)
+          model = ((BigramModel)model).splitMerge();
+        else if (Configuration.hmmRestarts > 1)
+          model = ((BigramModel)model).restarts();
+        else
+          ((BigramModel)model).train();
         break;
       case PrintModel:
         model.print("Model");
@@ -42,6 +47,9 @@ public class TagInduction extends Experiment {
         model = (BigramModel) ios.readObject();
         ((BigramModel)model).sentences = training_sentences;
         break;
+      case TagFiles:
+        ((BigramModel)model).tag(Configuration.testFile, Configuration.Folder + "/tagged.test.json.gz");
+        break;
       case Viterbi:
         ((BigramModel)model).viterbi();
       case Save:
@@ -15,6 +15,8 @@ import CCGInduction.utils.Logger;
 import CCGInduction.utils.TextFile;
 
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.Writer;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -174,6 +176,8 @@ public class UnsupervisedInduction extends Experiment<Grammar> {
       case B3Mod_B2TR_B0Else:
         lastParseAction = action;
         model.Distributions.forEach(model.priorCounts::addDist);
+        if (charts != null)
+          charts.clear();
         charts = new InductionCharts(this.model, training_sentences);
         while (induceFromTrees > 0) {
           induceFromPOS(charts, Arrays.asList(Tagset.tags));
@@ -185,13 +189,17 @@ public class UnsupervisedInduction extends Experiment<Grammar> {
         Configuration.complexArgs = false;
         grammar.firstPrepare = false;
         // Reparse
+        if (Configuration.precomputeCombinations)
+          precomputeCombinations(action);
         parseAndSerialize(charts, action);
+        grammar.combinationTable = null;
         Logger.logln("\rParsed:",charts.size() + "/" + training_sentences.size());
         // Reset convergence threshold
         threshold = Configuration.threshold;
         grammar.print("Grammar.gz");
         break;
       case IO:
+      case HardEM:
         // Check if first run
         if (threshold == Configuration.threshold && !model.initialized()) {
           Logger.logln("Initializing Model");
@@ -205,11 +213,20 @@ public class UnsupervisedInduction extends Experiment<Grammar> {
         if (Configuration.trainK > 1 || Configuration.viterbi) {
           grammar.requiredRules.clear();
         }
+        if (action == Action.HardEM) {
+          Model.HardEM(charts, model, threshold);
+          model.update();
+          model.print("HardEM");
+          break;
+        }
         Model.InsideOutside(charts, model, threshold);
         model.update();
         threshold /= 10;
         model.print("IO");
         break;
+      case Sweep:
+        sweep();
+        break;
 
       case ArgumentModel:
         model = new ArgumentModel(grammar);
@@ -243,6 +260,63 @@ public class UnsupervisedInduction extends Experiment<Grammar> {
     }
   }
 
+  /**
+   * Trains a copy of the model with every sweep setting, one after another,
+   * against the charts which have already been parsed.  Each setting writes
+   * to its own folder, and the final likelihoods are summarized in Sweep.txt
+   * @throws Exception
+   */
+  private void sweep() throws Exception {
+    Model<Grammar> base = model;
+    double baseThreshold = threshold;
+    String folder = Configuration.Folder;
+    Configuration.Snapshot snapshot = Configuration.snapshot();
+    ArrayList<String> summary = new ArrayList<>();
+    try {
+      for (int i = 0; i < Configuration.sweep.length; ++i) {
+        for (String setting : Logger.whitespace_pattern.split(Configuration.sweep[i])) {
+          String[] split = setting.split("=", 2);
+          if (split.length != 2) {
+            throw new Exception("Invalid sweep setting: " + setting);
+          }
+          Configuration.set(split[0], split[1]);
+        }
+        Configuration.Folder = folder + "/Sweep." + i;
+        //noinspection ResultOfMethodCallIgnored
+        new File(Configuration.Folder).mkdirs();
+        Logger.logln("\rSweep " + i + ":", Configuration.sweep[i]);
+
+        model = base.fork();
+        model.processParameters();
+        threshold = Configuration.threshold;
+        // Test charts hold a reference to the model they were built with
+        TESTINGCHARTS.clear();
+        double nLL = Double.NaN;
+        for (Action action : Configuration.sweepRegimen) {
+          perform(action);
+          if (action == Action.IO) {
+            nLL = -model.LL.prod();
+          }
+        }
+        summary.add(String.format("%-4d %11.2f    %s", i, nLL, Configuration.sweep[i]));
+        snapshot.restore();
+      }
+    } finally {
+      snapshot.restore();
+      model = base;
+      threshold = baseThreshold;
+      TESTINGCHARTS.clear();
+    }
+
+    Writer writer = TextFile.Writer(folder + "/Sweep.txt");
+    writer.write(String.format("%-4s %11s    %s\n", "#", "nLL", "Setting"));
+    for (String line : summary) {
+      Logger.logln(line);
+      writer.write(line + "\n");
+    }
+    writer.close();
+  }
+
   private void readWeightedLexicon(String file) {
     List<String> lines = TextFile.Read(file);
     String[] split;
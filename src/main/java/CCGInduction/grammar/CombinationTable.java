@@ -0,0 +1,99 @@
+package CCGInduction.grammar;
+
+import CCGInduction.experiments.Action;
+
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * Pairwise combinability of a fixed category inventory for a single parse
+ * action.  Each left category owns a dense bitset over the right categories
+ * it combines with, so the CYK inner loop can reject a pair without trying
+ * to build a rule for it.  Rows are filled independently so the table can be
+ * built in parallel.
+ *
+ * @author bisk1
+ */
+public class CombinationTable {
+  /**
+   * Parse action the table was computed for
+   */
+  public final Action action;
+  /**
+   * Category ids in index order
+   */
+  private final long[] categories;
+  /**
+   * Category id to row/column index
+   */
+  private final HashMap<Long, Integer> index = new HashMap<>();
+  /**
+   * Per left category: bitset of the right categories it combines with
+   */
+  private final long[][] combinable;
+
+  /**
+   * Creates an empty table over a snapshot of the category inventory
+   * @param action Parse action rows will be resolved with
+   * @param inventory Category ids
+   */
+  public CombinationTable(Action action, Collection<Long> inventory) {
+    this.action = action;
+    this.categories = new long[inventory.size()];
+    int i = 0;
+    for (long category : inventory) {
+      categories[i] = category;
+      index.put(category, i);
+      ++i;
+    }
+    combinable = new long[categories.length][];
+  }
+
+  /**
+   * @return Number of categories covered by the table
+   */
+  public int size() {
+    return categories.length;
+  }
+
+  /**
+   * @param i Row/column index
+   * @return Category id at index i
+   */
+  public long category(int i) {
+    return categories[i];
+  }
+
+  /**
+   * @param category Category id
+   * @return Row/column index or -1 if the category was not in the inventory
+   */
+  public int index(long category) {
+    Integer i = index.get(category);
+    return i == null ? -1 : i;
+  }
+
+  /**
+   * Stores a row of the table
+   * @param row Left category index
+   * @param columns Per right category index: if the pair can combine
+   */
+  public void fillRow(int row, boolean[] columns) {
+    long[] bits = new long[(categories.length + 63) >>> 6];
+    for (int col = 0; col < columns.length; ++col) {
+      if (columns[col]) {
+        bits[col >>> 6] |= 1L << col;
+      }
+    }
+    combinable[row] = bits;
+  }
+
+  /**
+   * @param row Left category index
+   * @param col Right category index
+   * @return If the categories can combine under the table's action
+   */
+  public boolean canCombine(int row, int col) {
+    return (combinable[row][col >>> 6] & (1L << col)) != 0;
+  }
+}
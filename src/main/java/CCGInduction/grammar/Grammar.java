@@ -14,6 +14,7 @@ import CCGInduction.parser.Punctuation;
 import CCGInduction.utils.Hash;
 import CCGInduction.utils.IntPair;
 import CCGInduction.utils.Logger;
+import CCGInduction.utils.Metrics;
 import CCGInduction.utils.Math.Log;
 import CCGInduction.utils.TextFile;
 
@@ -22,6 +23,7 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Defines an abstract grammar which must be extended to actually create rules
@@ -97,6 +99,15 @@ public class Grammar implements Serializable {
    * Rules used ( model specific definition of "use" )
    */
   public final ConcurrentHashMap<IntPair, ConcurrentHashMap<Rule,Boolean>> Rules = new ConcurrentHashMap<>();
+  /**
+   * Precomputed combinability of the current categories ( null if not built )
+   */
+  public transient CombinationTable combinationTable = null;
+
+  private static final LongAdder unaryHits = Metrics.counter("grammar.unaryCheck.hit");
+  private static final LongAdder unaryMisses = Metrics.counter("grammar.unaryCheck.miss");
+  private static final LongAdder combinationHits = Metrics.counter("grammar.combinationCheck.hit");
+  private static final LongAdder combinationMisses = Metrics.counter("grammar.combinationCheck.miss");
 
   public final ConcurrentHashMap<Long, Boolean> learnedWords = new ConcurrentHashMap<>();
 
@@ -122,6 +133,7 @@ public class Grammar implements Serializable {
     typeRaisedBW.putAll(other.typeRaisedBW);
     unaryCheck.putAll(other.unaryCheck);
     combinationCheck.putAll(other.combinationCheck);
+    combinationTable = other.combinationTable;
     firstPrepare = other.firstPrepare;
     S_NT = other.S_NT;
     P_NT = other.P_NT;
@@ -250,11 +262,11 @@ public class Grammar implements Serializable {
   }
 
   public valid unaryCheck(long a, long b) {
-    IntPair ab = new IntPair(a, b);
-    if (!unaryCheck.containsKey(ab)) {
-      return valid.Unknown;
+    valid v = unaryCheck.get(new IntPair(a, b));
+    if (Metrics.enabled()) {
+      (v == null ? unaryMisses : unaryHits).increment();
     }
-    return unaryCheck.get(ab);
+    return v == null ? valid.Unknown : v;
   }
 
   /**
@@ -265,11 +277,11 @@ public class Grammar implements Serializable {
    * @return [Unused, Valid, Invalid, Unknown]
    */
   public final valid combine(long leftCategoryID, long rightCategoryID) {
-    valid v;
-    if ((v = combinationCheck.get(new IntPair(leftCategoryID, rightCategoryID))) != null) {
-      return v;
+    valid v = combinationCheck.get(new IntPair(leftCategoryID, rightCategoryID));
+    if (Metrics.enabled()) {
+      (v == null ? combinationMisses : combinationHits).increment();
     }
-    return valid.Unknown;
+    return v == null ? valid.Unknown : v;
   }
 
   /**
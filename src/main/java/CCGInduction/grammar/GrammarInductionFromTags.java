@@ -10,24 +10,33 @@ import CCGInduction.data.Sentence;
 import CCGInduction.data.Tagset;
 import CCGInduction.models.Model;
 import CCGInduction.utils.IntPair;
+import CCGInduction.utils.Logger;
 import CCGInduction.utils.Mapper;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import static CCGInduction.grammar.GrammarInductionUtils.*;
 
 /**
- * Class for inducing categories from a local context
+ * Class for inducing categories from a local context.  Induction only depends
+ * on the pair of adjacent tags, so the threads first collect the distinct tag
+ * bigrams of the corpus and categories are then induced once per bigram.
  * @author bisk1
  */
 public class GrammarInductionFromTags extends Mapper<Grammar, InductionChart<Grammar>> {
 
   private final Grammar grammar;
   private final Set<POS> tagsToInduce;
+  // Distinct (curT, nextT) contexts of the corpus and their frequency
+  private static final ConcurrentHashMap<TagBigram, LongAdder> contexts = new ConcurrentHashMap<>();
+  private final HashMap<TagBigram, Integer> localContexts = new HashMap<>();
   /**
    * Iterates through sentences and induces new categories from local contexts
    * @param shared_charts
@@ -47,6 +56,7 @@ public class GrammarInductionFromTags extends Mapper<Grammar, InductionChart<Gra
   public synchronized void setup() {
     if (setup.get())
       return;
+    contexts.clear();
     for (POS tag : Tagset.tags()) {
       if(!Tagset.Punct(tag)) {
         ConcurrentHashMap<InducedCAT, Boolean> cats = grammar.LexCats.get(tag);
@@ -68,28 +78,54 @@ public class GrammarInductionFromTags extends Mapper<Grammar, InductionChart<Gra
 
   @Override
   public void map(InductionChart chart) throws Exception {
-    // Build all contexts. These are triples in the case of the intermediate
+    // Collect the contexts.  These are triples in the case of the intermediate
     // COLON
-    try {
-      Sentence sent = chart.sentence;
-      for (int i = 0; i < sent.length_noP() - 1; i++) {
-        POS curT = sent.getNP(i).tag();
-        POS nextT = sent.getNP(i + 1).tag();
-        if (!Tagset.CONJ(nextT) && (!Tagset.CONJ(curT) || i == 0)) {
-          if (tagsToInduce.contains(curT)) {
-            if (!grammar.LexCats.containsKey(nextT))
-              System.err.println(nextT);
-            grammar.LexCats.get(nextT).keySet().stream().filter(R -> !useCFG(R)).forEach(R -> induceRight(curT, R));
-          }
-          if (tagsToInduce.contains(nextT)) {
-            grammar.LexCats.get(curT).keySet().stream().filter(L -> !useCFG(L) || Tagset.CONJ(nextT)).forEach(L -> induceLeft(L, nextT));
-          }
+    Sentence sent = chart.sentence;
+    for (int i = 0; i < sent.length_noP() - 1; i++) {
+      POS curT = sent.getNP(i).tag();
+      POS nextT = sent.getNP(i + 1).tag();
+      if (!Tagset.CONJ(nextT) && (!Tagset.CONJ(curT) || i == 0)) {
+        localContexts.merge(new TagBigram(curT, nextT), 1, Integer::sum);
+      }
+    }
+  }
+
+  @Override
+  protected void reduce() throws Exception {
+    for (Map.Entry<TagBigram, Integer> entry : localContexts.entrySet()) {
+      contexts.computeIfAbsent(entry.getKey(), k -> new LongAdder()).add(entry.getValue());
+    }
+    super.reduce();
+  }
+
+  /**
+   * Induces categories once for every distinct context
+   */
+  @Override
+  public synchronized void cleanup() {
+    long occurrences = 0;
+    for (Map.Entry<TagBigram, LongAdder> entry : contexts.entrySet()) {
+      POS curT = entry.getKey().left;
+      POS nextT = entry.getKey().right;
+      occurrences += entry.getValue().sum();
+      try {
+        if (tagsToInduce.contains(curT)) {
+          if (!grammar.LexCats.containsKey(nextT))
+            System.err.println(nextT);
+          grammar.LexCats.get(nextT).keySet().stream().filter(R -> !useCFG(R)).forEach(R -> induceRight(curT, R));
+        }
+        if (tagsToInduce.contains(nextT)) {
+          grammar.LexCats.get(curT).keySet().stream().filter(L -> !useCFG(L) || Tagset.CONJ(nextT)).forEach(L -> induceLeft(L, nextT));
         }
+      } catch (Exception e) {
+        System.err.println("Failed to Induce " + curT + " " + nextT);
+        e.printStackTrace();
+        this.thrown_exceptions.add(e);
+        return;
       }
-    } catch (Exception e) {
-      System.err.println("Failed to Induce " + chart.sentence.asTags());
-      throw e;
     }
+    Logger.logln("\rInduced from:", contexts.size() + " tag bigrams (" + occurrences + " occurrences)");
+    contexts.clear();
   }
 
   private void induceLeft(InducedCAT L, POS R) {
@@ -141,5 +177,30 @@ public class GrammarInductionFromTags extends Mapper<Grammar, InductionChart<Gra
     return cat.D.equals(Direction.None) && (InducedCAT.CONJ(cat) || InducedCAT.PUNC(cat.atom));
   }
 
+  /**
+   * Pair of adjacent tags
+   */
+  private static final class TagBigram {
+    final POS left;
+    final POS right;
+
+    TagBigram(POS left, POS right) {
+      this.left = left;
+      this.right = right;
+    }
 
+    @Override
+    public int hashCode() {
+      return 31 * left.hashCode() + right.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof TagBigram)) {
+        return false;
+      }
+      TagBigram other = (TagBigram) obj;
+      return left.equals(other.left) && right.equals(other.right);
+    }
+  }
 }
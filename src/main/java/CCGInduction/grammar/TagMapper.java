@@ -63,7 +63,7 @@ public class TagMapper extends Mapper<Grammar,InductionChart<Grammar>> {
       if (bp.rule.Type.equals(Rule_Type.PRODUCTION)) {
         // Compute the count with previous model settings
         double update = Log.div(Log.mul(parent.beta(), bp.leftChild.alpha(),
-            localModel.prob(parent, bp)), likelihood);
+            localModel.prob(parent, bp), Math.log(parent.cell.chart.weight)), likelihood);
 
         long old_tag = parent.cell.chart.tags[parent.X];
         long old_word = parent.cell.chart.words[parent.X];   // Need for unk
@@ -1,6 +1,7 @@
 package CCGInduction.hmm;
 
 import CCGInduction.learning.Distribution;
+import CCGInduction.utils.Math.Kernels;
 import CCGInduction.utils.Math.Log;
 import CCGInduction.learning.CountsArray;
 
@@ -16,6 +17,9 @@ public class BaumWelch implements Runnable {
   final CountsArray counts = new CountsArray();
   final BigramModel globalModel;
   final int K;
+  private final double[] scratch;
+  private double[][] transition;
+  private double[][] emit = new double[0][];
 
   BaumWelch(ConcurrentLinkedQueue<Trellis> queue, BigramModel model, int k) {
     workQueue = queue;
@@ -27,13 +31,24 @@ public class BaumWelch implements Runnable {
       localModel.accumulatedCounts.addDist(D);
     }
     K = k;
+    scratch = new double[K];
   }
 
   @Override
   public void run() {
+    // Parameters are fixed for the run, index 0 is the start/stop state
+    transition = new double[K + 1][K + 1];
+    for (int previous = -1; previous < K; ++previous) {
+      for (int current = -1; current < K; ++current) {
+        if (previous != -1 || current != -1) {
+          transition[previous + 1][current + 1] = localModel.p_Transition(previous, current);
+        }
+      }
+    }
     Trellis current;
     while((current = workQueue.poll()) != null){
       current.clear();
+      emissions(current);
       forward(current);
       backward(current);
       counts(current);
@@ -42,38 +57,49 @@ public class BaumWelch implements Runnable {
     globalModel.merge(localModel);
   }
 
+  private double p_Transition(int previous, int current) {
+    return transition[previous + 1][current + 1];
+  }
+
+  /**
+   * Emission probabilities of every word of the trellis under every cluster
+   */
+  private void emissions(Trellis trellis) {
+    if (emit.length < trellis.length()) {
+      emit = new double[trellis.length()][K];
+    }
+    for (int w = 0; w < trellis.length(); ++w) {
+      for (int current = 0; current < K; ++current) {
+        emit[w][current] = localModel.p_Emit(trellis.words[w], current);
+      }
+    }
+  }
+
   /**
    * Compute forward probabilities over the trellis
    */
   private void forward(Trellis trellis) {
     // Start:   -1 --> Current
     for (int current = 0; current < K; ++current) {
-      trellis.alpha(0, current, Log.mul(
-              localModel.p_Transition(-1, current),
-              localModel.p_Emit(trellis.words[0], current))
-      );
+      trellis.alpha(0, current, Log.mul(p_Transition(-1, current), emit[0][current]));
     }
     // Middle
     for (int w = 1; w < trellis.length(); ++w) {
-      // For every previous state
-      for (int previous = 0; previous < K; ++previous) {
-        // For every current state
-        for (int current = 0; current < K; ++current) {
-              trellis.alpha(w, current, Log.mul(
-                  trellis.alpha(w - 1, previous),             // FWD of Previous state
-                  localModel.p_Transition(previous, current), // Transition probability
-                  localModel.p_Emit(trellis.words[w], current)// Emit from current
-              ));
+      // For every current state
+      for (int current = 0; current < K; ++current) {
+        // Sum over every previous state:  FWD of Previous state * Transition probability
+        for (int previous = 0; previous < K; ++previous) {
+          scratch[previous] = trellis.alpha(w - 1, previous) + p_Transition(previous, current);
         }
+        // Emit from current
+        trellis.alpha(w, current, Log.mul(Kernels.logSumExp(scratch, 0, K), emit[w][current]));
       }
     }
     // End:    Current --> -1
     for (int previous = 0; previous < K; ++previous) {
-      trellis.finalState.add(Log.mul(
-          trellis.alpha(trellis.length() - 1, previous),
-          localModel.p_Transition(previous, -1)
-      ));
+      scratch[previous] = trellis.alpha(trellis.length() - 1, previous) + p_Transition(previous, -1);
     }
+    trellis.finalState.add(Kernels.logSumExp(scratch, 0, K));
 
     localModel.LL.add(trellis.finalState.value());
   }
@@ -84,29 +110,24 @@ public class BaumWelch implements Runnable {
   private void backward(Trellis trellis) {
     // Stop probabilities
     for (int current = 0; current < K; ++current)
-      trellis.beta(trellis.length()-1, current, localModel.p_Transition(current, -1));
+      trellis.beta(trellis.length()-1, current, p_Transition(current, -1));
 
     // Middle
     for (int w = trellis.length()- 2; w >= 0; --w) {
       for (int current = 0; current < K; ++current) {
-        // For every next state
+        // For every next state:  BWD of next state * Transition * Emit from next
         for (int next = 0; next < K; ++next) {
-          trellis.beta(w, current, Log.mul(
-              trellis.beta(w + 1, next),                  // BWD of next state
-              localModel.p_Transition(current, next),
-              localModel.p_Emit(trellis.words[w + 1], next)
-          ));
+          scratch[next] = trellis.beta(w + 1, next) + p_Transition(current, next) + emit[w + 1][next];
         }
+        trellis.beta(w, current, Kernels.logSumExp(scratch, 0, K));
       }
     }
 
     // Start
     for (int current = 0; current < K; ++current) {
-      trellis.startState.add(Log.mul(
-          trellis.beta(0, current),
-          localModel.p_Transition(-1,current),
-          localModel.p_Emit(trellis.words[0], current)));
+      scratch[current] = trellis.beta(0, current) + p_Transition(-1, current) + emit[0][current];
     }
+    trellis.startState.add(Kernels.logSumExp(scratch, 0, K));
     if(!Log.equal(trellis.startState.value(),trellis.finalState.value()))
       throw new Log.MathException("Should match: " + trellis.startState.value() + "\t" + trellis.finalState.value());
   }
@@ -123,8 +144,8 @@ public class BaumWelch implements Runnable {
         localModel.count_Trans(counts, -1, next, Log.div(
             Log.mul(
                 //trellis.startState.value(),
-                localModel.p_Transition(-1, next),
-                localModel.p_Emit(trellis.words[0], next),
+                p_Transition(-1, next),
+                emit[0][next],
                 trellis.beta(0, next)), ll));
       }
       //localModel.count_Emit(counts, trellis.words[0], next, Log.div(
@@ -140,8 +161,8 @@ public class BaumWelch implements Runnable {
           localModel.count_Trans(counts, current, next, Log.div(
               Log.mul(
                   trellis.alpha(w, current),
-                  localModel.p_Transition(current, next),
-                  localModel.p_Emit(trellis.words[w+1], next),
+                  p_Transition(current, next),
+                  emit[w+1][next],
                   trellis.beta(w+1, next)), ll));
         }
       }
@@ -156,7 +177,7 @@ public class BaumWelch implements Runnable {
       localModel.count_Trans(counts, current, -1, Log.div(
           Log.mul(
               trellis.alpha(trellis.length()-1, current),
-              localModel.p_Transition(current, -1)
+              p_Transition(current, -1)
               //trellis.finalState.value()
           ), ll));
     }
@@ -11,24 +11,31 @@ import CCGInduction.parser.BackPointer;
 import CCGInduction.parser.ChartItem;
 import CCGInduction.utils.IntPair;
 import CCGInduction.utils.Logger;
+import CCGInduction.utils.OrderedWriter;
 import CCGInduction.utils.Math.Log;
 import CCGInduction.data.Sentences;
 import CCGInduction.learning.CountsArray;
 import CCGInduction.models.Model;
 import CCGInduction.utils.TextFile;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -38,6 +45,8 @@ import java.util.stream.Collectors;
 public class BigramModel extends Model<Grammar> {
   private static final long serialVersionUID = 1470030815620296516L;
   public static long UNK;
+  /** Sentences handed to a thread at a time when tagging files */
+  private static final int CHUNK = 64;
   PYDistribution p_Tag$prev = new PYDistribution(this, "p_Tag$prev", Configuration.alphaPower[0], 0.0, false);
   PYDistribution p_Word$tag = new PYDistribution(this, "p_Word$tag", Configuration.alphaPower[1], 0.0, false);
 
@@ -45,6 +54,12 @@ public class BigramModel extends Model<Grammar> {
   public boolean initialized = false;
 
   final ArrayList<Trellis> data = new ArrayList<>();
+  /** Number of clusters */
+  private int K = Configuration.NumClusters;
+  /** Threads used for Baum-Welch and Viterbi */
+  private int threads = Configuration.threadCount;
+  /** Prepended to the training log, e.g. when restarts run concurrently */
+  private String name = "";
 
   public BigramModel() {}
 
@@ -68,36 +83,64 @@ public class BigramModel extends Model<Grammar> {
     p_Word$tag = model.p_Word$tag.copy();
     p_Tag$prev = model.p_Tag$prev.copy();
     this.grammar = model.grammar.copy();
+    this.K = model.K;
+  }
+
+  /**
+   * An untrained model over the same grammar, sentences and words as model,
+   * with its own trellises
+   * @param model Source of the corpus
+   * @param K Number of clusters
+   * @param threads Thread budget
+   * @param name Log prefix
+   */
+  private BigramModel(BigramModel model, int K, int threads, String name) {
+    this.grammar = model.grammar;
+    Distributions.add(p_Tag$prev);
+    Distributions.add(p_Word$tag);
+    this.sentences = model.sentences;
+    this.K = K;
+    for (Trellis trellis : model.data)
+      data.add(new Trellis(trellis, K));
+    this.threads = threads;
+    this.name = name;
   }
 
   private void createContexts() {
     for (Trellis trellis : data) {
       for (long word : trellis.words) {
-        for (int k = 0; k < Configuration.NumClusters; ++k) {
+        for (int k = 0; k < K; ++k) {
           p_Word$tag.addContext(new CondOutcomePair(k), word);
         }
       }
     }
-    for (int cur = 0; cur < Configuration.NumClusters; ++cur) {
+    for (int cur = 0; cur < K; ++cur) {
       p_Tag$prev.addContext(new CondOutcomePair(-1), cur);
       p_Tag$prev.addContext(new CondOutcomePair(cur), -1);
     }
-    for (int prev = 0; prev < Configuration.NumClusters; ++prev) {
-      for (int cur = 0; cur < Configuration.NumClusters; ++cur) {
+    for (int prev = 0; prev < K; ++prev) {
+      for (int cur = 0; cur < K; ++cur) {
         p_Tag$prev.addContext(new CondOutcomePair(prev), cur);
       }
     }
   }
 
   public void init() {
+    init(new Random());
+  }
+
+  /**
+   * Random initialization of the emissions
+   * @param random Source of the initial counts
+   */
+  void init(Random random) {
     createContexts();
     p_Word$tag.init();
     p_Tag$prev.init();   // Remain uniform
 
     // Initialize distributions
-    Random random = new Random();
     for (Long word : grammar.learnedWords.keySet()) {
-      for (int c = 0; c < Configuration.NumClusters; ++c) {
+      for (int c = 0; c < K; ++c) {
         p_Word$tag.accumulateCount(new CondOutcomePair(word, new CondOutcomePair(c)), Math.log(1 + random.nextDouble()));
       }
     }
@@ -119,7 +162,7 @@ public class BigramModel extends Model<Grammar> {
         word = token.rawWord();
         cluster = Integer.valueOf(token.induced().toString());
         if (cluster == -1)
-          cluster = Configuration.NumClusters;
+          cluster = K;
         p_Word$tag.accumulateCount(new CondOutcomePair(word, new CondOutcomePair(cluster)), Log.ONE);
         p_Tag$prev.accumulateCount(new CondOutcomePair(cluster, new CondOutcomePair(prev)), Log.ONE);
         prev = cluster;
@@ -148,16 +191,16 @@ public class BigramModel extends Model<Grammar> {
       LL.clear();
       accumulatedCounts = new CountsArray();
       Distributions.forEach(accumulatedCounts::addDist);
-      executor = Executors.newFixedThreadPool(Configuration.threadCount);
-      for (int i = 0; i < Configuration.threadCount; ++i) {
-        executor.execute(new BaumWelch(queue, this, Configuration.NumClusters));
+      executor = Executors.newFixedThreadPool(threads);
+      for (int i = 0; i < threads; ++i) {
+        executor.execute(new BaumWelch(queue, this, K));
       }
       executor.shutdown();
       executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
 
       newLL = (-1)*LL.prod();
       change = (oldLL - newLL)/ oldLL;
-      Logger.logln(String.format("%-15.5f    %-7.5f", newLL, change));
+      Logger.logln(name + String.format("%-15.5f    %-7.5f", newLL, change));
       if (change < Configuration.threshold && !Double.isNaN(change) && !Double.isInfinite(oldLL))
         return round;
       oldLL = newLL;
@@ -167,17 +210,312 @@ public class BigramModel extends Model<Grammar> {
     return 2000;
   }
 
+  /**
+   * Trains Configuration.hmmRestarts randomly initialized models concurrently
+   * on this model's corpus, splitting the thread budget between them.  Every
+   * run's tagging is written to tagged.[i].json.gz and the likelihoods to
+   * Restarts.txt.  The sentences are left tagged by the best run.
+   * @return The run with the highest training likelihood
+   * @throws Exception
+   */
+  public BigramModel restarts() throws Exception {
+    int restarts = Configuration.hmmRestarts;
+    int pool = Math.min(restarts, Configuration.threadCount);
+    Random seeds = new Random();
+    ArrayList<BigramModel> runs = new ArrayList<>();
+    ArrayList<Exception> exceptions = new ArrayList<>();
+    ExecutorService executor = Executors.newFixedThreadPool(pool);
+    for (int r = 0; r < restarts; ++r) {
+      BigramModel run = new BigramModel(this, K, Math.max(1, Configuration.threadCount / pool), "Restart " + r + ":  ");
+      long seed = seeds.nextLong();
+      Logger.logln("Restart " + r + " seed:", String.valueOf(seed));
+      runs.add(run);
+      executor.execute(() -> {
+        try {
+          run.init(new Random(seed));
+          run.train();
+        } catch (Exception e) {
+          e.printStackTrace();
+          synchronized (exceptions) {
+            exceptions.add(e);
+          }
+        }
+      });
+    }
+    executor.shutdown();
+    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    if (!exceptions.isEmpty())
+      throw exceptions.get(0);
+
+    BigramModel best = runs.get(0);
+    double mean = 0.0;
+    for (BigramModel run : runs) {
+      mean += run.LL.prod() / restarts;
+      if (run.LL.prod() > best.LL.prod())
+        best = run;
+    }
+    double variance = 0.0;
+    for (BigramModel run : runs) {
+      variance += Math.pow(run.LL.prod() - mean, 2) / restarts;
+    }
+
+    Writer writer = TextFile.Writer(Configuration.Folder + "/Restarts.txt");
+    writer.write(String.format("%-4s %15s\n", "#", "nLL"));
+    for (int r = 0; r < restarts; ++r) {
+      String line = String.format("%-4d %15.5f%s", r, -runs.get(r).LL.prod(), runs.get(r) == best ? "    best" : "");
+      Logger.logln(line);
+      writer.write(line + "\n");
+    }
+    String summary = String.format("nLL mean: %.5f    std. dev.: %.5f", -mean, Math.sqrt(variance));
+    Logger.logln(summary);
+    writer.write(summary + "\n");
+    writer.close();
+
+    // The runs share the sentences, so the best run tags last and its tags are the ones kept
+    for (int r = 0; r < restarts; ++r) {
+      if (runs.get(r) != best)
+        runs.get(r).viterbi(Configuration.Folder + "/tagged." + r + ".json.gz");
+    }
+    best.viterbi(Configuration.Folder + "/tagged." + runs.indexOf(best) + ".json.gz");
+
+    best.threads = Configuration.threadCount;
+    best.name = "";
+    return best;
+  }
+
+  /**
+   * Grows the model to Configuration.NumClusters by split-merge: starting from
+   * Configuration.hmmSplitStart clusters, every cluster is split in two
+   * perturbed halves and retrained, then the splits which gained the least
+   * emission likelihood ( Configuration.hmmMergeFraction of them ) are merged
+   * back and the model retrained.  Only the final model pays for K^2
+   * transitions on every iteration.
+   * @return Trained model with NumClusters clusters
+   * @throws Exception
+   */
+  public BigramModel splitMerge() throws Exception {
+    Random random = new Random();
+    BigramModel model = new BigramModel(this, Math.min(Configuration.hmmSplitStart, Configuration.NumClusters),
+        threads, "");
+    model.name = "K=" + model.K + ":  ";
+    model.init(random);
+    model.train();
+    while (model.K < Configuration.NumClusters) {
+      // Splits to keep after merging
+      int keep = (int) Math.ceil(model.K * (1 - Configuration.hmmMergeFraction));
+      keep = Math.max(1, Math.min(keep, Configuration.NumClusters - model.K));
+
+      BigramModel split = model.split(random);
+      split.train();
+      if (keep < model.K) {
+        split = split.merge(keep);
+        split.train();
+      }
+      Logger.logln(String.format("Split %d clusters into %d", model.K, split.K));
+      model = split;
+    }
+    model.name = "";
+    return model;
+  }
+
+  /**
+   * Each cluster c becomes 2c and 2c+1 with half of its counts, perturbed by
+   * up to 1% to break the symmetry
+   * @param random Source of the perturbation
+   * @return Model with twice the clusters
+   */
+  private BigramModel split(Random random) {
+    BigramModel split = new BigramModel(this, 2 * K, threads, "K=" + 2 * K + ":  ");
+    split.createContexts();
+    split.p_Word$tag.init();
+    split.p_Tag$prev.init();
+    for (CondOutcomePair pair : p_Word$tag.Counts.keySet()) {
+      long cluster = pair.condVariable(0);
+      double count = p_Word$tag.Counts.get(pair).value();
+      for (long child = 2 * cluster; child < 2 * cluster + 2; ++child) {
+        split.p_Word$tag.accumulateCount(new CondOutcomePair(pair.outcome, new CondOutcomePair(child)),
+            count + Math.log(0.5 + 0.005 * (2 * random.nextDouble() - 1)));
+      }
+    }
+    for (CondOutcomePair pair : p_Tag$prev.Counts.keySet()) {
+      long[] previous = pair.condVariable(0) == -1 ? new long[] {-1}
+          : new long[] {2 * pair.condVariable(0), 2 * pair.condVariable(0) + 1};
+      long[] current = pair.outcome == -1 ? new long[] {-1}
+          : new long[] {2 * pair.outcome, 2 * pair.outcome + 1};
+      double count = p_Tag$prev.Counts.get(pair).value();
+      for (long prev : previous) {
+        for (long cur : current) {
+          split.p_Tag$prev.accumulateCount(new CondOutcomePair(cur, new CondOutcomePair(prev)),
+              count - Math.log(previous.length * current.length)
+                  + Math.log(1 + 0.01 * (2 * random.nextDouble() - 1)));
+        }
+      }
+    }
+    split.update();
+    split.initialized = true;
+    return split;
+  }
+
+  /**
+   * Merges the clusters 2c and 2c+1 of a split model back together, except
+   * for the keep splits which gained the most emission log-likelihood:
+   * sum_w c_a(w) log p_a(w) + c_b(w) log p_b(w) - c(w) log p(w) with the
+   * maximum likelihood estimates of the split and merged clusters
+   * @param keep Splits to keep
+   * @return Model with K/2 + keep clusters
+   */
+  private BigramModel merge(int keep) {
+    int parents = K / 2;
+    double[][] emits = new double[K][];
+    double[] totals = new double[K];
+    HashMap<Long, double[]> words = new HashMap<>();
+    for (CondOutcomePair pair : p_Word$tag.Counts.keySet()) {
+      int cluster = (int) pair.condVariable(0);
+      double count = Math.exp(p_Word$tag.Counts.get(pair).value());
+      words.computeIfAbsent(pair.outcome, w -> new double[K])[cluster] += count;
+      totals[cluster] += count;
+    }
+    double[] gain = new double[parents];
+    for (double[] count : words.values()) {
+      for (int c = 0; c < parents; ++c) {
+        double a = count[2 * c], b = count[2 * c + 1];
+        gain[c] += xlogx(a, totals[2 * c]) + xlogx(b, totals[2 * c + 1])
+            - xlogx(a + b, totals[2 * c] + totals[2 * c + 1]);
+      }
+    }
+
+    // Keep the splits with the largest gains
+    Integer[] order = new Integer[parents];
+    for (int c = 0; c < parents; ++c)
+      order[c] = c;
+    Arrays.sort(order, (x, y) -> Double.compare(gain[y], gain[x]));
+    boolean[] kept = new boolean[parents];
+    for (int i = 0; i < keep; ++i)
+      kept[order[i]] = true;
+
+    // New cluster of every split cluster
+    long[] cluster = new long[K];
+    int next = 0;
+    for (int c = 0; c < parents; ++c) {
+      cluster[2 * c] = next++;
+      cluster[2 * c + 1] = kept[c] ? next++ : cluster[2 * c];
+    }
+
+    BigramModel merged = new BigramModel(this, next, threads, "K=" + next + ":  ");
+    merged.createContexts();
+    merged.p_Word$tag.init();
+    merged.p_Tag$prev.init();
+    for (CondOutcomePair pair : p_Word$tag.Counts.keySet()) {
+      merged.p_Word$tag.accumulateCount(new CondOutcomePair(pair.outcome,
+          new CondOutcomePair(cluster[(int) pair.condVariable(0)])), p_Word$tag.Counts.get(pair).value());
+    }
+    for (CondOutcomePair pair : p_Tag$prev.Counts.keySet()) {
+      long prev = pair.condVariable(0) == -1 ? -1 : cluster[(int) pair.condVariable(0)];
+      long cur = pair.outcome == -1 ? -1 : cluster[(int) pair.outcome];
+      merged.p_Tag$prev.accumulateCount(new CondOutcomePair(cur, new CondOutcomePair(prev)),
+          p_Tag$prev.Counts.get(pair).value());
+    }
+    merged.update();
+    merged.initialized = true;
+    return merged;
+  }
+
+  /**
+   * @return count * log( count / total ), 0 for empty counts
+   */
+  private static double xlogx(double count, double total) {
+    return count > 0 ? count * Math.log(count / total) : 0.0;
+  }
+
   public void viterbi() throws Exception {
+    viterbi(Configuration.Folder + "/tagged.json.gz");
+  }
+
+  /**
+   * Tags the sentences with their most likely clusters
+   * @param filename File to write the tagged sentences to
+   * @throws Exception
+   */
+  void viterbi(String filename) throws Exception {
     ExecutorService executor;
     sentences.reset_index();
-    executor = Executors.newFixedThreadPool(Configuration.threadCount);
-    for (int i = 0; i < Configuration.threadCount; ++i) {
-      executor.execute(new Viterbi(sentences, this, Configuration.NumClusters));
+    executor = Executors.newFixedThreadPool(threads);
+    for (int i = 0; i < threads; ++i) {
+      executor.execute(new Viterbi(sentences, this, K));
     }
     executor.shutdown();
     executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
     sentences.reset_index();
-    sentences.writeToDisk(Configuration.Folder + "/tagged.json.gz");
+    sentences.writeToDisk(filename);
+  }
+
+  /**
+   * Tags JSON files of any size with their most likely clusters.  Chunks of
+   * lines are parsed and tagged by a pool of threads, each reusing its own
+   * trellis, and written in input order, so only a bounded number of
+   * sentences are ever held in memory.  Every line is tagged regardless of
+   * length.
+   * @param files JSON files to tag
+   * @param filename File to write the tagged sentences to
+   * @throws Exception
+   */
+  public void tag(String[] files, String filename) throws Exception {
+    OrderedWriter writer = new OrderedWriter(new String[] { filename }, 2 * threads * CHUNK);
+    // The reader tags a chunk itself when every thread is busy
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(threads), new ThreadPoolExecutor.CallerRunsPolicy());
+    ThreadLocal<Viterbi> taggers = ThreadLocal.withInitial(() -> new Viterbi(null, this, K));
+    // Words only need hashing, so each thread interns into a grammar it empties after every chunk
+    ThreadLocal<Grammar> scratch = ThreadLocal.withInitial(Grammar::new);
+    List<Exception> exceptions = Collections.synchronizedList(new ArrayList<>());
+    AtomicInteger tagged = new AtomicInteger();
+
+    int count = 0;
+    for (String file : files) {
+      BufferedReader reader = TextFile.Reader(file);
+      ArrayList<String> chunk = new ArrayList<>(CHUNK);
+      String line;
+      while (exceptions.isEmpty()) {
+        line = reader.readLine();
+        if (line != null && !line.trim().isEmpty())
+          chunk.add(line);
+        if (chunk.size() == CHUNK || (line == null && !chunk.isEmpty())) {
+          final String[] lines = chunk.toArray(new String[chunk.size()]);
+          final int first = count;
+          executor.execute(() -> {
+            try {
+              Viterbi tagger = taggers.get();
+              Grammar words = scratch.get();
+              for (int i = 0; i < lines.length; ++i) {
+                Sentence sentence = new Sentence();
+                Sentences.readJSONSentence(lines[i], sentence, words);
+                if (sentence.length() > 0)
+                  tagger.tag(sentence);
+                writer.put(first + i, sentence.JSON.toString());
+                Logger.stat(tagged.incrementAndGet());
+              }
+              words.Words.clear();
+            } catch (Exception e) {
+              exceptions.add(e);
+              writer.abort(e);
+            }
+          });
+          count += lines.length;
+          chunk = new ArrayList<>(CHUNK);
+        }
+        if (line == null)
+          break;
+      }
+      reader.close();
+    }
+    executor.shutdown();
+    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    if (!exceptions.isEmpty()) {
+      writer.abort(exceptions.get(0));
+      throw exceptions.get(0);
+    }
+    writer.close();
+    Logger.logln("Tagged " + count + " sentences to " + filename);
   }
 
   @Override
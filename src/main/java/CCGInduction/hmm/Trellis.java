@@ -28,6 +28,19 @@ public class Trellis implements Serializable{
     }
   }
 
+  /**
+   * A trellis over the same words with its own states
+   */
+  Trellis(Trellis trellis, int K) {
+    words = trellis.words;
+    states = new State[words.length][];
+    for (int i = 0; i < words.length; ++i){
+      states[i] = new State[K];
+      for (int j = 0; j < K; ++j)
+        states[i][j] = new State();
+    }
+  }
+
   int length() { return words.length; }
 
   double alpha(int word, int cluster) {
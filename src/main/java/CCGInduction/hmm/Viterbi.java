@@ -1,72 +1,107 @@
 package CCGInduction.hmm;
 
-import CCGInduction.data.POS;
 import CCGInduction.data.Sentence;
 import CCGInduction.data.Sentences;
+import CCGInduction.data.Tagset;
 import CCGInduction.utils.Math.Log;
 
 import java.util.Arrays;
 
 /**
- * A Runnable object which fills the induced cluster with the viterbi path through the HMM
+ * A Runnable object which fills the induced cluster with the viterbi path through the HMM.
+ * The transition matrix is read once and the trellis is a pair of arrays which
+ * grow to the longest sentence seen, so tagging allocates nothing per sentence
+ * but the path.
  * Created by bisk1 on 2/13/15.
  */
 public class Viterbi implements Runnable {
   final Sentences workQueue;
   final BigramModel localModel;
   final int K;
+  /** Index 0 is the start/stop state */
+  private final double[][] transition;
+  private long[] words = new long[0];
+  private double[][] emit = new double[0][];
+  private double[][] alpha = new double[0][];
+  private int[][] paths = new int[0][];
 
   Viterbi(Sentences queue, BigramModel model, int k) {
     workQueue = queue;
     localModel = model.copy();
     K = k;
+    transition = new double[K + 1][K + 1];
+    for (int previous = -1; previous < K; ++previous) {
+      for (int current = -1; current < K; ++current) {
+        if (previous != -1 || current != -1) {
+          transition[previous + 1][current + 1] = localModel.p_Transition(previous, current);
+        }
+      }
+    }
   }
 
   @Override
   public void run() {
-    Trellis current;
     Sentence sentence;
     while((sentence = workQueue.next()) != null){
-      current = new Trellis(sentence, K, localModel.grammar.learnedWords);
-      current.clear();
-      int[] path = viterbi(current);
-      for (int i = 0; i < path.length; ++i) {
-        sentence.get(i).induced(new POS(String.valueOf(path[i])));
-        if (sentence.JSON != null)
-          sentence.JSON.words[i].cluster = String.valueOf(path[i]);
-      }
+      tag(sentence);
+    }
+  }
+
+  /**
+   * Sets the induced tag ( and JSON cluster ) of every word to its cluster
+   * on the viterbi path
+   * @param sentence Sentence to tag
+   */
+  void tag(Sentence sentence) {
+    int length = sentence.length();
+    if (words.length < length) {
+      words = new long[length];
+      emit = new double[length][K];
+      alpha = new double[length][K];
+      paths = new int[length][K];
+    }
+    for (int i = 0; i < length; ++i) {
+      words[i] = sentence.get(i).wordOrUnk(localModel.grammar.learnedWords);
+    }
+    int[] path = viterbi(length);
+    for (int i = 0; i < path.length; ++i) {
+      sentence.get(i).induced(Tagset.intern(String.valueOf(path[i])));
+      if (sentence.JSON != null)
+        sentence.JSON.words[i].cluster = String.valueOf(path[i]);
     }
   }
 
-  private int[] viterbi(Trellis trellis) {
-    int[][] paths = new int[trellis.length()][K];
-    for (int[] path : paths)
-      Arrays.fill(path, -1);
+  private double p_Transition(int previous, int current) {
+    return transition[previous + 1][current + 1];
+  }
+
+  private int[] viterbi(int length) {
+    for (int w = 0; w < length; ++w) {
+      Arrays.fill(paths[w], -1);
+      Arrays.fill(alpha[w], Log.ZERO);
+      for (int current = 0; current < K; ++current) {
+        emit[w][current] = localModel.p_Emit(words[w], current);
+      }
+    }
 
     // Start
     for (int current = 0; current < K; ++current) {
-      try {
-        trellis.alpha(0, current,
-            Log.mul(localModel.p_Transition(-1, current), localModel.p_Emit(trellis.words[0], current)));
-        paths[0][current] = current;
-      } catch (NullPointerException npe) {
-        System.err.println(localModel.grammar.Words.get(trellis.words[0]));
-        throw npe;
-      }
+      alpha[0][current] = Log.mul(p_Transition(-1, current), emit[0][current]);
+      paths[0][current] = current;
     }
 
     // Walk Middle
     double val;
-    for (int w = 1; w < trellis.length(); ++w) {
+    for (int w = 1; w < length; ++w) {
       for (int previous = 0; previous < K; ++previous) {
         for (int current = 0; current < K; ++current) {
           // choose best person to transition from
           val = Log.mul(
-              trellis.alpha(w - 1, previous),
-              localModel.p_Transition(previous, current),
-              localModel.p_Emit(trellis.words[w], current));
-          if (val > trellis.alpha(w,current)) {
-            trellis.setAlpha(w, current, val);
+              alpha[w - 1][previous],
+              p_Transition(previous, current),
+              emit[w][current]);
+          if (val > alpha[w][current]) {
+            alpha[w][current] = val;
             paths[w][current] = previous;
           }
         }
@@ -75,18 +110,19 @@ public class Viterbi implements Runnable {
 
     // End
     int finalState = -1;
+    double best = Log.ZERO;
     for (int current = 0; current < K; ++current) {
-      val = Log.mul(trellis.alpha(trellis.length() - 1, current), localModel.p_Transition(current, -1));
-      if (val > trellis.finalState.value()) {
-        trellis.finalState.set(val);
+      val = Log.mul(alpha[length - 1][current], p_Transition(current, -1));
+      if (val > best) {
+        best = val;
         finalState = current;
       }
     }
 
     // Find best path (backtracking)
-    int[] path = new int[trellis.length()];
+    int[] path = new int[length];
     path[path.length-1] = finalState;
-    for (int w = trellis.length() - 2; w >= 0; w--) {
+    for (int w = length - 2; w >= 0; w--) {
       path[w] = paths[w+1][path[w+1]];
     }
     return path;
@@ -4,6 +4,8 @@ import CCGInduction.utils.Math.Log;
 import CCGInduction.utils.Math.LogDouble;
 
 import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -45,6 +47,15 @@ public class CountsArray implements Serializable {
     add(d,cond,v);
   }
 
+  /**
+   * Counts of a single distribution
+   * @param d Distribution
+   * @return Map from (cond,out) to its count
+   */
+  public final Map<CondOutcomePair, LogDouble> get(Distribution d) {
+    return counts.get(d);
+  }
+
   /**
    * Merge to CountsArray objects
    * @param cA Array to be merged
@@ -59,6 +70,29 @@ public class CountsArray implements Serializable {
     }
   }
 
+  /**
+   * Copy of the counts with distributions replaced by their index in order, so
+   * they can be added to the counts of another copy of the model
+   * @param order Distributions of the model
+   * @return Compact counts
+   */
+  final SparseCounts sparse(List<Distribution> order) {
+    int n = 0;
+    for (ConcurrentHashMap<CondOutcomePair, LogDouble> dist_counts : counts.values()) {
+      n += dist_counts.size();
+    }
+    SparseCounts sparse = new SparseCounts(n);
+    for (int d = 0; d < order.size(); ++d) {
+      ConcurrentHashMap<CondOutcomePair, LogDouble> dist_counts = counts.get(order.get(d));
+      if (dist_counts != null) {
+        for (Map.Entry<CondOutcomePair, LogDouble> count : dist_counts.entrySet()) {
+          sparse.add(d, count.getKey(), count.getValue().value());
+        }
+      }
+    }
+    return sparse;
+  }
+
   /**
    * Incorporate all counts into the distribution objects' counts
    */
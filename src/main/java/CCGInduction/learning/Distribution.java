@@ -4,6 +4,7 @@ import CCGInduction.utils.ObjectDoublePair;
 import CCGInduction.Configuration;
 import CCGInduction.models.Model;
 import CCGInduction.utils.Logger;
+import CCGInduction.utils.Metrics;
 import CCGInduction.utils.Math.Log;
 import CCGInduction.utils.Math.LogDouble;
 import CCGInduction.utils.TextFile;
@@ -24,7 +25,7 @@ public class Distribution implements Serializable {
   private static final long serialVersionUID = 5162012L;
   /** Name of the distribution */
   public final String identifier;
-  private final double smallRuleP;
+  private double smallRuleP;
   private int printcount = 0;
   /**
    * Specifies if there's a uniform dirichlet prior
@@ -66,6 +67,13 @@ public class Distribution implements Serializable {
     smallRuleP = Configuration.smallRule;
   }
 
+  /**
+   * Re-reads hyperparameters from the Configuration
+   */
+  public void processParameters() {
+    smallRuleP = Configuration.smallRule;
+  }
+
   public Distribution(Distribution other) {
     model = other.model;
     identifier = other.identifier;
@@ -212,11 +220,37 @@ public class Distribution implements Serializable {
     conditioning_contexts.get(cond).put(new CondOutcomePair(res, cond), true);
   }
 
+  /**
+   * Stepwise EM: interpolates the running counts with the counts of the last
+   * mini-batch ( CountsNew, scaled up to the size of the corpus ) and leaves
+   * the result in CountsNew so the usual update moves it into Counts.
+   * @param logEta Step size
+   * @param logScale Corpus size over mini-batch size
+   */
+  public synchronized void stepwise(double logEta, double logScale) {
+    // Weight kept on the running counts.  eta_k = (k+2)^-alpha is below one
+    // from the first step ( 2^-0.7 ~ 0.62 ), so the first batch is blended
+    // with the counts of the initial model rather than replacing them
+    double logKeep = Math.log(1 - Math.exp(logEta));
+    for (CondOutcomePair cond : conditioning_contexts.keySet()) {
+      for (CondOutcomePair pair : conditioning_contexts.get(cond).keySet()) {
+        LogDouble old = Counts.get(pair);
+        LogDouble fresh = CountsNew.get(pair);
+        double value = Log.add(Log.mul(logKeep, old == null ? Log.ZERO : old.value()),
+            Log.mul(logEta, logScale, fresh == null ? Log.ZERO : fresh.value()));
+        CountsNew.put(pair, new LogDouble(value));
+      }
+      CountsNewEdited.put(cond, true);
+    }
+    CountsNewGlobalEdited = true;
+  }
+
   /**
    * Update probabilities using CountsNew Transfer CountsNew -> Counts
    * 
    */
   public void update() {
+    long start = Metrics.start();
     Outcomes full;
     for (CondOutcomePair cond : conditioning_contexts.keySet()) {
       if (CountsNewEdited.containsKey(cond) && CountsNewEdited.get(cond)) {
@@ -237,6 +271,9 @@ public class Distribution implements Serializable {
       CountsNewEdited.put(cond, false);
     }
     CountsNewGlobalEdited = false;
+    if (Metrics.enabled()) {
+      Metrics.time("mstep.ms." + identifier, start);
+    }
   }
 
   /**
@@ -374,7 +411,8 @@ public class Distribution implements Serializable {
     if (outcomes == null) {
       return;
     }
-    if (outcomes.sum() == Log.ZERO) {
+    double divisor = outcomes.sum();
+    if (divisor == Log.ZERO) {
       throw new Log.MathException("Divisor in normalization == 0");
     }
 
@@ -383,7 +421,6 @@ public class Distribution implements Serializable {
 
     ArrayList<Integer> Iterate = new ArrayList<>();
 
-    double divisor = outcomes.sum();
     // +1 smoothing
     for (int var = 0; var < outcomes.pairs.length; var++) {
       // Real + smooth
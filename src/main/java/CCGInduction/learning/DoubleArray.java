@@ -1,5 +1,6 @@
 package CCGInduction.learning;
 
+import CCGInduction.utils.Math.Kernels;
 import CCGInduction.utils.Math.Log;
 
 import java.io.Serializable;
@@ -95,14 +96,7 @@ public class DoubleArray implements Serializable {
    * @return double
    */
   public final double prod() {
-    Arrays.sort(da);
-    double product = Log.ONE;
-    for (double d : da) {
-      if (d != Log.ZERO) {
-        product = Log.mul(product, d);
-      }
-    }
-    return product;
+    return Kernels.logProduct(da, 0, size);
   }
 
   /**
@@ -0,0 +1,95 @@
+package CCGInduction.learning;
+
+import CCGInduction.Configuration;
+import CCGInduction.utils.Metrics;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks the likelihood of every chart across EM iterations.  A chart whose
+ * likelihood moved by less than Configuration.freezeThreshold ( relative ) is
+ * frozen: its expected counts are kept and replayed in later iterations
+ * instead of running inside-outside.  Every Configuration.freezeInterval
+ * iterations, when the corpus likelihood moved by more than
+ * Configuration.freezeBound, or when every chart is frozen ( a pass which
+ * only replays counts could not change the model ), all charts are
+ * recomputed.
+ *
+ * @author bisk1
+ */
+public class FrozenCharts {
+  private final ConcurrentHashMap<Integer, State> charts = new ConcurrentHashMap<>();
+  private final AtomicInteger replayed = new AtomicInteger(0);
+  private volatile boolean thawed = true;
+
+  private static final class State {
+    private final double likelihood;
+    private final SparseCounts counts;
+
+    private State(double likelihood, SparseCounts counts) {
+      this.likelihood = likelihood;
+      this.counts = counts;
+    }
+  }
+
+  /**
+   * Starts an iteration
+   * @param iteration EM iteration
+   * @param change Relative change of the corpus likelihood in the last iteration
+   */
+  public void nextIteration(int iteration, double change) {
+    thawed = change > Configuration.freezeBound
+        || (Configuration.freezeInterval > 0 && iteration % Configuration.freezeInterval == 0)
+        || charts.values().stream().allMatch(state -> state.counts != null);
+    replayed.set(0);
+  }
+
+  /**
+   * @return If this iteration recomputes every chart
+   */
+  boolean thawed() {
+    return thawed;
+  }
+
+  /**
+   * @return Charts whose counts were replayed this iteration
+   */
+  public int replayed() {
+    return replayed.get();
+  }
+
+  /**
+   * Adds a frozen chart's counts to counts
+   * @param id Chart id
+   * @param counts Destination
+   * @param order Distributions of the model
+   * @return The chart's weighted likelihood, or null if it must be recomputed
+   */
+  Double replay(int id, CountsArray counts, List<Distribution> order) {
+    State state;
+    if (thawed || (state = charts.get(id)) == null || state.counts == null) {
+      return null;
+    }
+    state.counts.replay(counts, order);
+    replayed.incrementAndGet();
+    Metrics.count("em.frozen", 1);
+    return state.likelihood;
+  }
+
+  /**
+   * Records a chart's likelihood, freezing it with its counts if it moved by
+   * less than the threshold since the last time it was computed
+   * @param id Chart id
+   * @param likelihood Weighted likelihood
+   * @param counts The chart's counts
+   * @param order Distributions of the model
+   */
+  void record(int id, double likelihood, CountsArray counts, List<Distribution> order) {
+    State previous = charts.get(id);
+    boolean stable = previous != null
+        && Math.abs(likelihood - previous.likelihood) <= Configuration.freezeThreshold * Math.abs(previous.likelihood);
+    charts.put(id, new State(likelihood, stable ? counts.sparse(order) : null));
+  }
+}
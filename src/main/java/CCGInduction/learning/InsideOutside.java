@@ -7,6 +7,7 @@ import CCGInduction.parser.Chart;
 import CCGInduction.parser.Charts;
 import CCGInduction.utils.Logger;
 import CCGInduction.utils.Mapper;
+import CCGInduction.utils.Metrics;
 
 import java.util.ArrayList;
 
@@ -18,7 +19,10 @@ import java.util.ArrayList;
  */
 public class InsideOutside<G extends Grammar, C extends Chart<G>> extends Mapper<G,C> {
 
-  private final CountsArray localCounts = new CountsArray();
+  protected final CountsArray localCounts = new CountsArray();
+  private final FrozenCharts frozen;
+  /** A single chart's counts, kept apart so they can be frozen */
+  private final CountsArray chartCounts;
 
   /**
    * Performs count computation over charts
@@ -27,9 +31,29 @@ public class InsideOutside<G extends Grammar, C extends Chart<G>> extends Mapper
    * @param exceptions    Caught exceptions
    */
   public InsideOutside(Charts<G, C> shared_charts, Model<G> shared_model, ArrayList<Exception> exceptions) {
+    this(shared_charts, shared_model, exceptions, null);
+  }
+
+  /**
+   * Performs count computation over charts, replaying the counts of frozen
+   * charts
+   * @param shared_charts Global reference to charts
+   * @param shared_model  Global model reference
+   * @param exceptions    Caught exceptions
+   * @param frozen        Per chart state across iterations ( or null )
+   */
+  public InsideOutside(Charts<G, C> shared_charts, Model<G> shared_model, ArrayList<Exception> exceptions,
+                       FrozenCharts frozen) {
     super(shared_model, shared_charts, exceptions);
+    this.frozen = frozen;
 
     this.localModel.Distributions.forEach(localCounts::addDist);
+    if (frozen != null) {
+      chartCounts = new CountsArray();
+      this.localModel.Distributions.forEach(chartCounts::addDist);
+    } else {
+      chartCounts = localCounts;
+    }
 
     this.localModel.accumulatedCounts = new CountsArray();
     localModel.Distributions.forEach(this.localModel.accumulatedCounts::addDist);
@@ -46,11 +70,30 @@ public class InsideOutside<G extends Grammar, C extends Chart<G>> extends Mapper
 
   @Override
   public void map(C chart) throws Exception {
-    if (chart.success()) {
+    if (frozen != null && chart.success()) {
+      Double likelihood = frozen.replay(chart.id(), localCounts, localModel.Distributions);
+      if (likelihood != null) {
+        localModel.LL.add(likelihood);
+        return;
+      }
+    }
+    if (chart.success() && Configuration.derivationCounts && Configuration.trainK <= 1
+        && Model.singleDerivation(chart.TOP)) {
+      long start = Metrics.start();
+      localModel.derivationCounts(chart, chartCounts);
+      Metrics.time("derivationCounts.ms", start);
+      localModel.LL.add(chart.likelihood * chart.weight);
+    } else if (chart.success()) {
+      long start = Metrics.start();
       localModel.inside(chart);
+      Metrics.time("inside.ms", start);
+      start = Metrics.start();
       localModel.outside(chart);
-      localModel.counts(chart, localCounts);
-      if (Configuration.trainK > 1 || Configuration.viterbi) {
+      Metrics.time("outside.ms", start);
+      start = Metrics.start();
+      localModel.counts(chart, chartCounts);
+      Metrics.time("counts.ms", start);
+      if (Configuration.trainK > 1) {
         // Build topK
         // chart.TOP.getTopK();
         if (chart.TOP.topK == null || chart.TOP.topK.isEmpty()) {
@@ -59,7 +102,12 @@ public class InsideOutside<G extends Grammar, C extends Chart<G>> extends Mapper
           throw new Exception("Successful with no parses: " + chart.parses + " --vs-- " + 0);
         }
       }
-      localModel.LL.add(chart.likelihood);
+      localModel.LL.add(chart.likelihood * chart.weight);
+    }
+    if (frozen != null && chart.success()) {
+      frozen.record(chart.id(), chart.likelihood * chart.weight, chartCounts, localModel.Distributions);
+      localCounts.addAll(chartCounts);
+      chartCounts.clear();
     }
   }
 
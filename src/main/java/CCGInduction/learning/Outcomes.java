@@ -1,6 +1,7 @@
 package CCGInduction.learning;
 
 import CCGInduction.utils.ObjectDoublePair;
+import CCGInduction.utils.Math.Kernels;
 import CCGInduction.utils.Math.Log;
 
 import java.util.ArrayList;
@@ -93,10 +94,7 @@ public class Outcomes {
    * Normalize the values
    */
   public void normalize() {
-    double d = sum();
-    for (int i = 0; i < vals.length; i++) {
-      vals[i] = Log.div(vals[i], d);
-    }
+    Kernels.logNormalize(vals, 0, vals.length);
   }
 
   @Override
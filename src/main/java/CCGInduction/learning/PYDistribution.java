@@ -1,9 +1,11 @@
 package CCGInduction.learning;
 
 import CCGInduction.Configuration;
+import CCGInduction.utils.Math.Kernels;
 import CCGInduction.utils.Math.Log;
 import CCGInduction.models.Model;
 import CCGInduction.utils.Logger;
+import CCGInduction.utils.Metrics;
 import CCGInduction.utils.Math.LogDouble;
 import CCGInduction.utils.Math.Sample;
 
@@ -123,6 +125,7 @@ public class PYDistribution extends Distribution {
 
   /* Variational without the base-measure (HMM) */
   public void updateVariationalNoBase() {
+    long start = Metrics.start();
     for (CondOutcomePair cond : conditioning_contexts.keySet()) {
       Outcomes full = null;
       if (CountsNewEdited.get(cond)) {
@@ -148,9 +151,12 @@ public class PYDistribution extends Distribution {
           counts = Math.max(counts, Configuration.smallRule);
 
           // C_z - d + beta_z(alpha(X) + kd)
-          counts = Log.sloppy_add(counts, alpha);
-          // W_z = digamma(exp( )) - digamma(exp( ))
-          full.vals[var] = Log.div(Sample.digamma(counts), divisor);
+          full.vals[var] = Log.sloppy_add(counts, alpha);
+        }
+        // W_z = digamma(exp( )) - digamma(exp( ))
+        Kernels.digamma(full.vals, full.vals, full.pairs.length);
+        for (int var = 0; var < full.pairs.length; var++) {
+          full.vals[var] = Log.div(full.vals[var], divisor);
         }
         // make sure no weight < min_weight
         // FIXME:  Why isn't this fixable with 1
@@ -174,6 +180,9 @@ public class PYDistribution extends Distribution {
       }
       CountsNewGlobalEdited = false;
     }
+    if (Metrics.enabled()) {
+      Metrics.time("mstep.ms." + identifier, start);
+    }
   }
 
   /**
@@ -184,6 +193,7 @@ public class PYDistribution extends Distribution {
    * = 0
    */
   public void updateVariational() {
+    long start = Metrics.start();
     for (CondOutcomePair cond : conditioning_contexts.keySet()) {
       CondOutcomePair conditioningVariable = this.model.backoff(cond, this);
 
@@ -242,9 +252,12 @@ public class PYDistribution extends Distribution {
           counts = Math.max(counts, Configuration.smallRule);
 
           // C_z - d + beta_z(alpha(X) + kd)
-          counts = Log.sloppy_add(counts, Log.mul(beta_z, baseMeasure));
-          // W_z = digamma(exp( )) - digamma(exp( ))
-          full.vals[var] = Log.div(Sample.digamma(counts), divisor);
+          full.vals[var] = Log.sloppy_add(counts, Log.mul(beta_z, baseMeasure));
+        }
+        // W_z = digamma(exp( )) - digamma(exp( ))
+        Kernels.digamma(full.vals, full.vals, full.pairs.length);
+        for (int var = 0; var < full.pairs.length; var++) {
+          full.vals[var] = Log.div(full.vals[var], divisor);
         }
         // make sure no weight < min_weight
         // FIXME:  Why isn't this fixable with 1
@@ -271,6 +284,9 @@ public class PYDistribution extends Distribution {
       }
       CountsNewGlobalEdited = false;
     }
+    if (Metrics.enabled()) {
+      Metrics.time("mstep.ms." + identifier, start);
+    }
   }
 
   /**
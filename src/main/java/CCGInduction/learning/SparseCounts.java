@@ -0,0 +1,48 @@
+package CCGInduction.learning;
+
+import java.util.List;
+
+/**
+ * A chart's expected counts stored as parallel arrays, so they can be added to
+ * a CountsArray again without recomputing them
+ *
+ * @author bisk1
+ */
+class SparseCounts {
+  private final int[] distributions;
+  private final CondOutcomePair[] pairs;
+  private final double[] values;
+  private int size = 0;
+
+  /**
+   * @param capacity Number of counts
+   */
+  SparseCounts(int capacity) {
+    distributions = new int[capacity];
+    pairs = new CondOutcomePair[capacity];
+    values = new double[capacity];
+  }
+
+  /**
+   * @param distribution Index of the distribution in the model
+   * @param pair Conditioning variables and outcome
+   * @param value Count in log space
+   */
+  void add(int distribution, CondOutcomePair pair, double value) {
+    distributions[size] = distribution;
+    pairs[size] = pair;
+    values[size] = value;
+    ++size;
+  }
+
+  /**
+   * Adds the counts to counts
+   * @param counts Destination
+   * @param order Distributions of the model the counts belong to
+   */
+  void replay(CountsArray counts, List<Distribution> order) {
+    for (int i = 0; i < size; ++i) {
+      counts.add(order.get(distributions[i]), pairs[i], values[i]);
+    }
+  }
+}
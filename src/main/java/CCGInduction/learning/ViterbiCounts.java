@@ -0,0 +1,39 @@
+package CCGInduction.learning;
+
+import CCGInduction.grammar.Grammar;
+import CCGInduction.models.Model;
+import CCGInduction.parser.Chart;
+import CCGInduction.parser.Charts;
+import CCGInduction.utils.Metrics;
+
+import java.util.ArrayList;
+
+/**
+ * Hard EM: counts only the best derivations of each chart ( see
+ * {@link Model#viterbiCounts} ) instead of running inside-outside
+ * @author bisk1
+ * @param <G>
+ * @param <C>
+ */
+public class ViterbiCounts<G extends Grammar, C extends Chart<G>> extends InsideOutside<G,C> {
+
+  /**
+   * Performs hard EM count computation over charts
+   * @param shared_charts Global reference to charts
+   * @param shared_model  Global model reference
+   * @param exceptions    Caught exceptions
+   */
+  public ViterbiCounts(Charts<G, C> shared_charts, Model<G> shared_model, ArrayList<Exception> exceptions) {
+    super(shared_charts, shared_model, exceptions);
+  }
+
+  @Override
+  public void map(C chart) throws Exception {
+    if (chart.success()) {
+      long start = Metrics.start();
+      localModel.viterbiCounts(chart, localCounts);
+      Metrics.time("viterbiCounts.ms", start);
+      localModel.LL.add(chart.likelihood * chart.weight);
+    }
+  }
+}
@@ -79,12 +79,12 @@ public class AAAI12Model extends Model<Grammar> {
 
     double value;
     if (rule.Type.equals(Rule_Type.PRODUCTION)) {
-      value = Log.div(Math.log(parent.outside_parses), Math.log(parent.cell.chart.parses));
+      value = Log.div(Math.log(parent.outside_parses), parent.cell.chart.logPriorParses());
       backPointer.Type(LEX);
     } else {
       backPointer.Type(UNARY);
       value = Log.div(Math.log(parent.outside_parses * backPointer.leftChild().parses),
-          Math.log(parent.cell.chart.parses));
+          parent.cell.chart.logPriorParses());
     }
     p_exp(parent, backPointer, value);
     if (rule.Type.equals(Rule_Type.PRODUCTION)) {
@@ -106,7 +106,7 @@ public class AAAI12Model extends Model<Grammar> {
     }
 
     double value = Log.div(Math.log(parent.outside_parses * backPointer.leftChild().parses * backPointer.rightChild().parses),
-        Math.log(parent.cell.chart.parses));
+        parent.cell.chart.logPriorParses());
     p_exp(parent, backPointer, value);
     if (rule.head.equals(Rule_Direction.Left)) {
       p_head(parent, backPointer, backPointer.leftChild(), value);
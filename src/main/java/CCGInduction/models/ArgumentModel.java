@@ -144,6 +144,7 @@ public class ArgumentModel extends Model<Grammar> {
     p_HasPunct = model.p_HasPunct.copy();
     p_Punct    = model.p_Punct.copy();
     Test       = model.Test;
+    initialized = model.initialized;
     setup();
   }
 
@@ -264,7 +265,7 @@ public class ArgumentModel extends Model<Grammar> {
       /* Emissions */
       // TODO: Parses should be top?
       if(!Test)
-        v = Log.div(Math.log(parent.outside_parses), Math.log(parent.cell.chart.parses));
+        v = Log.div(Math.log(parent.outside_parses), parent.cell.chart.logPriorParses());
       /* P Emit */
       p_emit(parent, backPointer, v);
     } else {
@@ -279,7 +280,7 @@ public class ArgumentModel extends Model<Grammar> {
       backPointer.Y(Y);
       // TODO: Parses should be top?
       if (!Test)
-        v = Log.div(Math.log(parent.outside_parses*backPointer.leftChild.parses),Math.log(parent.cell.chart.parses));
+        v = Log.div(Math.log(parent.outside_parses*backPointer.leftChild.parses),parent.cell.chart.logPriorParses());
       p_Y(parent, backPointer, v);
       p_comb(parent, backPointer, v);
 
@@ -367,7 +368,7 @@ public class ArgumentModel extends Model<Grammar> {
     double v = Log.ZERO;
     if(!Test)
       v = Log.div(Math.log(parent.outside_parses*backPointer.leftChild.parses*backPointer.rightChild.parses),
-                       Math.log(parent.cell.chart.parses));
+                       parent.cell.chart.logPriorParses());
     p_type(parent, backPointer, v);
     p_comb(parent, backPointer, v);
     p_Y(parent, backPointer, v);
@@ -421,6 +422,24 @@ public class ArgumentModel extends Model<Grammar> {
     return value;
   }
 
+  @Override
+  public Double lexicalScore(ChartItem<Grammar> item) {
+    if (Tagset.Punct(item.cell.chart.sentence.get(item.X).tag())) {
+      return Log.ONE;       // As in prob, generated at max-proj attachment
+    }
+    Double type = p_Type.P(type_cond(item), LEX);
+    Double emit;
+    if (!lexicalized || lexicalTransition) {
+      emit = p_Tag.P(emit_cond(item), item.tag());
+    } else {
+      emit = p_Word.P(emitWord_cond(item), item.word());
+    }
+    if (type == null || emit == null) {
+      return Log.ZERO;
+    }
+    return Log.mul(type, emit);
+  }
+
   /**
    * Re-weights a constituent based on crossing a bracketing
    * @param cell Cell whose span we're weighting
@@ -19,6 +19,11 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 /**
@@ -72,36 +77,59 @@ public class HDPArgumentModel extends ArgumentModel {
   public HDPArgumentModel(Grammar grammar) {
     super(grammar);
 
-    double[] hyper = Configuration.alphaPower;
-    double logDiscount = Configuration.logDiscount;
-
     // Arguments
-    base_Args = new PYDistribution(this, "base_Args", hyper[0], logDiscount, true);
+    base_Args = new PYDistribution(this, "base_Args");
     base_Args.dirichletPrior = true;
-    p_Arg.processParameters(hyper[0], logDiscount, true);
 
     // POS Tags
-    base_Tags = new PYDistribution(this, "base_Tags", hyper[1], logDiscount, true);
+    base_Tags = new PYDistribution(this, "base_Tags");
     base_Tags.dirichletPrior = true;
-    p_Tag.processParameters(hyper[1], logDiscount, true);
 
 
     BETA = this.grammar.Lex("#BETA#");
     BETA_array = new CondOutcomePair(BETA);
 
     // Should be in lexicalize
-    base_Words = new PYDistribution(this, "base_Words", hyper[2], logDiscount, false);
+    base_Words = new PYDistribution(this, "base_Words");
     base_Words.dirichletPrior = true;
-    p_Word.processParameters(hyper[2], logDiscount, false);
 
     // Punctuation
-    this.base_Punct       = new PYDistribution(this, "base_Punct",      hyper[3], logDiscount, true);
-    this.p_PunctPrev      = new PYDistribution(this, "p_PunctPrev",     hyper[3], logDiscount, true);
-    this.p_Punct.processParameters(hyper[3], logDiscount, true);
-    this.base_HasPunct    = new PYDistribution(this, "base_HasPunct",   hyper[3], logDiscount, true);
-    this.p_HasPunctNoHist = new PYDistribution(this, "p_HasPunctNoHist",hyper[3], logDiscount, true);
-    this.p_HasPunct.processParameters(hyper[3], logDiscount, true);
+    this.base_Punct       = new PYDistribution(this, "base_Punct");
+    this.p_PunctPrev      = new PYDistribution(this, "p_PunctPrev");
+    this.base_HasPunct    = new PYDistribution(this, "base_HasPunct");
+    this.p_HasPunctNoHist = new PYDistribution(this, "p_HasPunctNoHist");
     setup();
+    processParameters();
+  }
+
+  /**
+   * Concentration ( alphaPower ) and discount of every PY distribution
+   */
+  @Override
+  public void processParameters() {
+    super.processParameters();
+    double[] hyper = Configuration.alphaPower;
+    double logDiscount = Configuration.logDiscount;
+
+    // Arguments
+    base_Args.processParameters(hyper[0], logDiscount, true);
+    p_Arg.processParameters(hyper[0], logDiscount, true);
+
+    // POS Tags
+    base_Tags.processParameters(hyper[1], logDiscount, true);
+    p_Tag.processParameters(hyper[1], logDiscount, true);
+
+    // Words
+    base_Words.processParameters(hyper[2], logDiscount, false);
+    p_Word.processParameters(hyper[2], logDiscount, false);
+
+    // Punctuation
+    base_Punct.processParameters(hyper[3], logDiscount, true);
+    p_PunctPrev.processParameters(hyper[3], logDiscount, true);
+    p_Punct.processParameters(hyper[3], logDiscount, true);
+    base_HasPunct.processParameters(hyper[3], logDiscount, true);
+    p_HasPunctNoHist.processParameters(hyper[3], logDiscount, true);
+    p_HasPunct.processParameters(hyper[3], logDiscount, true);
   }
 
   HDPArgumentModel(HDPArgumentModel model) {
@@ -505,100 +533,159 @@ public class HDPArgumentModel extends ArgumentModel {
   public void disallowLowCondProbCats() throws Exception{
     initialized = false;
     // Compute the set of lexical categories to remove
-
-    // Compute the conditional probabilities.   p( cat | tag )
-    // p( c | t ) = p( t | c ) * p (c) / p (t)
-    //            = p_Tag      * p (c) / base_Tag
-    // p(c) == #cat / #tags
-    HashMap<Long,HashMap<Long,Double>> CondProb = new HashMap<>();
-    double total = Log.ZERO;
-    for(CondOutcomePair pair : base_Tags.Counts.keySet()){
-      total = Log.add(total, base_Tags.Counts.get(pair).value());
-    }
-    for(CondOutcomePair pair : base_Tags.Probabilities.keySet()){
-      long tag = pair.outcome;
-      CondProb.put(tag,new HashMap<>());
-      double p_t = base_Tags.Probabilities.get(pair);
-
-      for(CondOutcomePair cat : p_Tag.conditioning_contexts.keySet()) {
-        // if exists  c --> t
-        if (p_Tag.Probabilities.containsKey(new CondOutcomePair(tag, cat))){
-          double p_t_c = p_Tag.P(new CondOutcomePair(tag, cat));
-
-          Double count_c = Log.ZERO;
-          for(CondOutcomePair t_c : p_Tag.conditioning_contexts.get(cat).keySet()){
-            count_c = Log.add(count_c,p_Tag.Counts.get(t_c).value());
-          }
-          double p_c = Log.div(count_c, total);
-          CondProb.get(tag).put(cat.condVariable(0), Log.div(Log.mul(p_t_c,p_c), p_t));
-        }
-      }
-    }
+    Map<Long, ConcurrentHashMap<Long, Double>> CondProb = lexicalCondProbs();
 
     BufferedWriter Lexicon;
     if (!Configuration.printModelsVerbose) Lexicon = null;
     else Lexicon = TextFile.Writer(Configuration.Folder + "/Lexicon" + lexCount + ".txt.gz");
     // Ban those lexical rules
+    ArrayList<IntPair> banned = new ArrayList<>();
     for(POS t : Tagset.tags()){
       IntPair cat = new IntPair(grammar.Lex(t.toString()));
       if(grammar.Rules.containsKey(cat)){
         for(Rule r : grammar.Rules.get(cat).keySet()){
+          Map<Long, Double> cats = CondProb.get(r.B);
+          Double prob = cats == null ? null : cats.get(r.A);
           if(!Tagset.Punct(t) && !Tagset.CONJ(t)) {
-            if(!CondProb.containsKey(r.B) || !CondProb.get(r.B).containsKey(r.A)){
-              grammar.unaryCheck.put(new IntPair(r.A,r.B), valid.Invalid);
-            } else if(Math.exp(CondProb.get(r.B).get(r.A)) < Configuration.CondProb_threshold){
-              grammar.unaryCheck.put(new IntPair(r.A,r.B), valid.Invalid);
+            if(prob == null || Math.exp(prob) < Configuration.CondProb_threshold){
+              banned.add(new IntPair(r.A,r.B));
             }
           }
           if (Lexicon != null) {
-            if (CondProb.containsKey(r.B) && CondProb.get(r.B).containsKey(r.A)) {
-              Lexicon.write(String.format("%13.10f   %-15s  %-5s\n",
-                  Math.exp(CondProb.get(r.B).get(r.A)),
-                  grammar.prettyCat(r.A), grammar.prettyCat(r.B)));
-            } else {
-              Lexicon.write(String.format("%13.10f   %-15s  %-5s\n",
-                  -1.0, grammar.prettyCat(r.A), grammar.prettyCat(r.B)));
-            }
+            Lexicon.write(String.format("%13.10f   %-15s  %-5s\n",
+                prob != null ? Math.exp(prob) : -1.0, grammar.prettyCat(r.A), grammar.prettyCat(r.B)));
           }
         }
       }
     }
     if (Lexicon != null) Lexicon.close();
+    for (IntPair rule : banned) {
+      grammar.unaryCheck.put(rule, valid.Invalid);
+    }
     lexCount += 1;
   }
   private static int lexCount=0;
 
-  public void trimDistributions() {
+  /**
+   * Computes the conditional probabilities of lexical categories.  p( cat | tag )
+   *  p( c | t ) = p( t | c ) * p (c) / p (t)
+   *             = p_Tag      * p (c) / base_Tag
+   *  p(c) == #cat / #tags
+   * Every category is visited once, with its own emissions, and the categories
+   * are shared out between Configuration.threadCount threads.
+   * @return tag -> cat -> p( cat | tag )
+   * @throws Exception
+   */
+  private Map<Long, ConcurrentHashMap<Long, Double>> lexicalCondProbs() throws Exception {
+    double total = Log.ZERO;
+    for(CondOutcomePair pair : base_Tags.Counts.keySet()){
+      total = Log.add(total, base_Tags.Counts.get(pair).value());
+    }
+    HashMap<Long, Double> p_t = new HashMap<>();
+    HashMap<Long, ConcurrentHashMap<Long, Double>> CondProb = new HashMap<>();
+    for(CondOutcomePair pair : base_Tags.Probabilities.keySet()){
+      p_t.put(pair.outcome, base_Tags.Probabilities.get(pair));
+      CondProb.put(pair.outcome, new ConcurrentHashMap<>());
+    }
+
+    final double p_tags = total;
+    ArrayList<Callable<Void>> tasks = new ArrayList<>(p_Tag.conditioning_contexts.size());
+    for(CondOutcomePair cat : p_Tag.conditioning_contexts.keySet()) {
+      tasks.add(() -> {
+        Set<CondOutcomePair> emissions = p_Tag.conditioning_contexts.get(cat).keySet();
+        double p_c = Log.div(categoryCount(cat), p_tags);
+        // if exists  c --> t
+        for(CondOutcomePair t_c : emissions){
+          Double p_t_c;
+          if (p_t.containsKey(t_c.outcome) && (p_t_c = p_Tag.Probabilities.get(t_c)) != null) {
+            CondProb.get(t_c.outcome).put(cat.condVariable(0), Log.div(Log.mul(p_t_c, p_c), p_t.get(t_c.outcome)));
+          }
+        }
+        return null;
+      });
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(Configuration.threadCount);
+    try {
+      for (Future<Void> task : executor.invokeAll(tasks)) {
+        task.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    return CondProb;
+  }
+
+  /**
+   * @param cat Category context of p_Tag
+   * @return Total count of the category's emissions
+   */
+  private double categoryCount(CondOutcomePair cat) {
+    double count_c = Log.ZERO;
+    for(CondOutcomePair t_c : p_Tag.conditioning_contexts.get(cat).keySet()){
+      count_c = Log.add(count_c, p_Tag.Counts.get(t_c).value());
+    }
+    return count_c;
+  }
+
+  /**
+   * Bans the least likely emissions of the rarest category whose most likely
+   * emissions cover 95% of its mass with fewer tags than it allows.  Categories
+   * are checked concurrently, in order of their counts, and the rest are
+   * cancelled once one has been trimmed.
+   * @throws Exception
+   */
+  public void trimDistributions() throws Exception {
     ArrayList<ObjectDoublePair<CondOutcomePair>> categories = new ArrayList<>();
     categories.addAll(p_Tag.conditioning_contexts.keySet().stream().map(
-        K -> new ObjectDoublePair<>(K, p_Tag.Counts.get(K).value())).collect(Collectors.toList()));
+        K -> new ObjectDoublePair<>(K, categoryCount(K))).collect(Collectors.toList()));
     Collections.sort(categories);
-    for (ObjectDoublePair cat_count : categories) {
-      Outcomes emissions = new Outcomes(p_Tag.conditioning_contexts.get(cat_count.content()).size());
-      for (CondOutcomePair tag : p_Tag.conditioning_contexts.get(cat_count.content()).keySet())
-        emissions.add(tag, p_Tag.P(tag));
-      emissions.sort();
-
-      double cum = 0.0;
-      Set<CondOutcomePair> toKeep = new HashSet<>();
-      for (int i = 0; i < emissions.length(); ++i) {
-        if (cum < 0.95) {
-          toKeep.add(emissions.pairs[i]);
-          cum += Math.exp(emissions.vals[i]);
+    ExecutorService executor = Executors.newFixedThreadPool(Configuration.threadCount);
+    try {
+      ArrayList<Future<Set<CondOutcomePair>>> trims = new ArrayList<>(categories.size());
+      for (ObjectDoublePair<CondOutcomePair> cat_count : categories) {
+        trims.add(executor.submit(() -> trim(cat_count.content())));
+      }
+      for (Future<Set<CondOutcomePair>> trim : trims) {
+        Set<CondOutcomePair> toRemove = trim.get();
+        if (toRemove != null) {
+          for (CondOutcomePair pair : toRemove)
+            grammar.unaryCheck.put(new IntPair(pair.condVariable(0), pair.outcome), valid.Invalid);
+          return;
         }
       }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 
-      Set<CondOutcomePair> allowedEmissions = new HashSet<>();
-      allowedEmissions.addAll(p_Tag.conditioning_contexts.get(cat_count.content()).keySet().stream()
-          .filter(pair -> !grammar.unaryCheck(pair.condVariable(0), pair.outcome).equals(valid.Invalid)) // FIXME: what about unused?
-          .collect(Collectors.toList()));
-
-      if (allowedEmissions.size() > toKeep.size()) {
-        allowedEmissions.removeAll(toKeep);
-        for (CondOutcomePair toRemove : allowedEmissions)
-          grammar.unaryCheck.put(new IntPair(toRemove.condVariable(0),toRemove.outcome), valid.Invalid);
-        return;
+  /**
+   * @param cat Category context of p_Tag
+   * @return Allowed emissions outside the category's top 95%, or null if none need banning
+   */
+  private Set<CondOutcomePair> trim(CondOutcomePair cat) {
+    Outcomes emissions = new Outcomes(p_Tag.conditioning_contexts.get(cat).size());
+    for (CondOutcomePair tag : p_Tag.conditioning_contexts.get(cat).keySet())
+      emissions.add(tag, p_Tag.P(tag));
+    emissions.sort();
+
+    double cum = 0.0;
+    Set<CondOutcomePair> toKeep = new HashSet<>();
+    for (int i = 0; i < emissions.length(); ++i) {
+      if (cum < 0.95) {
+        toKeep.add(emissions.pairs[i]);
+        cum += Math.exp(emissions.vals[i]);
       }
     }
+
+    Set<CondOutcomePair> allowedEmissions = new HashSet<>();
+    allowedEmissions.addAll(p_Tag.conditioning_contexts.get(cat).keySet().stream()
+        .filter(pair -> !grammar.unaryCheck(pair.condVariable(0), pair.outcome).equals(valid.Invalid)) // FIXME: what about unused?
+        .collect(Collectors.toList()));
+
+    if (allowedEmissions.size() > toKeep.size()) {
+      allowedEmissions.removeAll(toKeep);
+      return allowedEmissions;
+    }
+    return null;
   }
 }
@@ -11,7 +11,10 @@ import CCGInduction.parser.ChartItem;
 import CCGInduction.utils.IntPair;
 import CCGInduction.utils.Logger;
 import CCGInduction.utils.Math.Log;
+import CCGInduction.utils.Math.ScaledDouble;
 import CCGInduction.parser.Charts;
+import CCGInduction.parser.MiniBatchCharts;
+import CCGInduction.parser.SerializableCharts;
 import CCGInduction.utils.TextFile;
 
 import java.io.*;
@@ -22,6 +25,7 @@ import java.util.HashSet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.zip.GZIPOutputStream;
 
 /**
@@ -91,6 +95,16 @@ public strictfp abstract class Model<G extends Grammar> implements Externalizabl
    */
   public abstract double prob(ChartItem<G> parent, BackPointer<G> backpointer);
 
+  /**
+   * Score of a lexical chart item, used to rank a token's categories before
+   * parsing.  Models which do not define one return null and are not pruned.
+   * @param item Lexical chart item
+   * @return Score or null
+   */
+  public Double lexicalScore(ChartItem<G> item) {
+    return null;
+  }
+
   /**
    * Accumulate count
    * 
@@ -138,6 +152,18 @@ public strictfp abstract class Model<G extends Grammar> implements Externalizabl
     Distributions.forEach(Distribution::update);
   }
 
+  /**
+   * Stepwise EM update with the counts of the last mini-batch
+   * @param logEta Step size
+   * @param logScale Corpus size over mini-batch size
+   */
+  public void stepwise(double logEta, double logScale) {
+    for (Distribution distribution : Distributions) {
+      distribution.stepwise(logEta, logScale);
+    }
+    update();
+  }
+
   /**
    * Initialized all distributions
    */
@@ -182,10 +208,16 @@ public strictfp abstract class Model<G extends Grammar> implements Externalizabl
       if (chart.TOP == null) {
         throw new FailedModelAssertion("TOP is null");
       }
-      insideRecurse(chart.TOP);
-      chart.likelihood = chart.TOP.alpha();
-      // Top should have beta = 1
-      chart.TOP.betaInit();
+      if (scaled()) {
+        scaledInsideRecurse(chart.TOP);
+        chart.likelihood = chart.TOP.scaledAlpha().log();
+        chart.TOP.scaledBeta().set(1.0, 0);
+      } else {
+        insideRecurse(chart.TOP);
+        chart.likelihood = chart.TOP.alpha();
+        // Top should have beta = 1
+        chart.TOP.betaInit();
+      }
     }
     if (chart.likelihood > Log.ONE || chart.likelihood == Log.ZERO) {
       throw new Log.MathException("Inside P (" + chart.likelihood + ") invalid for parseable sentence");
@@ -226,6 +258,57 @@ public strictfp abstract class Model<G extends Grammar> implements Externalizabl
     }
   }
 
+  /**
+   * Real space version of insideRecurse.  Each rule probability is converted
+   * once and cached on its backpointer for outside and counts.
+   *
+   * @param parent Parent ChartItem
+   */
+  private void scaledInsideRecurse(ChartItem<G> parent) {
+    if (parent.computedProbability) {
+      return;
+    }
+
+    parent.computedProbability = true;
+    if (parent.children.isEmpty()) { // Productions are observed
+      parent.scaledInit(true);
+      return;
+    }
+    parent.scaledInit(false);
+    ScaledDouble alpha = parent.scaledAlpha();
+    ScaledDouble B, C;
+    double p;
+    for (BackPointer<G> bp : parent.children) {
+      p = prob(parent, bp);
+      if (p == Log.ZERO) {
+        throw new Log.MathException("Adding ZERO to inside probability?");
+      }
+      bp.scaledExponent = ScaledDouble.exponentOf(p);
+      bp.scaledProb = ScaledDouble.mantissaOf(p, bp.scaledExponent);
+      if (bp.isUnary()) {
+        scaledInsideRecurse(bp.leftChild());
+        B = bp.leftChild().scaledAlpha();
+        alpha.add(bp.scaledProb * B.mantissa(), bp.scaledExponent + B.exponent());
+      } else {
+        scaledInsideRecurse(bp.leftChild());
+        scaledInsideRecurse(bp.rightChild());
+        B = bp.leftChild().scaledAlpha();
+        C = bp.rightChild().scaledAlpha();
+        alpha.add(bp.scaledProb * B.mantissa() * C.mantissa(),
+            bp.scaledExponent + B.exponent() + C.exponent());
+      }
+    }
+  }
+
+  /**
+   * Scaled inside-outside replaces Log arithmetic with ScaledDouble during
+   * training ( Test parses keep log space for their K-best lists )
+   * @return If inside/outside/counts work in real space
+   */
+  private boolean scaled() {
+    return Configuration.scaledInsideOutside && !Test;
+  }
+
   /**
    * Compute the outside probabilities for a chart
    * 
@@ -233,7 +316,11 @@ public strictfp abstract class Model<G extends Grammar> implements Externalizabl
    */
   public final void outside(Chart<G> chart) {
     // Just traverse the "TOP"s children
-    outsideRecurse(chart.TOP);
+    if (scaled()) {
+      scaledOutsideRecurse(chart.TOP);
+    } else {
+      outsideRecurse(chart.TOP);
+    }
   }
 
   /**
@@ -285,6 +372,52 @@ public strictfp abstract class Model<G extends Grammar> implements Externalizabl
     }
   }
 
+  /**
+   * Real space version of outsideRecurse
+   *
+   * @param parent Parent ChartItem
+   */
+  private void scaledOutsideRecurse(ChartItem<G> parent) {
+    parent.seenParents = 0;
+
+    ScaledDouble beta = parent.scaledBeta();
+    ChartItem<G> H;
+    ChartItem<G> S;
+    for (BackPointer<G> bp : parent.children) {
+      if (bp.isUnary()) {
+        // beta_B = beta_A*P(A->B)
+        H = bp.leftChild();
+        H.scaledBeta().add(beta.mantissa() * bp.scaledProb, beta.exponent() + bp.scaledExponent);
+
+        H.seenParents += 1;
+
+        if (H.seenParents == H.parents && !H.children.isEmpty()) {
+          scaledOutsideRecurse(H);
+        }
+      } else {
+        H = bp.leftChild();
+        S = bp.rightChild();
+
+        H.seenParents += 1;
+        S.seenParents += 1;
+
+        // beta_B = beta_A*P(A->BC)*alpha_C
+        H.scaledBeta().add(beta.mantissa() * S.scaledAlpha().mantissa() * bp.scaledProb,
+            beta.exponent() + S.scaledAlpha().exponent() + bp.scaledExponent);
+        // beta_C = beta_A*P(A->BC)*alpha_B
+        S.scaledBeta().add(beta.mantissa() * H.scaledAlpha().mantissa() * bp.scaledProb,
+            beta.exponent() + H.scaledAlpha().exponent() + bp.scaledExponent);
+
+        if (H.seenParents == H.parents && !H.children.isEmpty()) {
+          scaledOutsideRecurse(H);
+        }
+        if (S.seenParents == S.parents && !S.children.isEmpty()) {
+          scaledOutsideRecurse(S);
+        }
+      }
+    }
+  }
+
   public synchronized void accumulateCounts(CountsArray cA) {
     accumulatedCounts.addAll(cA);
   }
@@ -296,7 +429,64 @@ public strictfp abstract class Model<G extends Grammar> implements Externalizabl
    * @param countsArray Array storing EM counts
    */
   public void counts(Chart<G> chart, CountsArray countsArray) {
-    countsRecurse(chart.TOP, chart.likelihood, countsArray);
+    if (scaled()) {
+      scaledCountsRecurse(chart.TOP, chart.TOP.scaledAlpha(), Math.log(chart.weight), countsArray);
+      return;
+    }
+    // Dividing by likelihood / weight scales every count by the chart's weight
+    countsRecurse(chart.TOP, Log.div(chart.likelihood, Math.log(chart.weight)), countsArray);
+  }
+
+  /**
+   * Real space version of countsRecurse, counts are only moved to log space
+   * when handed to count()
+   *
+   * @param parent Parent ChartItem
+   * @param likelihood Chart's inside probability
+   * @param logWeight Log of the chart's weight
+   * @param countsArray Array storing EM counts
+   */
+  private void scaledCountsRecurse(ChartItem<G> parent, ScaledDouble likelihood, double logWeight,
+                                   CountsArray countsArray) {
+    if (parent.computedCounts) {
+      return;
+    }
+    parent.computedCounts = true;
+
+    ScaledDouble beta = parent.scaledBeta();
+    double update;
+    ChartItem<G> H;
+    ChartItem<G> S;
+    for (BackPointer<G> bp : parent.children) {
+      H = bp.leftChild();
+      if (bp.isUnary()) {
+        // beta_A * alpha_B * P( A -> B )
+        update = likelihood.logRatio(beta.mantissa() * H.scaledAlpha().mantissa() * bp.scaledProb,
+            beta.exponent() + H.scaledAlpha().exponent() + bp.scaledExponent) + logWeight;
+
+        count(parent, bp, update, countsArray);
+
+        if (!H.children.isEmpty()) {
+          scaledCountsRecurse(H, likelihood, logWeight, countsArray);
+        }
+      } else {
+        S = bp.rightChild();
+        // beta_A * alpha_B * alpha_C * P( A -> B C )
+        update = likelihood.logRatio(
+            beta.mantissa() * H.scaledAlpha().mantissa() * S.scaledAlpha().mantissa() * bp.scaledProb,
+            beta.exponent() + H.scaledAlpha().exponent() + S.scaledAlpha().exponent() + bp.scaledExponent)
+            + logWeight;
+
+        count(parent, bp, update, countsArray);
+
+        if (!H.children.isEmpty()) {
+          scaledCountsRecurse(H, likelihood, logWeight, countsArray);
+        }
+        if (!S.children.isEmpty()) {
+          scaledCountsRecurse(S, likelihood, logWeight, countsArray);
+        }
+      }
+    }
   }
 
   /**
@@ -346,6 +536,146 @@ public strictfp abstract class Model<G extends Grammar> implements Externalizabl
     }
   }
 
+  /**
+   * A chart is a single derivation ( e.g. one gold AUTO parse ) when no item
+   * reachable from parent has more than one backpointer
+   *
+   * @param parent Parent ChartItem
+   * @return If the items below parent form a tree
+   */
+  public static <G extends Grammar> boolean singleDerivation(ChartItem<G> parent) {
+    if (parent.children.size() > 1) {
+      return false;
+    }
+    for (BackPointer<G> bp : parent.children) {
+      if (!singleDerivation(bp.leftChild()) || (!bp.isUnary() && !singleDerivation(bp.rightChild()))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Compute the counts for a chart holding a single derivation.  Every
+   * backpointer has a posterior of one, so each rule is counted with the
+   * chart's weight and the likelihood is the product of the rules, without
+   * an inside or outside pass.
+   *
+   * @param chart Current chart to count
+   * @param countsArray Array storing EM counts
+   */
+  public void derivationCounts(Chart<G> chart, CountsArray countsArray) {
+    chart.likelihood = derivationCountsRecurse(chart.TOP, Math.log(chart.weight), countsArray);
+    if (chart.likelihood > Log.ONE || chart.likelihood == Log.ZERO) {
+      throw new Log.MathException("Derivation P (" + chart.likelihood + ") invalid for parseable sentence");
+    }
+  }
+
+  /**
+   * Recursively count the rules below parent
+   *
+   * @param parent Parent ChartItem
+   * @param logWeight Log of the chart's weight
+   * @param countsArray Array storing EM counts
+   * @return Probability of the derivation below parent
+   */
+  private double derivationCountsRecurse(ChartItem<G> parent, double logWeight, CountsArray countsArray) {
+    double likelihood = Log.ONE;
+    for (BackPointer<G> bp : parent.children) {
+      count(parent, bp, logWeight, countsArray);
+      likelihood = Log.mul(likelihood, prob(parent, bp), derivationCountsRecurse(bp.leftChild(), logWeight, countsArray));
+      if (!bp.isUnary()) {
+        likelihood = Log.mul(likelihood, derivationCountsRecurse(bp.rightChild(), logWeight, countsArray));
+      }
+    }
+    return likelihood;
+  }
+
+  /**
+   * Hard EM counts for a chart.  A max-product pass keeps the best derivation
+   * below every item, and only the best derivation ( or the trainK best,
+   * weighted by their normalized probabilities ) is counted, so there is no
+   * outside pass and no posterior for every backpointer.  The likelihood is
+   * that of the best derivation.
+   *
+   * @param chart Current chart to count
+   * @param countsArray Array storing EM counts
+   * @throws Exception
+   */
+  public void viterbiCounts(Chart<G> chart, CountsArray countsArray) throws Exception {
+    double logWeight = Math.log(chart.weight);
+    chart.likelihood = viterbiRecurse(chart.TOP);
+    if (chart.likelihood > Log.ONE || chart.likelihood == Log.ZERO) {
+      throw new Log.MathException("Viterbi P (" + chart.likelihood + ") invalid for parseable sentence");
+    }
+    if (Configuration.trainK <= 1) {
+      viterbiCountsRecurse(chart.TOP, logWeight, countsArray);
+      return;
+    }
+    chart.TOP.populateTopK(false);
+    double[] probs = new double[chart.TOP.topK.size()];
+    for (int k = 0; k < probs.length; ++k) {
+      probs[k] = chart.TOP.topK.get(k).prob();
+    }
+    double Z = Log.sum(probs);
+    for (int k = 0; k < probs.length; ++k) {
+      double update = Log.mul(Log.div(probs[k], Z), logWeight);
+      chart.TOP.derivation(k, (parent, bp) -> count(parent, bp, update, countsArray));
+    }
+  }
+
+  /**
+   * Recursively computes the probability of the best derivation below parent
+   *
+   * @param parent Parent ChartItem
+   * @return Probability of the best derivation
+   */
+  private double viterbiRecurse(ChartItem<G> parent) {
+    if (parent.computedViterbi) {
+      return parent.viterbi;
+    }
+    parent.computedViterbi = true;
+    if (parent.children.isEmpty()) { // Productions are observed
+      parent.viterbi = Log.ONE;
+      if (Configuration.trainK > 1) {
+        Grammar.addLexTree(parent, new ChartItem.bp_ij<>(Log.ONE, null, 0, 0));
+      }
+      return parent.viterbi;
+    }
+    parent.viterbi = Log.ZERO;
+    double p;
+    for (BackPointer<G> bp : parent.children) {
+      p = Log.mul(prob(parent, bp), viterbiRecurse(bp.leftChild()));
+      if (!bp.isUnary()) {
+        p = Log.mul(p, viterbiRecurse(bp.rightChild()));
+      }
+      if (parent.viterbiChild == null || p > parent.viterbi) {
+        parent.viterbi = p;
+        parent.viterbiChild = bp;
+      }
+    }
+    return parent.viterbi;
+  }
+
+  /**
+   * Count the rules of the best derivation below parent
+   *
+   * @param parent Parent ChartItem
+   * @param logWeight Log of the chart's weight
+   * @param countsArray Array storing EM counts
+   */
+  private void viterbiCountsRecurse(ChartItem<G> parent, double logWeight, CountsArray countsArray) {
+    BackPointer<G> bp = parent.viterbiChild;
+    if (bp == null) {
+      return;
+    }
+    count(parent, bp, logWeight, countsArray);
+    viterbiCountsRecurse(bp.leftChild(), logWeight, countsArray);
+    if (!bp.isUnary()) {
+      viterbiCountsRecurse(bp.rightChild(), logWeight, countsArray);
+    }
+  }
+
   public final void printLexicon() throws IOException {
     if (!Configuration.printModelsVerbose) return;
     Logger.logln("Printing full lexicon");
@@ -418,29 +748,39 @@ public strictfp abstract class Model<G extends Grammar> implements Externalizabl
    */
   public static <G extends Grammar, C extends Chart<G>> void InsideOutside(
           Charts<G, C> charts, Model<G> model, double threshold) throws Exception {
+    if (Configuration.viterbi) {
+      HardEM(charts, model, threshold);
+      return;
+    }
+    if (Configuration.stepwiseBatchSize > 0) {
+      StepwiseInsideOutside(charts, model, threshold);
+      return;
+    }
     Logger.timestamp("Inside-Outside");
+    FrozenCharts frozen = Configuration.freezeThreshold > 0 ? new FrozenCharts() : null;
     double spll = Log.ZERO;
-    ArrayList<Exception> exceptions = new ArrayList<>();
-    ExecutorService executor;
+    double change = Double.POSITIVE_INFINITY;
     for (int iteration = 0; iteration <= Configuration.maxItr; ++iteration) {
       //Logger.log("Iteration: " + iteration + "\n");
 
       // Run an iteration of inside-outside
-      executor = Executors.newFixedThreadPool(Configuration.threadCount);
-      for (int i = 0; i < Configuration.threadCount; ++i) {
-        executor.execute(new InsideOutside<>(charts, model, exceptions));
+      if (frozen != null) {
+        frozen.nextIteration(iteration, change);
       }
-      executor.shutdown();
-      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-      if(!exceptions.isEmpty())
-          throw exceptions.get(0);
+      computeCounts(charts, model, exceptions -> new InsideOutside<>(charts, model, exceptions, frozen));
 
       double newLL = model.LL.prod();
       double v = Math.abs((spll - newLL) / spll);
-      Logger.logln(String.format("\rnLL: %11.2f    (o-n)/o: %11.10f", (-1) * newLL, v));
+      Logger.logln(String.format("\rnLL: %11.2f    (o-n)/o: %11.10f", (-1) * newLL, v)
+          + (frozen == null ? "" : String.format("    frozen: %d", frozen.replayed())));
+      change = v;
       if (v < threshold || Log.equal(spll, newLL)) {
-        Logger.logln("Converged to: " + threshold);
-        break;
+        if (frozen == null || frozen.replayed() == 0) {
+          Logger.logln("Converged to: " + threshold);
+          break;
+        }
+        // Only a pass without frozen charts can converge
+        change = Double.POSITIVE_INFINITY;
       }
 
       //if(iteration > 1 && newLL < spll && !Double.isInfinite(spll)) {
@@ -457,6 +797,110 @@ public strictfp abstract class Model<G extends Grammar> implements Externalizabl
     }
   }
 
+  /**
+   * Hard ( Viterbi ) EM until convergence.  Each iteration only counts the
+   * best derivations of every chart ( see viterbiCounts ), so it can be used
+   * as a cheap warm start before InsideOutside.
+   * @param charts  Data source
+   * @param model   Scoring model to update
+   * @param threshold Convergence
+   * @throws Exception
+   */
+  public static <G extends Grammar, C extends Chart<G>> void HardEM(
+          Charts<G, C> charts, Model<G> model, double threshold) throws Exception {
+    Logger.timestamp("Hard EM");
+    double spll = Log.ZERO;
+    for (int iteration = 0; iteration <= Configuration.maxItr; ++iteration) {
+      computeCounts(charts, model, exceptions -> new ViterbiCounts<>(charts, model, exceptions));
+
+      double newLL = model.LL.prod();
+      double v = Math.abs((spll - newLL) / spll);
+      Logger.logln(String.format("\rViterbi nLL: %11.2f    (o-n)/o: %11.10f", (-1) * newLL, v));
+      if (v < threshold || Log.equal(spll, newLL)) {
+        Logger.logln("Converged to: " + threshold);
+        break;
+      }
+      if (newLL == Log.ZERO) {
+        Logger.logln("Could not parse any of the sentences");
+        break;
+      }
+      spll = newLL;
+      model.update();
+    }
+  }
+
+  /**
+   * Stepwise ( online ) EM.  Parameters are updated after every mini-batch of
+   * Configuration.stepwiseBatchSize charts by interpolating the running counts
+   * with the batch's counts ( scaled to the corpus ) using a step size of
+   * (k+2)^-stepwiseAlpha.  Convergence is checked once per pass.
+   * @param charts  Data source
+   * @param model   Scoring model to update
+   * @param threshold Convergence
+   * @throws Exception
+   */
+  private static <G extends Grammar, C extends Chart<G>> void StepwiseInsideOutside(
+          Charts<G, C> charts, Model<G> model, double threshold) throws Exception {
+    Logger.timestamp("Stepwise Inside-Outside");
+    MiniBatchCharts<G, C> batches = new MiniBatchCharts<>(charts, Configuration.stepwiseBatchSize);
+    int corpus = charts instanceof SerializableCharts ? ((SerializableCharts) charts).size() : 0;
+    double spll = Log.ZERO;
+    int step = 0;
+    for (int iteration = 0; iteration <= Configuration.maxItr; ++iteration) {
+      batches.rewind();
+      double newLL = Log.ONE;
+      int seen = 0;
+      while (!batches.exhausted()) {
+        batches.nextBatch();
+        computeCounts(batches, model, exceptions -> new InsideOutside<>(batches, model, exceptions));
+        if (batches.returned() == 0) {
+          break;
+        }
+        seen += batches.returned();
+        newLL = Log.mul(newLL, model.LL.prod());
+        // Streamed charts: the corpus size is only known after the first pass
+        double scale = (double) Math.max(corpus, seen) / batches.returned();
+        model.stepwise(-Configuration.stepwiseAlpha * Math.log(step + 2), Math.log(scale));
+        ++step;
+      }
+      corpus = Math.max(corpus, seen);
+
+      double v = Math.abs((spll - newLL) / spll);
+      Logger.logln(String.format("\rnLL: %11.2f    (o-n)/o: %11.10f    steps: %d", (-1) * newLL, v, step));
+      if (v < threshold || Log.equal(spll, newLL)) {
+        Logger.logln("Converged to: " + threshold);
+        break;
+      }
+      if (seen == 0) {
+        Logger.logln("Could not parse any of the sentences");
+        break;
+      }
+      spll = newLL;
+    }
+    charts.reset_index();
+  }
+
+  /**
+   * Runs a pool of counting mappers over the charts, leaving the counts in
+   * the model's distributions and the likelihoods in LL
+   * @param charts  Data source
+   * @param model   Scoring model
+   * @param mapper  Creates a mapper given the shared exceptions list
+   * @throws Exception
+   */
+  private static <G extends Grammar, C extends Chart<G>> void computeCounts(
+          Charts<G, C> charts, Model<G> model, Function<ArrayList<Exception>, Runnable> mapper) throws Exception {
+    ArrayList<Exception> exceptions = new ArrayList<>();
+    ExecutorService executor = Executors.newFixedThreadPool(Configuration.threadCount);
+    for (int i = 0; i < Configuration.threadCount; ++i) {
+      executor.execute(mapper.apply(exceptions));
+    }
+    executor.shutdown();
+    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    if(!exceptions.isEmpty())
+        throw exceptions.get(0);
+  }
+
 
   public void merge(Model<G> local) {
     if (updateDistributions) {
@@ -474,6 +918,43 @@ public strictfp abstract class Model<G extends Grammar> implements Externalizabl
 
   public abstract Model<G> copy();
 
+  /**
+   * Re-reads hyperparameters ( smallRule, and concentration/discount for
+   * models which have them ) from the Configuration
+   */
+  public void processParameters() {
+    Distributions.forEach(Distribution::processParameters);
+  }
+
+  /**
+   * Independent deep copy of the model, including the prior counts gathered
+   * while parsing, so that several settings can be trained from the same
+   * charts.  Made with a Save/Load round trip in memory.
+   * @return Copy of the model
+   * @throws Exception
+   */
+  @SuppressWarnings("unchecked")
+  public Model<G> fork() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(this);
+    // Same stream, so the counts are keyed by the copy's distributions
+    out.writeObject(priorCounts);
+    out.close();
+    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    Model<G> fork = (Model<G>) in.readObject();
+    CountsArray counts = (CountsArray) in.readObject();
+    in.close();
+    fork.Distributions.forEach(fork.priorCounts::addDist);
+    fork.priorCounts.addAll(counts);
+    fork.createFine = createFine;
+    fork.initialized = initialized;
+    fork.updateDistributions = updateDistributions;
+    fork.fixedGrammar = fixedGrammar;
+    fork.Test = Test;
+    return fork;
+  }
+
   public void writeToDisk() {
     try {
       if (!Configuration.saveModelFile.contains(Configuration.Folder))
@@ -75,10 +75,10 @@ public class PCFGModel extends Model<Grammar> {
 
     double v;
     if (u.Type.equals(Rule_Type.PRODUCTION)) {
-      v = Log.div(Math.log(parent.outside_parses), Math.log(parent.cell.chart.parses));
+      v = Log.div(Math.log(parent.outside_parses), parent.cell.chart.logPriorParses());
     } else {
       v = Log.div(Math.log(parent.outside_parses * backPointer.leftChild().parses),
-          Math.log(parent.cell.chart.parses));
+          parent.cell.chart.logPriorParses());
     }
     p_BC(parent, backPointer, v);
   }
@@ -88,7 +88,7 @@ public class PCFGModel extends Model<Grammar> {
     super.buildBinaryContext(parent, backPointer);
 
     double v = Log.div(Math.log(parent.outside_parses * backPointer.leftChild().parses * backPointer.rightChild().parses),
-        Math.log(parent.cell.chart.parses));
+        parent.cell.chart.logPriorParses());
     p_BC(parent, backPointer, v);
   }
 
@@ -36,6 +36,12 @@ public class BackPointer<G extends Grammar> implements Serializable {
    * Right Child
    */
   public final ChartItem<G> rightChild;
+  /**
+   * Rule probability as scaledProb * 2^scaledExponent, cached by the
+   * scaled inside pass for outside and counts
+   */
+  public transient double scaledProb;
+  public transient int scaledExponent;
   private final int hashcode;
 
   /**
@@ -34,13 +34,13 @@ public abstract class CYKParser<G extends Grammar> implements ParserInterface<G>
   @Override
   public void parse(Model<G> model, Chart<G> chart) {
     chart.chart = new Cell[chart.sentence.length()][chart.sentence.length()];
-    for (int s = 0; s < chart.getLength(); s++) {
+    for (int i = 0; i < chart.getLength(); i++) {
+      lexicalCell(model, i, chart);
+    }
+    prune(model, chart);
+    for (int s = 1; s < chart.getLength(); s++) {
       for (int i = 0; i < chart.getLength() - s; i++) {
-        if (s == 0) {
-          lexicalCell(model, i, chart);
-        } else {
-          binaryCell(model, i, i + s, chart);
-        }
+        binaryCell(model, i, i + s, chart);
       }
     }
     if (this.parse_action != null && this.parse_action == Action.SupervisedTest) {
@@ -67,6 +67,12 @@ public abstract class CYKParser<G extends Grammar> implements ParserInterface<G>
     }
   }
 
+  /**
+   * Called once the lexical cells are filled, before any binary cell
+   * @param chart Chart whose lexical cells are filled
+   */
+  protected void prune(Model<G> model, Chart<G> chart) {}
+
   /**
    * Fills a binary cell (i,j)
    * @param i Start of span
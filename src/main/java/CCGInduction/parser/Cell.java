@@ -13,6 +13,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 /** 
  * @author bisk1
@@ -124,6 +125,38 @@ public class Cell<G extends Grammar> implements Externalizable {
     }
   }
 
+  /**
+   * Keeps the categories which pass the filter, and the items in this cell
+   * they were built from by unary rules
+   * @param keep Categories to keep
+   */
+  void retain(Predicate<Long> keep) {
+    HashSet<ChartItem<G>> kept = new HashSet<>();
+    ArrayList<ChartItem<G>> agenda = new ArrayList<>();
+    for (long cat : cats.keySet()) {
+      if (keep.test(cat)) {
+        agenda.addAll(cats.get(cat).values());
+      }
+    }
+    while (!agenda.isEmpty()) {
+      ChartItem<G> item = agenda.remove(agenda.size() - 1);
+      if (kept.add(item)) {
+        for (BackPointer<G> bp : item.children) {
+          if (bp.isUnary()) {
+            agenda.add(bp.leftChild);
+          }
+        }
+      }
+    }
+    for (long cat : new ArrayList<>(cats.keySet())) {
+      ConcurrentHashMap<ChartItem<G>, ChartItem<G>> map = cats.get(cat);
+      map.keySet().retainAll(kept);
+      if (map.isEmpty()) {
+        cats.remove(cat);
+      }
+    }
+  }
+
   public boolean isEmpty() {
     return cats.isEmpty();
   }
@@ -83,6 +83,10 @@ public abstract strictfp class Chart<G extends Grammar> implements Externalizabl
    * Chart's likelihood
    */
   public transient double likelihood = Log.ZERO;
+  /**
+   * Number of training sentences the chart stands for
+   */
+  public transient int weight = 1;
   /**
    * Pointer to counts accumulated from parsing
    */
@@ -98,7 +102,7 @@ public abstract strictfp class Chart<G extends Grammar> implements Externalizabl
     this.model = global_model;
     this.sentence = base_sentence;
     if (!Configuration.ignorePunctuation) {
-      this.disallowed_constituents = new boolean[sentence.sentence_wP.length][sentence.sentence_wP.length];
+      this.disallowed_constituents = new boolean[sentence.length_wP()][sentence.length_wP()];
       computeSpans();
     }
     // Precompute int values for tags and words
@@ -259,8 +263,8 @@ public abstract strictfp class Chart<G extends Grammar> implements Externalizabl
     }
     int seen = -1;
     int j = 0;
-    for (; j < sentence.sentence_wP.length; j++) {
-      if (!Tagset.Punct(sentence.sentence_wP[j].tag())) {
+    for (; j < sentence.length_wP(); j++) {
+      if (!Tagset.Punct(sentence.getWP(j).tag())) {
         seen += 1;
       }
       if (seen == i) {
@@ -273,8 +277,8 @@ public abstract strictfp class Chart<G extends Grammar> implements Externalizabl
   private static CoNLLDep[] insertPunctuation(CoNLLDep[] dependencies, Sentence sentence, int i) {
     if (Configuration.ignorePunctuation) {
       if (i == -1) {
-        for (int j = 0; j < sentence.sentence_wP.length; j++) {
-          if (Tagset.Punct(sentence.sentence_wP[j].tag())) {
+        for (int j = 0; j < sentence.length_wP(); j++) {
+          if (Tagset.Punct(sentence.getWP(j).tag())) {
             dependencies[j] = new CoNLLDep(j+1, j+1, "PUNC");
           } else {
             return dependencies;
@@ -359,7 +363,7 @@ public abstract strictfp class Chart<G extends Grammar> implements Externalizabl
      *            original treebank annotation, the dependency relation may be meaningful
      *            or simply 'ROOT'.
      */
-    CoNLLDep[] dependencies = new CoNLLDep[sentence.sentence_wP.length];
+    CoNLLDep[] dependencies = new CoNLLDep[sentence.length_wP()];
     if (depRel != null) {
       for (int i = 0; i < sentence.length(); i++) {
         if (i == root) {
@@ -413,7 +417,7 @@ public abstract strictfp class Chart<G extends Grammar> implements Externalizabl
       }
     }
     dependencies = insertPunctuation(dependencies, sentence, -1);
-    for (int i = 0; i < sentence.sentence_wP.length; i++) {
+    for (int i = 0; i < sentence.length_wP(); i++) {
       if (dependencies[i] == null) {
         DEPREL = "X";
         ID = i + 1;
@@ -1075,6 +1079,22 @@ public abstract strictfp class Chart<G extends Grammar> implements Externalizabl
     return this.Entity[x][y];
   }
 
+  /**
+   * Uniform prior counts give each parse an equal share of the chart's
+   * weight, so every sentence the chart stands for adds one count in total
+   * @return log( parses / weight )
+   */
+  public double logPriorParses() {
+    return Math.log(parses / weight);
+  }
+
+  /**
+   * @return Id of the chart ( its sentence's id )
+   */
+  public int id() {
+    return id;
+  }
+
   /**
    * The length of the underlying sentence/dimensions of the chart
    */
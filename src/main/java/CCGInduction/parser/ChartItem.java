@@ -6,6 +6,7 @@ import CCGInduction.ccg.InducedCAT;
 import CCGInduction.utils.Logger;
 import CCGInduction.utils.Math.Log;
 import CCGInduction.utils.Math.LogDouble;
+import CCGInduction.utils.Math.ScaledDouble;
 
 import java.io.Externalizable;
 import java.io.IOException;
@@ -14,6 +15,7 @@ import java.io.ObjectOutput;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
 
 /**
  * Defines a chartitem for CYK parsing
@@ -71,6 +73,8 @@ public strictfp class ChartItem<G extends Grammar> implements Externalizable {
   public double outside_parses;
   private LogDouble alphaList;
   private LogDouble betaList;
+  private ScaledDouble scaledAlpha;
+  private ScaledDouble scaledBeta;
   /** Backpointers */
   public ArrayList<BackPointer<G>> children;
 
@@ -78,6 +82,12 @@ public strictfp class ChartItem<G extends Grammar> implements Externalizable {
   public boolean computedCounts = false;
   /** Tracks number of TIMES inside probs have been computed */
   public boolean computedProbability = false;
+  /** Probability of the best derivation below the item ( hard EM ) */
+  public double viterbi;
+  /** Backpointer of the best derivation, null for leaves */
+  public BackPointer<G> viterbiChild;
+  /** Tracks if the best derivation has been computed */
+  public boolean computedViterbi = false;
   /** Number of parents */
   public int parents = 0;
   /** Number of parents that have traversed to node ( during recursion ) */
@@ -138,6 +148,7 @@ public strictfp class ChartItem<G extends Grammar> implements Externalizable {
     if (v == Log.ZERO) {
       throw new Log.MathException("Adding ZERO to inside probability?");
     }
+    scaledAlpha = null;
     alphaList.add(v);
   }
 
@@ -145,6 +156,7 @@ public strictfp class ChartItem<G extends Grammar> implements Externalizable {
    * Set inside probability
    */
   public final void alphaInit() {
+    scaledAlpha = null;
     alphaList = new LogDouble(Log.ONE);
   }
 
@@ -154,7 +166,7 @@ public strictfp class ChartItem<G extends Grammar> implements Externalizable {
    * @return double
    */
   public final double alpha() {
-    double a = alphaList.value();
+    double a = scaledAlpha != null ? scaledAlpha.log() : alphaList.value();
     if (a > Log.ONE || a == Log.ZERO) {
       Logger.log("ERROR\n");
       cell.chart.debugChart();
@@ -176,6 +188,7 @@ public strictfp class ChartItem<G extends Grammar> implements Externalizable {
     if (v == Log.ZERO || v > Log.ONE) {
       throw new Log.MathException("Bad Beta: " + v);
     }
+    scaledBeta = null;
     betaList.add(v);
   }
 
@@ -183,6 +196,7 @@ public strictfp class ChartItem<G extends Grammar> implements Externalizable {
    * Set initial outside probability to 1
    */
   public final void betaInit() {
+    scaledBeta = null;
     betaList = new LogDouble(Log.ONE);
   }
 
@@ -192,7 +206,7 @@ public strictfp class ChartItem<G extends Grammar> implements Externalizable {
    * @return double
    */
   public final double beta() {
-    double b = betaList.value();
+    double b = scaledBeta != null ? scaledBeta.log() : betaList.value();
     if (b > Log.ONE || b == Log.ZERO) {
       throw new Log.MathException("We have a problem: beta = " + b + '\t' + seenParents + '\t' + parents);
     }
@@ -377,12 +391,39 @@ public strictfp class ChartItem<G extends Grammar> implements Externalizable {
     }
   }
 
+  /**
+   * Switch to real space inside/outside values, initialized to ZERO ( or to
+   * ONE for the inside value of a leaf )
+   * @param leaf If the item has no children
+   */
+  public final void scaledInit(boolean leaf) {
+    scaledAlpha = leaf ? new ScaledDouble(1.0, 0) : new ScaledDouble();
+    scaledBeta = new ScaledDouble();
+  }
+
+  /**
+   * Real space inside probability ( after scaledInit )
+   * @return ScaledDouble
+   */
+  public final ScaledDouble scaledAlpha() {
+    return scaledAlpha;
+  }
+
+  /**
+   * Real space outside probability ( after scaledInit )
+   * @return ScaledDouble
+   */
+  public final ScaledDouble scaledBeta() {
+    return scaledBeta;
+  }
+
   /**
    * For inside value
    * 
    * @param v  value
    */
   public void alphaOVERRIDE(double v) {
+    scaledAlpha = null;
     alphaList = new LogDouble(v);
   }
 
@@ -407,6 +448,25 @@ public strictfp class ChartItem<G extends Grammar> implements Externalizable {
   }
 
 
+  /**
+   * Visits every ( item, backpointer ) pair of the index'th best derivation
+   * below this item ( after populateTopK )
+   *
+   * @param index which derivation to visit
+   * @param visitor Called with each item and the backpointer it was built with
+   */
+  public void derivation(int index, BiConsumer<ChartItem<G>, BackPointer<G>> visitor) {
+    bp_ij<G> pointer = topK.get(index);
+    if (pointer.bp == null) {
+      return;
+    }
+    visitor.accept(this, pointer.bp);
+    pointer.bp.leftChild().derivation(pointer.i, visitor);
+    if (!pointer.bp.isUnary()) {
+      pointer.bp.rightChild().derivation(pointer.j, visitor);
+    }
+  }
+
   public static class bp_ij<G extends Grammar> implements Comparable<bp_ij<G>> {
     final double prob;
     final int i, j;
@@ -419,6 +479,13 @@ public strictfp class ChartItem<G extends Grammar> implements Externalizable {
       bp = bp2;
     }
 
+    /**
+     * @return Probability of the derivation
+     */
+    public double prob() {
+      return prob;
+    }
+
     @Override
     public int compareTo(bp_ij<G> obj) {
       return (int)Math.signum(obj.prob - prob);
@@ -0,0 +1,153 @@
+package CCGInduction.parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Append-only file of serialized charts ( length prefixed byte[] records ).
+ * Used in place of the in-memory store of SerializableCharts so the forests
+ * of a corpus never have to fit in the heap.  Records are written in
+ * mini-batches as threads finish parsing and read back sequentially, a
+ * mini-batch at a time, on every pass of EM.
+ *
+ * @author bisk1
+ */
+class ChartStore {
+  private final File file;
+  private DataOutputStream out = null;
+  private DataInputStream in = null;
+  private int records = 0;
+  private long bytes = 0;
+
+  /**
+   * Creates a new, empty, store in the given directory
+   * @param directory Where to create the file
+   * @throws IOException
+   */
+  ChartStore(String directory) throws IOException {
+    File dir = new File(directory);
+    if (!dir.exists() && !dir.mkdirs()) {
+      throw new IOException("Could not create chart store directory: " + directory);
+    }
+    this.file = File.createTempFile("Charts.", ".fst", dir);
+    this.file.deleteOnExit();
+  }
+
+  /**
+   * A second reader over the same ( completely written ) file
+   * @param store Store to share
+   */
+  ChartStore(ChartStore store) {
+    synchronized (store) {
+      store.closeWriter();
+      this.file = store.file;
+      this.records = store.records;
+      this.bytes = store.bytes;
+    }
+  }
+
+  /**
+   * @return Number of records in the store
+   */
+  synchronized int size() {
+    return records;
+  }
+
+  /**
+   * @return Bytes written to disk
+   */
+  synchronized long bytes() {
+    return bytes;
+  }
+
+  /**
+   * Appends records to the end of the file
+   * @param data Serialized charts
+   * @throws IOException
+   */
+  synchronized void append(List<byte[]> data) throws IOException {
+    if (out == null) {
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 1 << 16));
+    }
+    for (byte[] record : data) {
+      out.writeInt(record.length);
+      out.write(record);
+      bytes += record.length + 4;
+    }
+    records += data.size();
+  }
+
+  /**
+   * Reads the next records in file order
+   * @param batch Array to fill
+   * @return Number of records read ( 0 at the end of the file )
+   * @throws IOException
+   */
+  synchronized int read(byte[][] batch) throws IOException {
+    if (in == null) {
+      closeWriter();
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+    }
+    int read = 0;
+    try {
+      while (read < batch.length) {
+        byte[] record = new byte[in.readInt()];
+        in.readFully(record);
+        batch[read++] = record;
+      }
+    } catch (EOFException e) {
+      // End of the store
+    }
+    return read;
+  }
+
+  /**
+   * Moves the reader back to the first record
+   */
+  synchronized void rewind() {
+    closeReader();
+  }
+
+  /**
+   * Closes all streams and deletes the file
+   */
+  synchronized void delete() {
+    closeReader();
+    closeWriter();
+    records = 0;
+    bytes = 0;
+    if (file.exists() && !file.delete()) {
+      file.deleteOnExit();
+    }
+  }
+
+  private void closeWriter() {
+    if (out != null) {
+      try {
+        out.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      out = null;
+    }
+  }
+
+  private void closeReader() {
+    if (in != null) {
+      try {
+        in.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      in = null;
+    }
+  }
+}
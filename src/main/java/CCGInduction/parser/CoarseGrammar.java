@@ -0,0 +1,411 @@
+package CCGInduction.parser;
+
+import CCGInduction.Configuration;
+import CCGInduction.ccg.CategoryProjection;
+import CCGInduction.ccg.InducedCAT;
+import CCGInduction.grammar.Binary;
+import CCGInduction.grammar.Grammar;
+import CCGInduction.grammar.Rule;
+import CCGInduction.grammar.Rule_Type;
+import CCGInduction.grammar.valid;
+import CCGInduction.models.Model;
+import CCGInduction.utils.Math.Log;
+import CCGInduction.utils.Metrics;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A fixed grammar projected onto coarser category labels ( see
+ * CategoryProjection ), one level per projection, coarsest first.  Every rule
+ * of the grammar is kept as a rule over labels, so each level allows at least
+ * the derivations of the full grammar.
+ *
+ * Charts are pruned level by level: the lexical cells of the full parse are
+ * projected and parsed with the level's rules, restricted to the labels which
+ * survived the previous level, and inside-outside gives every label of every
+ * span a posterior.  Labels below Configuration.coarseToFineThreshold are
+ * dropped.  Lexical items are weighted by the model, rules are uniform, and
+ * unary rules which project onto their own label are left out, since they
+ * would only count the label's mass twice.  The survivors of the last level
+ * restrict the cells of the full parse.
+ *
+ * Built once per test run and shared read-only by the parsing threads.
+ *
+ * @author bisk1
+ */
+public class CoarseGrammar {
+  /** Unary rules applied above the lexical cells, in parsing order */
+  private static final Rule_Type[] UNARY =
+      new Rule_Type[] { Rule_Type.TYPE_CHANGE, Rule_Type.FW_TYPERAISE, Rule_Type.BW_TYPERAISE };
+
+  private final CategoryProjection[] levels;
+  /** Category -> its label at every level */
+  private final HashMap<Long, int[]> labels = new HashMap<>();
+  /** Per level: label -> the label it projects to one level up */
+  private final int[][] coarser;
+  /** Per level: number of labels */
+  private final int[] size;
+  /** Per level: (left * size + right) -> parents */
+  private final ArrayList<HashMap<Long, int[]>> binary = new ArrayList<>();
+  /** Per level and unary type: child -> parents */
+  private final ArrayList<ArrayList<HashMap<Integer, int[]>>> unary = new ArrayList<>();
+  /** Per level: labels which can be rewritten as TOP */
+  private final BitSet[] top;
+  private final double threshold = Math.log(Configuration.coarseToFineThreshold);
+
+  /**
+   * Projects the grammar's categories and rules
+   * @param grammar Fixed grammar
+   * @param projections Levels, coarsest first
+   * @param test Only keep rules which may be used at test time
+   */
+  public CoarseGrammar(Grammar grammar, CategoryProjection[] projections, boolean test) {
+    levels = projections;
+    int L = levels.length;
+    ArrayList<HashMap<String, Integer>> ids = new ArrayList<>();
+    for (int l = 0; l < L; ++l) {
+      ids.add(new HashMap<>());
+    }
+    for (Map.Entry<Long, InducedCAT> category : grammar.Categories.entrySet()) {
+      int[] label = new int[L];
+      for (int l = 0; l < L; ++l) {
+        HashMap<String, Integer> level = ids.get(l);
+        label[l] = level.computeIfAbsent(levels[l].project(category.getValue()), k -> level.size());
+      }
+      labels.put(category.getKey(), label);
+    }
+    size = new int[L];
+    coarser = new int[L][];
+    top = new BitSet[L];
+    for (int l = 0; l < L; ++l) {
+      size[l] = ids.get(l).size();
+      coarser[l] = new int[size[l]];
+      top[l] = new BitSet(size[l]);
+    }
+    for (int[] label : labels.values()) {
+      for (int l = 1; l < L; ++l) {
+        coarser[l][label[l]] = label[l - 1];
+      }
+    }
+
+    ArrayList<HashMap<Long, HashSet<Integer>>> binaries = new ArrayList<>();
+    ArrayList<ArrayList<HashMap<Integer, HashSet<Integer>>>> unaries = new ArrayList<>();
+    for (int l = 0; l < L; ++l) {
+      binaries.add(new HashMap<>());
+      unaries.add(new ArrayList<>());
+      for (Rule_Type ignored : UNARY) {
+        unaries.get(l).add(new HashMap<>());
+      }
+    }
+    for (ConcurrentHashMap<Rule, Boolean> rules : grammar.Rules.values()) {
+      for (Rule rule : rules.keySet()) {
+        int[] A = labels.get(rule.A);
+        int[] B = labels.get(rule.B);
+        if (A == null || B == null) {
+          continue;
+        }
+        if (rule instanceof Binary) {
+          int[] C = labels.get(((Binary) rule).C);
+          if (C == null || !usable(grammar.combine(rule.B, ((Binary) rule).C), test)
+              || (test && !grammar.requiredRules.containsKey(rule))) {
+            continue;
+          }
+          for (int l = 0; l < L; ++l) {
+            binaries.get(l).computeIfAbsent(key(l, B[l], C[l]), k -> new HashSet<>()).add(A[l]);
+          }
+        } else if (rule.Type == Rule_Type.TYPE_TOP) {
+          if (!test || grammar.requiredRules.containsKey(rule) || grammar.unaryCheck(rule.A, rule.B) == valid.Valid) {
+            for (int l = 0; l < L; ++l) {
+              top[l].set(B[l]);
+            }
+          }
+        } else {
+          for (int t = 0; t < UNARY.length; ++t) {
+            if (rule.Type == UNARY[t] && usable(grammar.unaryCheck(rule.A, rule.B), test)) {
+              for (int l = 0; l < L; ++l) {
+                // A unary onto its own label adds no label, only a second copy of its mass
+                if (A[l] != B[l]) {
+                  unaries.get(l).get(t).computeIfAbsent(B[l], k -> new HashSet<>()).add(A[l]);
+                }
+              }
+            }
+          }
+        }
+      }
+    }
+    for (int l = 0; l < L; ++l) {
+      binary.add(new HashMap<>());
+      for (Map.Entry<Long, HashSet<Integer>> rule : binaries.get(l).entrySet()) {
+        binary.get(l).put(rule.getKey(), rule.getValue().stream().mapToInt(Integer::intValue).toArray());
+      }
+      unary.add(new ArrayList<>());
+      for (HashMap<Integer, HashSet<Integer>> rules : unaries.get(l)) {
+        HashMap<Integer, int[]> packed = new HashMap<>();
+        for (Map.Entry<Integer, HashSet<Integer>> rule : rules.entrySet()) {
+          packed.put(rule.getKey(), rule.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        unary.get(l).add(packed);
+      }
+    }
+  }
+
+  private static boolean usable(valid check, boolean test) {
+    return check == valid.Valid || (!test && check == valid.Unused);
+  }
+
+  private long key(int level, int left, int right) {
+    return (long) left * size[level] + right;
+  }
+
+  /**
+   * @return Number of labels at every level
+   */
+  public int[] sizes() {
+    return size.clone();
+  }
+
+  /**
+   * @param spans Survivors of the last level ( from prune )
+   * @param i Start of span
+   * @param j End of span
+   * @param category Category of the full grammar
+   * @return If the category may be built over the span
+   */
+  boolean allowed(BitSet[][] spans, int i, int j, long category) {
+    int[] label = labels.get(category);
+    return label == null || spans[i][j].get(label[label.length - 1]);
+  }
+
+  /**
+   * Parses the chart's lexical cells with every level in turn
+   * @param model Model for weighting lexical items
+   * @param chart Chart whose lexical cells have been filled
+   * @param typeRaise If type-raising applies above the lexical cells
+   * @return The labels of the last level which survive in each span
+   */
+  <G extends Grammar> BitSet[][] prune(Model<G> model, Chart<G> chart, boolean typeRaise) {
+    int n = chart.getLength();
+    double[][] lexical = new double[n][];
+    ArrayList<ArrayList<ChartItem<G>>> items = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      items.add(new ArrayList<>(chart.chart[i][i].values()));
+      lexical[i] = weights(model, items.get(i));
+    }
+
+    BitSet[][] spans = null;
+    for (int l = 0; l < levels.length; ++l) {
+      spans = prune(l, spans, chart, items, lexical, typeRaise);
+    }
+    return spans;
+  }
+
+  /**
+   * Lexical weights of a token's items.  Unary items sum their children and
+   * items the model can't score get the smallest score of the token ( or
+   * Log.ONE if none can be scored ), so nothing the full grammar can build is
+   * given zero mass.
+   */
+  private static <G extends Grammar> double[] weights(Model<G> model, ArrayList<ChartItem<G>> items) {
+    HashMap<ChartItem<G>, Double> scores = new HashMap<>();
+    double floor = Log.ONE;
+    boolean scored = false;
+    for (ChartItem<G> item : items) {
+      double score = score(model, item, scores);
+      if (score != Log.ZERO && (!scored || score < floor)) {
+        floor = score;
+        scored = true;
+      }
+    }
+    double[] weights = new double[items.size()];
+    for (int i = 0; i < items.size(); ++i) {
+      weights[i] = scores.get(items.get(i));
+      if (weights[i] == Log.ZERO) {
+        weights[i] = floor;
+      }
+    }
+    return weights;
+  }
+
+  private static <G extends Grammar> double score(Model<G> model, ChartItem<G> item, HashMap<ChartItem<G>, Double> scores) {
+    Double score = scores.get(item);
+    if (score != null) {
+      return score;
+    }
+    if (Rule_Type.TR(item.type()) || item.type() == Rule_Type.TYPE_CHANGE) {
+      score = Log.ZERO;
+      for (BackPointer<G> bp : item.children) {
+        score = Log.add(score, score(model, bp.leftChild, scores));
+      }
+    } else {
+      score = model.lexicalScore(item);
+      if (score == null) {
+        score = Log.ZERO;
+      }
+    }
+    scores.put(item, score);
+    return score;
+  }
+
+  /**
+   * One coarse pass
+   * @param l Level
+   * @param previous Survivors of the previous level ( or null )
+   * @return Survivors of this level
+   */
+  private <G extends Grammar> BitSet[][] prune(int l, BitSet[][] previous, Chart<G> chart,
+                                               ArrayList<ArrayList<ChartItem<G>>> items,
+                                               double[][] lexical, boolean typeRaise) {
+    int n = chart.getLength();
+    Span[][] spanned = new Span[n][n];
+    int stages = typeRaise ? UNARY.length : 1;
+
+    // Inside
+    for (int s = 0; s < n; ++s) {
+      for (int i = 0; i < n - s; ++i) {
+        int j = i + s;
+        spanned[i][j] = new Span();
+        HashMap<Integer, Double> cell = spanned[i][j].inside;
+        if (s == 0) {
+          for (int k = 0; k < items.get(i).size(); ++k) {
+            int[] label = labels.get(items.get(i).get(k).Category);
+            if (label != null && allowed(previous, l, i, j, label[l])) {
+              cell.merge(label[l], lexical[i][k], Log::add);
+            }
+          }
+          continue;
+        }
+        if (!chart.punctuationBracketing(i, j) || (Configuration.hardBracketConstraints && chart.crossingBrackets(i, j))) {
+          continue;
+        }
+        for (int k = i; k < j; ++k) {
+          for (Map.Entry<Integer, Double> b : spanned[i][k].inside.entrySet()) {
+            for (Map.Entry<Integer, Double> c : spanned[k + 1][j].inside.entrySet()) {
+              int[] parents = binary.get(l).get(key(l, b.getKey(), c.getKey()));
+              if (parents == null) {
+                continue;
+              }
+              double score = Log.mul(b.getValue(), c.getValue());
+              for (int a : parents) {
+                if (allowed(previous, l, i, j, a)) {
+                  cell.merge(a, score, Log::add);
+                }
+              }
+            }
+          }
+        }
+        for (int t = 0; t < stages; ++t) {
+          // Rules apply to the cell as it was before this stage
+          for (Map.Entry<Integer, Double> b : new ArrayList<>(cell.entrySet())) {
+            int[] parents = unary.get(l).get(t).get(b.getKey());
+            if (parents == null) {
+              continue;
+            }
+            for (int a : parents) {
+              if (allowed(previous, l, i, j, a)) {
+                cell.merge(a, b.getValue(), Log::add);
+                spanned[i][j].unaries.add(new int[] { t, b.getKey(), a });
+              }
+            }
+          }
+        }
+      }
+    }
+
+    // TOP
+    BitSet[][] spans = new BitSet[n][n];
+    for (int s = 0; s < n; ++s) {
+      for (int i = 0; i < n - s; ++i) {
+        spans[i][i + s] = new BitSet();
+      }
+    }
+    double Z = Log.ZERO;
+    for (Map.Entry<Integer, Double> a : spanned[0][n - 1].inside.entrySet()) {
+      if (top[l].get(a.getKey())) {
+        Z = Log.add(Z, a.getValue());
+        spanned[0][n - 1].outside.put(a.getKey(), Log.ONE);
+      }
+    }
+    if (Z == Log.ZERO) {
+      return spans;
+    }
+
+    // Outside
+    for (int s = n - 1; s >= 0; --s) {
+      for (int i = 0; i < n - s; ++i) {
+        int j = i + s;
+        HashMap<Integer, Double> inside = spanned[i][j].inside;
+        HashMap<Integer, Double> cell = spanned[i][j].outside;
+        ArrayList<int[]> rules = spanned[i][j].unaries;
+        for (int t = stages - 1; t >= 0; --t) {
+          ArrayList<double[]> messages = new ArrayList<>();
+          for (int[] rule : rules) {
+            Double parent;
+            if (rule[0] == t && (parent = cell.get(rule[2])) != null) {
+              messages.add(new double[] { rule[1], parent });
+            }
+          }
+          for (double[] message : messages) {
+            cell.merge((int) message[0], message[1], Log::add);
+          }
+        }
+        for (int k = i; k < j && !cell.isEmpty(); ++k) {
+          HashMap<Integer, Double> left = spanned[i][k].outside;
+          HashMap<Integer, Double> right = spanned[k + 1][j].outside;
+          for (Map.Entry<Integer, Double> b : spanned[i][k].inside.entrySet()) {
+            for (Map.Entry<Integer, Double> c : spanned[k + 1][j].inside.entrySet()) {
+              int[] parents = binary.get(l).get(key(l, b.getKey(), c.getKey()));
+              if (parents == null) {
+                continue;
+              }
+              for (int a : parents) {
+                Double parent = cell.get(a);
+                if (parent != null && inside.containsKey(a)) {
+                  left.merge(b.getKey(), Log.mul(parent, c.getValue()), Log::add);
+                  right.merge(c.getKey(), Log.mul(parent, b.getValue()), Log::add);
+                }
+              }
+            }
+          }
+        }
+        for (Map.Entry<Integer, Double> a : inside.entrySet()) {
+          Double out = cell.get(a.getKey());
+          if (out != null && Log.div(Log.mul(a.getValue(), out), Z) >= threshold) {
+            spans[i][j].set(a.getKey());
+          }
+        }
+      }
+    }
+
+    if (Metrics.enabled()) {
+      long before = 0, after = 0;
+      for (int s = 0; s < n; ++s) {
+        for (int i = 0; i < n - s; ++i) {
+          before += spanned[i][i + s].inside.size();
+          after += spans[i][i + s].cardinality();
+        }
+      }
+      Metrics.count("coarseToFine." + levels[l] + ".labels", before);
+      Metrics.count("coarseToFine." + levels[l] + ".kept", after);
+    }
+    return spans;
+  }
+
+  private boolean allowed(BitSet[][] previous, int l, int i, int j, int label) {
+    return previous == null || previous[i][j].get(coarser[l][label]);
+  }
+
+  /**
+   * Label scores of one span during a coarse pass
+   */
+  private static final class Span {
+    final HashMap<Integer, Double> inside = new HashMap<>();
+    final HashMap<Integer, Double> outside = new HashMap<>();
+    /** Unary rules applied in the span as { stage, child, parent } */
+    final ArrayList<int[]> unaries = new ArrayList<>();
+  }
+}
@@ -12,7 +12,9 @@ import CCGInduction.grammar.Rule_Type;
 import CCGInduction.grammar.Unary;
 import CCGInduction.models.Model;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -55,13 +57,15 @@ public class InductionChart<G extends Grammar> extends CoarseToFineChart<G> {
     // If there is a category already assigned to this word, get the correct production rule
     // Otherwise, get all possible productions
     Set<Rule> rules;
-    if (sentence.get(i).cat() != null && sentence.get(i).cat().length != 0) {
+    boolean assigned = sentence.get(i).cat() != null && sentence.get(i).cat().length != 0;
+    if (assigned) {
       rules = new HashSet<>();
       for (long category : sentence.get(i).cat())
         rules.add(iG.getRule(category, lex_cat, Rule_Type.PRODUCTION, true));
     } else {
       rules = iG.getRules(lex_cat);
     }
+    List<ChartItem<G>> lexical = new ArrayList<>();
     for (Rule rule : rules) {
       InducedCAT ic = iG.Categories.get(rule.A);
       // Also hard constrain at the lexical level
@@ -81,7 +85,7 @@ public class InductionChart<G extends Grammar> extends CoarseToFineChart<G> {
             ci = Grammar.LexChartItem((Unary) rule, cell);
             if (!test)
               ci.iCAT = ic;
-            cell.addCat(ci);
+            lexical.add(ci);
             if (ci.iCAT == null && !test) {
               System.out.println(sentence.get(i).word(iG));
               throw new Parser.FailedParsingAssertion("no iCAT");
@@ -91,7 +95,7 @@ public class InductionChart<G extends Grammar> extends CoarseToFineChart<G> {
             if (!test) {
               ci = Grammar.LexChartItem((Unary)rule, cell);
               ci.iCAT = ic;
-              cell.addCat(ci);
+              lexical.add(ci);
               if (ci.iCAT == null) {
                 throw new Parser.FailedParsingAssertion("no iCAT");
               }
@@ -104,5 +108,11 @@ public class InductionChart<G extends Grammar> extends CoarseToFineChart<G> {
         }
       }
     }
+    // Optionally restrict the cell to the model's most probable categories,
+    // unless the caller assigned them
+    if (!assigned && !Tagset.Punct(t) && LexicalPruning.active(model)) {
+      lexical = LexicalPruning.prune(model, lexical);
+    }
+    lexical.forEach(cell::addCat);
   }
 }
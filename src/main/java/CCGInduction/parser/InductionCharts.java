@@ -1,6 +1,8 @@
 package CCGInduction.parser;
 
+import CCGInduction.Configuration;
 import CCGInduction.grammar.Grammar;
+import CCGInduction.data.LexicalToken;
 import CCGInduction.data.Sentence;
 import CCGInduction.data.Sentences;
 import CCGInduction.models.Model;
@@ -37,6 +39,40 @@ public class InductionCharts<G extends Grammar> extends SerializableCharts<G, In
     super(global_model, shortest, longest, file);
   }
 
+  @Override
+  boolean deduplicating() {
+    return Configuration.deduplicateCharts;
+  }
+
+  /**
+   * Everything InductionChart is built from: per token the tag, word ( or
+   * UNK:tag ), assigned categories and the position within an entity
+   */
+  @Override
+  long[] deduplicationKey(Sentence sentence) {
+    int size = 0;
+    for (LexicalToken token : sentence) {
+      size += 4 + (token.cat() == null ? 0 : token.cat().length);
+    }
+    long[] key = new long[size];
+    int i = 0;
+    String previous = "";
+    for (LexicalToken token : sentence) {
+      key[i++] = model.grammar.Lex(token.tag().toString());
+      key[i++] = token.wordOrTag(model.grammar.learnedWords, model.grammar);
+      // 0: no entity, 1: continues the previous entity, 2: starts an entity
+      String FBid = token.FBid();
+      key[i++] = FBid.isEmpty() ? 0 : FBid.equals(previous) ? 1 : 2;
+      previous = FBid;
+      long[] cats = token.cat() == null ? new long[0] : token.cat();
+      key[i++] = cats.length;
+      for (long cat : cats) {
+        key[i++] = cat;
+      }
+    }
+    return key;
+  }
+
   @Override
   InductionChart<G> createChart(Model<G> global_model, Sentence sent) {
     return new InductionChart<>(sent, global_model);
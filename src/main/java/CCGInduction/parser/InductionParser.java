@@ -9,9 +9,12 @@ import CCGInduction.utils.Math.Log;
 import CCGInduction.ccg.Direction;
 import CCGInduction.models.Model;
 import CCGInduction.utils.IntPair;
+import CCGInduction.utils.Metrics;
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Creates a parser for use with Induction.  The amount of power and whether
@@ -19,6 +22,15 @@ import java.util.concurrent.ConcurrentHashMap;
  * @author bisk1
  */
 public class InductionParser<G extends Grammar> extends CYKParser<G> {
+  private static final LongAdder tableHits = Metrics.counter("grammar.combinationTable.hit");
+  private static final LongAdder tableMisses = Metrics.counter("grammar.combinationTable.miss");
+  private static final LongAdder reparsed = Metrics.counter("coarseToFine.reparsed");
+  private final SpanMemo memo;
+  private final CoarseGrammar coarse;
+  /** Labels which survived coarse-to-fine pruning for the current chart */
+  private BitSet[][] spans;
+  /** Set while a chart whose pruned parse failed is parsed again in full */
+  private boolean unpruned = false;
 
   /**
    * Creates a parser for use with Induction.  The amount of power and whether
@@ -26,8 +38,31 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
    * @param power Combinator strength
    */
   public InductionParser(Action power) {
+    this(power, null);
+  }
+
+  /**
+   * Creates a parser which shares binary cells across charts through memo
+   * @param power Combinator strength
+   * @param memo Cross-chart cell memo ( or null )
+   */
+  public InductionParser(Action power, SpanMemo memo) {
+    this(power, memo, null);
+  }
+
+  /**
+   * Creates a parser which prunes test charts with a coarse grammar before
+   * filling the binary cells.  A chart with no parse left after pruning is
+   * parsed again without it.
+   * @param power Combinator strength
+   * @param memo Cross-chart cell memo ( or null )
+   * @param coarse Projections of the fixed grammar ( or null )
+   */
+  public InductionParser(Action power, SpanMemo memo, CoarseGrammar coarse) {
     super(power == Action.Test || power == Action.SupervisedTest);
     this.parse_action = power;
+    this.memo = memo;
+    this.coarse = test && memo == null ? coarse : null;
   }
 
   @Override
@@ -48,13 +83,42 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
       }
     } else {
       super.parse(model, chart);
+      if (spans != null && chart.TOP == null && chart.sentence.length_noP() <= Configuration.longestTestSentence) {
+        spans = null;
+        unpruned = true;
+        chart.parses = 0;
+        super.parse(model, chart);
+        unpruned = false;
+        reparsed.increment();
+      }
+      spans = null;
+    }
+  }
+
+  @Override
+  protected void prune(Model<G> model, Chart<G> chart) {
+    if (coarse == null || unpruned || chart.getLength() == 0) {
+      return;
+    }
+    boolean typeRaise = !Configuration.lexTROnly && Configuration.typeRaising || parse_action == Action.SupervisedTest;
+    spans = coarse.prune(model, chart, typeRaise);
+    for (int i = 0; i < chart.getLength(); i++) {
+      final int k = i;
+      chart.chart[i][i].retain(cat -> coarse.allowed(spans, k, k, cat));
     }
   }
 
   @Override
   protected void binaryCell(Model<G> model, int i, int j, Chart<G> chart) {
+    SpanMemo.Key key = memo == null ? null : memo.key(chart, i, j);
+    if (key != null && memo.replay(key, chart, i, j)) {
+      return;
+    }
     chart.chart[i][j] = new Cell<>(chart, i, j);
     Cell<G> A = chart.chart[i][j];
+    if (spans != null && spans[i][j].isEmpty()) {
+      return;
+    }
     if (chart.punctuationBracketing(i, j) && (!Configuration.hardBracketConstraints || !chart.crossingBrackets(i,j))) {
       for (int k = i; k <= j - 1; k++) {
         Cell<G> B = chart.chart[i][k];
@@ -71,6 +135,12 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
         getUnary(model, A, Rule_Type.FW_TYPERAISE);
         getUnary(model, A, Rule_Type.BW_TYPERAISE);
       }
+      if (spans != null) {
+        A.retain(cat -> coarse.allowed(spans, i, j, cat));
+      }
+    }
+    if (key != null) {
+      memo.put(key, A);
     }
   }
 
@@ -213,6 +283,25 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
    * @return If the categories can combine
    */
   private boolean canCombine(Model<G> model, long leftCategory, long rightCategory, Action action) {
+    CombinationTable table = model.grammar.combinationTable;
+    if (table != null && table.action == action) {
+      int row = table.index(leftCategory);
+      int col = table.index(rightCategory);
+      if (row >= 0 && col >= 0) {
+        if (Metrics.enabled())
+          tableHits.increment();
+        if (!table.canCombine(row, col)) {
+          return false;
+        }
+        // The table doesn't create rules, do so the first time a pair is used
+        if (model.grammar.combine(leftCategory, rightCategory) == valid.Unknown) {
+          createInductionRule(model, leftCategory, rightCategory, action);
+        }
+        return true;
+      }
+      if (Metrics.enabled())
+        tableMisses.increment();
+    }
     switch (model.grammar.combine(leftCategory, rightCategory)) {
     case Unused:
       return (action != Action.Test && action != Action.SupervisedTest); // T: if not testing
@@ -230,6 +319,36 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
     }
   }
 
+  /**
+   * Fills a row of a combination table with the outcome canCombine would
+   * give for every pair.  Pairs the grammar hasn't seen yet are tried against
+   * a scratch grammar, so neither rules nor combinationCheck entries are
+   * added to the model's grammar: that happens only for the pairs CYK uses.
+   *
+   * @param model Model whose grammar is being resolved
+   * @param table Table being filled
+   * @param row Left category index
+   */
+  public void precomputeCombinations(Model<G> model, CombinationTable table, int row) {
+    boolean testing = parse_action == Action.Test || parse_action == Action.SupervisedTest;
+    long leftCategory = table.category(row);
+    InducedCAT left = model.grammar.Categories.get(leftCategory);
+    Grammar scratch = new Grammar();
+    boolean[] columns = new boolean[table.size()];
+    for (int col = 0; col < table.size(); ++col) {
+      long rightCategory = table.category(col);
+      valid v = model.grammar.combinationCheck.get(new IntPair(leftCategory, rightCategory));
+      if (v == null) {
+        // Copies, as building a rule may set the modifier flag of a child
+        columns[col] = !testing
+            && createRule(scratch, parse_action, left.copy(), model.grammar.Categories.get(rightCategory).copy()) != null;
+      } else {
+        columns[col] = v == valid.Valid || (v == valid.Unused && !testing);
+      }
+    }
+    table.fillRow(row, columns);
+  }
+
   /**
    * Defines a set of rules and 'valid' value for a given pair of categories.
    * 
@@ -238,20 +357,20 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
    * @param canCombine Can these categories combine?
    * @param rule Grammatical rule used to combine given categories
    */
-  private void combine(Model<G> model, long leftCategory, long rightCategory, valid canCombine, Rule rule) {
+  private void combine(Grammar grammar, long leftCategory, long rightCategory, valid canCombine, Rule rule) {
     IntPair ip = new IntPair(leftCategory, rightCategory);
     if (canCombine == null) {
       throw new Parser.FailedParsingAssertion("Failed to find way to combine");
     }
-    model.grammar.Rules.putIfAbsent(ip, new ConcurrentHashMap<>());
+    grammar.Rules.putIfAbsent(ip, new ConcurrentHashMap<>());
 
-    model.grammar.Rules.get(ip).put(rule,true);
-    model.grammar.combinationCheck.put(ip, canCombine);
+    grammar.Rules.get(ip).put(rule,true);
+    grammar.combinationCheck.put(ip, canCombine);
 
   }
 
-  private void invalidCombination(Model<G> model, long b_cat, long c_cat) {
-    model.grammar.combinationCheck.put(new IntPair(b_cat,c_cat), valid.Invalid);
+  private void invalidCombination(Grammar grammar, long b_cat, long c_cat) {
+    grammar.combinationCheck.put(new IntPair(b_cat,c_cat), valid.Invalid);
   }
 
 
@@ -263,7 +382,7 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
    * @return  A binarymodel.grammar rule
    */
   public Binary createSupervisedRule(Model<G> model, InducedCAT parent, InducedCAT left, InducedCAT right) {
-    Binary rule = createRule(model, Action.Supervised, parent, left, right);
+    Binary rule = createRule(model.grammar, Action.Supervised, parent, left, right);
     model.grammar.NTRecursively(parent);
     if (rule == null) {
       throw new Parser.FailedParsingAssertion("Null Rule:\t" + parent.toString() + "\t"
@@ -314,10 +433,10 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
   private Binary createInductionRule(Model<G> model, long leftCategory, long rightCategory, Action action) {
     InducedCAT b = model.grammar.Categories.get(leftCategory);
     InducedCAT c = model.grammar.Categories.get(rightCategory);
-    return createRule(model,action, b, c);
+    return createRule(model.grammar, action, b, c);
   }
 
-  private Binary createRule(Model<G> model, Action action, InducedCAT... categories) {
+  private Binary createRule(Grammar grammar, Action action, InducedCAT... categories) {
     InducedCAT parent = null;
     if (categories.length == 3)
       parent = categories[0];
@@ -339,41 +458,41 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
       }
     }
 
-    rule = FW_CONJOIN (model, action, parent, left, right);  // conj  X       --> X[conj]
+    rule = FW_CONJOIN (grammar, action, parent, left, right);  // conj  X       --> X[conj]
     if (rule != null) return rule;
-    rule = BW_CONJOIN (model, action, parent, left, right);  // X     X[conj] --> X
+    rule = BW_CONJOIN (grammar, action, parent, left, right);  // X     X[conj] --> X
     if (rule != null) return rule;
-    rule = FW_PUNCT   (model, action, parent, left, right);  // Punc  R     --> P
+    rule = FW_PUNCT   (grammar, action, parent, left, right);  // Punc  R     --> P
     if (rule != null) return rule;
-    rule = BW_PUNCT   (model, action, parent, left, right);  // L     Punc  --> P
+    rule = BW_PUNCT   (grammar, action, parent, left, right);  // L     Punc  --> P
     if (rule != null) return rule;
-    rule = FW_APPLY   (model, action, parent, left, right);  // L/R   R     --> P
+    rule = FW_APPLY   (grammar, action, parent, left, right);  // L/R   R     --> P
     if (rule != null) return rule;
-    rule = BW_APPLY   (model, action, parent, left, right);  // L     L\R   --> P
+    rule = BW_APPLY   (grammar, action, parent, left, right);  // L     L\R   --> P
     if (rule != null) return rule;
-    rule = FW_COMPOSE (model, action, parent, left, right);  // X/Y   Y/Z   --> X/Z
+    rule = FW_COMPOSE (grammar, action, parent, left, right);  // X/Y   Y/Z   --> X/Z
     if (rule != null) return rule;
-    rule = FW_XCOMPOSE(model, action, parent, left, right);  // X/Y   Y\Z   --> X\Z
+    rule = FW_XCOMPOSE(grammar, action, parent, left, right);  // X/Y   Y\Z   --> X\Z
     if (rule != null) return rule;
-    rule = BW_COMPOSE (model, action, parent, left, right);  // Y\Z   X\Y   --> X\Z
+    rule = BW_COMPOSE (grammar, action, parent, left, right);  // Y\Z   X\Y   --> X\Z
     if (rule != null) return rule;
-    rule = BW_XCOMPOSE(model, action, parent, left, right);  // Y/Z   X\Y   --> X/Z
+    rule = BW_XCOMPOSE(grammar, action, parent, left, right);  // Y/Z   X\Y   --> X/Z
     if (rule != null) return rule;
-    rule = GEN_COMPOSE(model, action, parent, left, right);  // X/Y   (Y|Z)|..|Z'
+    rule = GEN_COMPOSE(grammar, action, parent, left, right);  // X/Y   (Y|Z)|..|Z'
     if (rule != null) return rule;
 
 
     // If this is an unhandled rule type and one of the children is a conj
     // Treat as a type-changing rule
     if (action == Action.Supervised) {
-      rule = SUBSTITUTION(model, parent, left, right);
+      rule = SUBSTITUTION(grammar, parent, left, right);
       if (rule != null) return rule;
-      rule = TYPE_CHANGE(model, parent, left, right);
+      rule = TYPE_CHANGE(grammar, parent, left, right);
       if (rule != null) return rule;
     }
 
     // We can't handle this pair
-    invalidCombination(model, model.grammar.NT(left), model.grammar.NT(right));
+    invalidCombination(grammar, grammar.NT(left), grammar.NT(right));
     return null;
   }
 
@@ -382,42 +501,42 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
    * to return an unlike category Y
    * @return New rule if possible
    */
-  private Binary TYPE_CHANGE(Model<G> model, InducedCAT parent, InducedCAT left, InducedCAT right) {
+  private Binary TYPE_CHANGE(Grammar grammar, InducedCAT parent, InducedCAT left, InducedCAT right) {
     Binary rule;
     if (InducedCAT.CONJ(left)
         && (!CCGCategoryUtilities.softEquality(parent, right) || (!parent.hasFeat() && right.hasFeat()))) {
-      rule = model.grammar.createRule(parent, left, right, Rule_Type.FW_TYPECHANGE, 0);
+      rule = grammar.createRule(parent, left, right, Rule_Type.FW_TYPECHANGE, 0);
     } else if (InducedCAT.CONJ(right)   // S/S --> S[dcl]/S[dcl]  ,     X --> Y ,
         && (!CCGCategoryUtilities.softEquality(parent, left) || (!parent.hasFeat() && left.hasFeat()))) {
-      rule = model.grammar.createRule(parent, left, right, Rule_Type.BW_TYPECHANGE, 0);
+      rule = grammar.createRule(parent, left, right, Rule_Type.BW_TYPECHANGE, 0);
     } else {
       if (InducedCAT.CONJ(left))
-        rule = model.grammar.createRule(parent, left, right, Rule_Type.FW_TYPECHANGE, 0);
+        rule = grammar.createRule(parent, left, right, Rule_Type.FW_TYPECHANGE, 0);
       else if(InducedCAT.CONJ(right))
-        rule = model.grammar.createRule(parent, left, right, Rule_Type.BW_TYPECHANGE, 0);
+        rule = grammar.createRule(parent, left, right, Rule_Type.BW_TYPECHANGE, 0);
       // FIXME: The following is a catch-all hack
       else
-        rule = model.grammar.createRule(parent, left, right, Rule_Type.FW_TYPECHANGE, 0);
+        rule = grammar.createRule(parent, left, right, Rule_Type.FW_TYPECHANGE, 0);
     }
     if (rule != null)
-      combine(model, rule.B, rule.C, valid.Unused, rule);
+      combine(grammar, rule.B, rule.C, valid.Unused, rule);
     return rule;
   }
 
-  private Binary SUBSTITUTION(Model<G> model, InducedCAT parent, InducedCAT left, InducedCAT right) {
+  private Binary SUBSTITUTION(Grammar grammar, InducedCAT parent, InducedCAT left, InducedCAT right) {
     // Y|Z   (X\Y)|Z  --> X|Z       TODO:  Should be vertical on Z
     if (left.Res != null && right.Res != null && right.Res.Arg != null
         && CCGCategoryUtilities.softEquality(left.Res, right.Res.Arg)
         && CCGCategoryUtilities.softEquality(parent, right.Res.Res.forward(left.Arg))) {
-      Binary rule = model.grammar.createRule(parent, left, right, Rule_Type.FW_SUBSTITUTION, 1);
-      combine(model, rule.B, rule.C, valid.Unused, rule);
+      Binary rule = grammar.createRule(parent, left, right, Rule_Type.FW_SUBSTITUTION, 1);
+      combine(grammar, rule.B, rule.C, valid.Unused, rule);
       return rule;
     }
     // TODO:  BW_SUBSTITUTION (X\Y)|Z Y|Z   --> X|Z
     return null;
   }
 
-  private Binary FW_CONJOIN(Model<G> model, Action action, InducedCAT parent, InducedCAT left, InducedCAT right) {
+  private Binary FW_CONJOIN(Grammar grammar, Action action, InducedCAT parent, InducedCAT left, InducedCAT right) {
     // conj   conj\conj    is not a conjoin
     if ((left.Arg != null && InducedCAT.CONJ(left.Arg)) || (right.Arg != null && InducedCAT.CONJ(right.Arg)))
       return null;
@@ -435,8 +554,8 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
       if (action == Action.Supervised)
         newC = parent;
 
-      Binary rule = model.grammar.createRule(newC, left, right, Rule_Type.FW_CONJOIN, 0);
-      combine(model, rule.B, rule.C, valid.Unused, rule);
+      Binary rule = grammar.createRule(newC, left, right, Rule_Type.FW_CONJOIN, 0);
+      combine(grammar, rule.B, rule.C, valid.Unused, rule);
       return rule;
     }
     return null;
@@ -446,19 +565,19 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
    * X  -->   X   X[conj]
    * @return  Rule if possible
    */
-  private Binary BW_CONJOIN(Model<G> model, Action action, InducedCAT parent, InducedCAT left, InducedCAT right) {
+  private Binary BW_CONJOIN(Grammar grammar, Action action, InducedCAT parent, InducedCAT left, InducedCAT right) {
     if (right.has_conj && right.equalsWithoutConj(left)) {
       InducedCAT newC = left;
       if (action == Action.Supervised)
         newC = parent;
-      Binary rule = model.grammar.createRule(newC, left, right, Rule_Type.BW_CONJOIN, 0);
-      combine(model, rule.B, rule.C, valid.Unused, rule);
+      Binary rule = grammar.createRule(newC, left, right, Rule_Type.BW_CONJOIN, 0);
+      combine(grammar, rule.B, rule.C, valid.Unused, rule);
       return rule;
     }
     return null;
   }
 
-  private Binary FW_PUNCT(Model<G> model, Action action, InducedCAT parent, InducedCAT left, InducedCAT right) {
+  private Binary FW_PUNCT(Grammar grammar, Action action, InducedCAT parent, InducedCAT left, InducedCAT right) {
     // X -> Punc X FW_PUNCT
     if (InducedCAT.PUNC(left.atom)) {
       // If the parent and child don't match
@@ -468,19 +587,19 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
         return null;
       Binary rule;
       if (action == Action.Supervised)    // N --> , N[conj]   this type of bull-shit
-        rule = model.grammar.createRule(parent, left, right, Rule_Type.FW_PUNCT, 0);
+        rule = grammar.createRule(parent, left, right, Rule_Type.FW_PUNCT, 0);
       else {
         if (right.has_conj)
           return null;
-        rule = model.grammar.createRule(right, left, right, Rule_Type.FW_PUNCT, 0);
+        rule = grammar.createRule(right, left, right, Rule_Type.FW_PUNCT, 0);
       }
-      combine(model, rule.B, rule.C, valid.Unused, rule);
+      combine(grammar, rule.B, rule.C, valid.Unused, rule);
       return rule;
     }
     return null;
   }
 
-  private Binary BW_PUNCT(Model<G> model, Action action, InducedCAT parent, InducedCAT left, InducedCAT right) {
+  private Binary BW_PUNCT(Grammar grammar, Action action, InducedCAT parent, InducedCAT left, InducedCAT right) {
     // X -> X Punc BW_PUNCT
     if (InducedCAT.PUNC(right.atom)){
       if (action == Action.Supervised && !parent.equals(left))
@@ -488,8 +607,8 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
       InducedCAT newC = left;
       if (action == Action.Supervised)
         newC = parent;
-      Binary rule = model.grammar.createRule(newC, left, right, Rule_Type.BW_PUNCT, 0);
-      combine(model, rule.B, rule.C, valid.Unused, rule);
+      Binary rule = grammar.createRule(newC, left, right, Rule_Type.BW_PUNCT, 0);
+      combine(grammar, rule.B, rule.C, valid.Unused, rule);
       return rule;
     }
     return null;
@@ -501,19 +620,19 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
    *
    * @return New rule or null
    */
-  private Binary FW_APPLY(Model<G> model, Action action, InducedCAT parent, InducedCAT left, InducedCAT right) {
+  private Binary FW_APPLY(Grammar grammar, Action action, InducedCAT parent, InducedCAT left, InducedCAT right) {
     if (action == Action.Supervised) {
       if (left.D.equals(Direction.FW)
           && CCGCategoryUtilities.softEquality(left.Arg, right)
           && CCGCategoryUtilities.softEquality(parent, left.Res)) {
-        Binary rule = model.grammar.createRule(parent, left, right, Rule_Type.FW_APPLY, 0);
-        combine(model, rule.B, rule.C, valid.Valid, rule);
+        Binary rule = grammar.createRule(parent, left, right, Rule_Type.FW_APPLY, 0);
+        combine(grammar, rule.B, rule.C, valid.Valid, rule);
         return rule;
       }
     } else if (!left.has_conj && left.D.equals(Direction.FW) && left.Arg.equals(right)) {
       // Parent is left.Result
-      Binary rule = model.grammar.createRule(left.Res.copy(), left, right, Rule_Type.FW_APPLY, 0);
-      combine(model, rule.B, rule.C, valid.Unused, rule);
+      Binary rule = grammar.createRule(left.Res.copy(), left, right, Rule_Type.FW_APPLY, 0);
+      combine(grammar, rule.B, rule.C, valid.Unused, rule);
       return rule;
     }
     return null;
@@ -525,21 +644,21 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
    *
    * @return New rule or null
    */
-  private Binary BW_APPLY(Model<G> model, Action action, InducedCAT parent, InducedCAT left, InducedCAT right) {
+  private Binary BW_APPLY(Grammar grammar, Action action, InducedCAT parent, InducedCAT left, InducedCAT right) {
     if (action == Action.Supervised) {
       if (right.D.equals(Direction.BW)
           && CCGCategoryUtilities.softEquality(right.Arg, left)
           && CCGCategoryUtilities.softEquality(parent, right.Res)) {
-        Binary rule = model.grammar.createRule(parent, left, right, Rule_Type.BW_APPLY, 0);
-        combine(model, rule.B, rule.C, valid.Valid, rule);
+        Binary rule = grammar.createRule(parent, left, right, Rule_Type.BW_APPLY, 0);
+        combine(grammar, rule.B, rule.C, valid.Valid, rule);
         return rule;
       }
     } else if (right.D.equals(Direction.BW) && right.Arg.equals(left)) {
       if (left.has_conj || right.has_conj)
         return null;
       // Parent is right.Result
-      Binary rule = model.grammar.createRule(right.Res.copy(), left, right, Rule_Type.BW_APPLY, 0);
-      combine(model, rule.B, rule.C, valid.Unused, rule);
+      Binary rule = grammar.createRule(right.Res.copy(), left, right, Rule_Type.BW_APPLY, 0);
+      combine(grammar, rule.B, rule.C, valid.Unused, rule);
       return rule;
     }
     return null;
@@ -551,13 +670,13 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
    *
    * @return New rule or null
    */
-  private Binary FW_COMPOSE(Model<G> model, Action action, InducedCAT parent, InducedCAT left, InducedCAT right) {
+  private Binary FW_COMPOSE(Grammar grammar, Action action, InducedCAT parent, InducedCAT left, InducedCAT right) {
     if (action == Action.Supervised) {
       if (left.D.equals(Direction.FW) && right.D.equals(Direction.FW)
           && CCGCategoryUtilities.softEquality(left.Arg, right.Res)
           && CCGCategoryUtilities.softEquality(parent, left.Res.forward(right.Arg))) {
-        Binary rule = model.grammar.createRule(parent, left, right, Rule_Type.FW_COMPOSE, 1);
-        combine(model, rule.B, rule.C, valid.Valid, rule);
+        Binary rule = grammar.createRule(parent, left, right, Rule_Type.FW_COMPOSE, 1);
+        combine(grammar, rule.B, rule.C, valid.Valid, rule);
         return rule;
       }
     } else {
@@ -578,8 +697,8 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
       }
       if (left.D.equals(Direction.FW) && right.D.equals(Direction.FW) && left.Arg.equals(right.Res)) {
         // Parent is left.Res / right.Arg
-        Binary rule = model.grammar.createRule(left.Res.forward(right.Arg), left, right, Rule_Type.FW_COMPOSE, 1);
-        combine(model, rule.B, rule.C, valid.Unused, rule);
+        Binary rule = grammar.createRule(left.Res.forward(right.Arg), left, right, Rule_Type.FW_COMPOSE, 1);
+        combine(grammar, rule.B, rule.C, valid.Unused, rule);
         return rule;
       }
     }
@@ -592,13 +711,13 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
    *
    * @return New rule or null
    */
-  private Binary FW_XCOMPOSE(Model<G> model, Action action, InducedCAT parent, InducedCAT left, InducedCAT right) {
+  private Binary FW_XCOMPOSE(Grammar grammar, Action action, InducedCAT parent, InducedCAT left, InducedCAT right) {
     if (action == Action.Supervised) {
       if (left.D.equals(Direction.FW) && right.D.equals(Direction.BW)
           && CCGCategoryUtilities.softEquality(left.Arg, right.Res)
           && CCGCategoryUtilities.softEquality(parent, left.Res.backward(right.Arg))) {
-        Binary rule = model.grammar.createRule(parent, left, right, Rule_Type.FW_XCOMPOSE, 1);
-        combine(model, rule.B, rule.C, valid.Valid, rule);
+        Binary rule = grammar.createRule(parent, left, right, Rule_Type.FW_XCOMPOSE, 1);
+        combine(grammar, rule.B, rule.C, valid.Valid, rule);
         return rule;
       }
     } else {
@@ -629,21 +748,21 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
       if (left.D.equals(Direction.FW) && right.D.equals(Direction.BW)
           && left.Arg.equals(right.Res, action) && (left.modifier || !right.modifier)) {
         // Parent is left.Res \ right.Arg
-        Binary rule = model.grammar.createRule(left.Res.backward(right.Arg), left, right, Rule_Type.FW_XCOMPOSE, 1);
-        combine(model, rule.B, rule.C, valid.Unused, rule);
+        Binary rule = grammar.createRule(left.Res.backward(right.Arg), left, right, Rule_Type.FW_XCOMPOSE, 1);
+        combine(grammar, rule.B, rule.C, valid.Unused, rule);
         return rule;
       }
     }
     return null;
   }
 
-  private Binary BW_COMPOSE(Model<G> model, Action action, InducedCAT parent, InducedCAT left, InducedCAT right) {
+  private Binary BW_COMPOSE(Grammar grammar, Action action, InducedCAT parent, InducedCAT left, InducedCAT right) {
     if (action == Action.Supervised) {
       if (left.D.equals(Direction.BW) && right.D.equals(Direction.BW)
           && CCGCategoryUtilities.softEquality(left.Res, right.Arg)
           && CCGCategoryUtilities.softEquality(parent, right.Res.backward(left.Arg))) {
-        Binary rule = model.grammar.createRule(parent, left, right, Rule_Type.BW_COMPOSE, 1);
-        combine(model, rule.B, rule.C, valid.Valid, rule);
+        Binary rule = grammar.createRule(parent, left, right, Rule_Type.BW_COMPOSE, 1);
+        combine(grammar, rule.B, rule.C, valid.Valid, rule);
         return rule;
       }
     } else {
@@ -664,21 +783,21 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
       }
       if (left.D.equals(Direction.BW) && right.D.equals(Direction.BW) && left.Res.equals(right.Arg)) {
         // Parent is  right.Res \ left.Arg
-        Binary rule = model.grammar.createRule(right.Res.backward(left.Arg), left, right, Rule_Type.BW_COMPOSE, 1);
-        combine(model, rule.B, rule.C, valid.Unused, rule);
+        Binary rule = grammar.createRule(right.Res.backward(left.Arg), left, right, Rule_Type.BW_COMPOSE, 1);
+        combine(grammar, rule.B, rule.C, valid.Unused, rule);
         return rule;
       }
     }
     return null;
   }
 
-  private Binary BW_XCOMPOSE(Model<G> model, Action action, InducedCAT parent, InducedCAT left, InducedCAT right) {
+  private Binary BW_XCOMPOSE(Grammar grammar, Action action, InducedCAT parent, InducedCAT left, InducedCAT right) {
     if (action == Action.Supervised) {
       if (left.D.equals(Direction.FW) && right.D.equals(Direction.BW)
           && CCGCategoryUtilities.softEquality(left.Res, right.Arg)
           && CCGCategoryUtilities.softEquality(parent, right.Res.forward(left.Arg))) {
-        Binary rule = model.grammar.createRule(parent, left, right, Rule_Type.BW_XCOMPOSE, 1);
-        combine(model, rule.B, rule.C, valid.Valid, rule);
+        Binary rule = grammar.createRule(parent, left, right, Rule_Type.BW_XCOMPOSE, 1);
+        combine(grammar, rule.B, rule.C, valid.Valid, rule);
         return rule;
       }
     } else {
@@ -700,15 +819,15 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
       if (left.D.equals(Direction.FW) && right.D.equals(Direction.BW)
           && left.Res.equals(right.Arg) && (right.modifier || !left.modifier)) {
         // Parent is right.Res / left.Arg
-        Binary rule = model.grammar.createRule(right.Res.forward(left.Arg), left, right, Rule_Type.BW_XCOMPOSE, 1);
-        combine(model, rule.B, rule.C, valid.Unused, rule);
+        Binary rule = grammar.createRule(right.Res.forward(left.Arg), left, right, Rule_Type.BW_XCOMPOSE, 1);
+        combine(grammar, rule.B, rule.C, valid.Unused, rule);
         return rule;
       }
     }
     return null;
   }
 
-  private Binary GEN_COMPOSE(Model<G> model, Action action, InducedCAT parent, InducedCAT left, InducedCAT right) {
+  private Binary GEN_COMPOSE(Grammar grammar, Action action, InducedCAT parent, InducedCAT left, InducedCAT right) {
     if (action == Action.B0 || action == Action.B1 || action == Action.B1Mod || action == Action.B1ModTR)
       return null;
 
@@ -720,7 +839,7 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
     if (right.D == Direction.BW)
       bwCompose = InducedCAT.GenComp(left, right, Rule_Type.BW_COMPOSE, 1, 100, action);
     if (fwCompose == null && bwCompose == null) {
-      invalidCombination(model, model.grammar.NT(left), model.grammar.NT(right));
+      invalidCombination(grammar, grammar.NT(left), grammar.NT(right));
       return null;
     }
 
@@ -791,7 +910,7 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
     }
     if (newCat == null) {
       // Neither are null.... crap or... conditions not met
-      invalidCombination(model, model.grammar.NT(left), model.grammar.NT(right));
+      invalidCombination(grammar, grammar.NT(left), grammar.NT(right));
       return null;
     } else {
       if (type == Rule_Type.FW_COMPOSE) {
@@ -832,11 +951,11 @@ public class InductionParser<G extends Grammar> extends CYKParser<G> {
         }
       }
 
-      Binary rule = model.grammar.createRule(newCat, left, right, type, newCat.composition_arity);
+      Binary rule = grammar.createRule(newCat, left, right, type, newCat.composition_arity);
       if (action == Action.Supervised)
-        combine(model, rule.B, rule.C, valid.Valid, rule);
+        combine(grammar, rule.B, rule.C, valid.Valid, rule);
       else
-        combine(model, rule.B, rule.C, valid.Unused, rule);
+        combine(grammar, rule.B, rule.C, valid.Unused, rule);
       return rule;
     }
   }
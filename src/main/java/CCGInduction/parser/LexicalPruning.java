@@ -0,0 +1,102 @@
+package CCGInduction.parser;
+
+import CCGInduction.Configuration;
+import CCGInduction.grammar.Grammar;
+import CCGInduction.models.Model;
+import CCGInduction.utils.Logger;
+import CCGInduction.utils.Math.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Supertagger style pre-filter for lexical cells.  Ranks a token's candidate
+ * categories by the model's lexical score and keeps those within a beam
+ * (beta) of the best and/or the top-k.  Aggregate statistics are kept until
+ * the next call to log.
+ *
+ * @author bisk1
+ */
+public final class LexicalPruning {
+  private static final AtomicLong tokens = new AtomicLong(0);
+  private static final AtomicLong candidates = new AtomicLong(0);
+  private static final AtomicLong kept = new AtomicLong(0);
+  private static final DoubleAdder prunedMass = new DoubleAdder();
+
+  private LexicalPruning() {}
+
+  /**
+   * @param model Model used for scoring
+   * @return If pruning is turned on and the model has parameters to prune with
+   */
+  static boolean active(Model<?> model) {
+    return (Configuration.lexicalBeta > 0 || Configuration.lexicalTopK > 0) && model.initialized();
+  }
+
+  /**
+   * Filters the lexical chart items of a single token
+   * @param model Model used for scoring
+   * @param items Candidate lexical items for the token
+   * @return Items which survive the beam/top-k
+   */
+  static <G extends Grammar> List<ChartItem<G>> prune(Model<G> model, List<ChartItem<G>> items) {
+    if (items.size() < 2) {
+      return items;
+    }
+    int n = items.size();
+    double[] scores = new double[n];
+    Integer[] order = new Integer[n];
+    for (int i = 0; i < n; ++i) {
+      Double score = model.lexicalScore(items.get(i));
+      if (score == null) {
+        return items;
+      }
+      scores[i] = score;
+      order[i] = i;
+    }
+    Arrays.sort(order, Comparator.comparingDouble(i -> -scores[i]));
+
+    double best = scores[order[0]];
+    double beta = Math.log(Configuration.lexicalBeta);
+    int limit = Configuration.lexicalTopK > 0 ? Math.min(n, Configuration.lexicalTopK) : n;
+    List<ChartItem<G>> survivors = new ArrayList<>(limit);
+    double[] keptScores = new double[limit];
+    for (int r = 0; r < limit; ++r) {
+      int i = order[r];
+      if (beta != Log.ZERO && scores[i] < Log.mul(best, beta)) {
+        break;
+      }
+      keptScores[survivors.size()] = scores[i];
+      survivors.add(items.get(i));
+    }
+
+    tokens.incrementAndGet();
+    candidates.addAndGet(n);
+    kept.addAndGet(survivors.size());
+    double total = Log.sum(scores);
+    if (total != Log.ZERO) {
+      prunedMass.add(1.0 - Math.exp(Log.div(Log.sum(Arrays.copyOf(keptScores, survivors.size())), total)));
+    }
+    return survivors;
+  }
+
+  /**
+   * Logs and resets the accumulated pruning statistics
+   * @param name Phase the statistics were collected for
+   */
+  public static void log(String name) {
+    long t = tokens.getAndSet(0);
+    long c = candidates.getAndSet(0);
+    long k = kept.getAndSet(0);
+    double mass = prunedMass.sumThenReset();
+    if (t == 0) {
+      return;
+    }
+    Logger.logln(String.format("Lexical pruning (%s): %d tokens, %.2f -> %.2f cats/token, pruned mass %.5f",
+        name, t, (double) c / t, (double) k / t, mass / t));
+  }
+}
@@ -0,0 +1,94 @@
+package CCGInduction.parser;
+
+import CCGInduction.data.Sentence;
+import CCGInduction.grammar.Grammar;
+import CCGInduction.models.Model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Presents a fixed number of charts at a time from an underlying collection,
+ * so a pool of Mappers processes one mini-batch and then returns.  The
+ * reset_index() the Mappers issue when done is ignored; nextBatch() and
+ * rewind() decide where the next pool starts.
+ *
+ * @author bisk1
+ * @param <G>
+ * @param <T>
+ */
+public class MiniBatchCharts<G extends Grammar, T extends Chart<G>> extends Charts<G, T> {
+  private final Charts<G, T> source;
+  private final int batchSize;
+  private final AtomicInteger requested = new AtomicInteger(0);
+  private final AtomicInteger returned = new AtomicInteger(0);
+  private volatile boolean exhausted = false;
+
+  /**
+   * @param source Charts to be batched
+   * @param batchSize Charts per batch
+   */
+  public MiniBatchCharts(Charts<G, T> source, int batchSize) {
+    super(source.model, source.sentences);
+    this.source = source;
+    this.batchSize = batchSize;
+  }
+
+  @Override
+  public T next() throws Exception {
+    if (exhausted || requested.getAndIncrement() >= batchSize) {
+      return null;
+    }
+    T chart = source.next();
+    if (chart == null) {
+      exhausted = true;
+    } else {
+      returned.incrementAndGet();
+    }
+    return chart;
+  }
+
+  /**
+   * Charts are built exactly as the underlying collection builds them
+   */
+  @Override
+  T createChart(Model<G> global_model, Sentence sent) {
+    return source.createChart(global_model, sent);
+  }
+
+  /**
+   * Batches are only advanced by nextBatch()
+   */
+  @Override
+  public void reset_index() {}
+
+  /**
+   * Moves on to the next batch
+   */
+  public void nextBatch() {
+    requested.set(0);
+    returned.set(0);
+  }
+
+  /**
+   * Starts a new pass over the underlying charts
+   */
+  public void rewind() {
+    nextBatch();
+    exhausted = false;
+    source.reset_index();
+  }
+
+  /**
+   * @return Charts handed out in the current batch
+   */
+  public int returned() {
+    return returned.get();
+  }
+
+  /**
+   * @return If the underlying charts have all been read this pass
+   */
+  public boolean exhausted() {
+    return exhausted;
+  }
+}
@@ -3,6 +3,7 @@ package CCGInduction.parser;
 import CCGInduction.grammar.Grammar;
 import CCGInduction.models.Model;
 import CCGInduction.utils.Mapper;
+import CCGInduction.utils.Metrics;
 
 import java.util.ArrayList;
 
@@ -30,7 +31,27 @@ public class Parser<G extends Grammar, C extends Chart<G>> extends Mapper<G,C> {
 
   @Override
   protected void map(C chart) throws Exception {
+    long start = Metrics.start();
     this.parser.parse(localModel, chart);
+    if (Metrics.enabled()) {
+      Metrics.time("parse.ms.length." + chart.getLength(), start);
+      Metrics.count(chart.success() ? "parse.success" : "parse.failure", 1);
+      if (chart.success()) {
+        long items = 0, backpointers = 0;
+        for (Cell<G>[] row : chart.chart) {
+          for (Cell<G> cell : row) {
+            if (cell != null) {
+              for (ChartItem<G> item : cell.values()) {
+                ++items;
+                backpointers += item.children.size();
+              }
+            }
+          }
+        }
+        Metrics.observe("chart.items", items);
+        Metrics.observe("chart.backpointers", backpointers);
+      }
+    }
   }
 
   public static class FailedParsingAssertion extends AssertionError {
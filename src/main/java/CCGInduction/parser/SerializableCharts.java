@@ -1,5 +1,7 @@
 package CCGInduction.parser;
 
+import CCGInduction.Configuration;
+import CCGInduction.data.Sentence;
 import CCGInduction.grammar.Grammar;
 import CCGInduction.utils.Logger;
 import CCGInduction.data.Sentences;
@@ -9,15 +11,20 @@ import org.nustaq.serialization.FSTObjectInput;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 
 /**
  * @author bisk1
  * A collection of charts which allows for storing the serialized charts in
- * memory
+ * memory, or when Configuration.chartStore is set, in a file on disk which is
+ * read back in mini-batches so memory use does not grow with the corpus
  * @param <G>
  * @param <T>
  */
@@ -33,6 +40,17 @@ public abstract class SerializableCharts<G extends Grammar, T extends Chart<G>>
   private final AtomicInteger total = new AtomicInteger(0);
   private final AtomicInteger current_index = new AtomicInteger(0);
   private boolean read_from_memory = false;
+  // Disk-backed replacement for saved_data ( null when in memory )
+  private ChartStore store = null;
+  // Records read from the store but not yet returned
+  private final MiniBatch batch = new MiniBatch();
+  // Sentence key -> id of the chart which stands for it ( while parsing )
+  private final HashMap<Key, Integer> unique = new HashMap<>();
+  // Sentence key -> number of sentences with that key ( while parsing )
+  private final HashMap<Key, Integer> occurrences = new HashMap<>();
+  // Chart id -> number of sentences it stands for, when more than one
+  private final ConcurrentHashMap<Integer, Integer> weights = new ConcurrentHashMap<>();
+  private int duplicates = 0;
   /**
    * Creates container for Chart objects which are serializable.  Data is pulled
    * from Sentences object
@@ -69,12 +87,21 @@ public abstract class SerializableCharts<G extends Grammar, T extends Chart<G>>
   SerializableCharts(SerializableCharts<G, T> chartsToCopy) {
     super(chartsToCopy.model, chartsToCopy.sentences);
     this.total.set(chartsToCopy.total.get());
-    this.saved_data = Arrays.copyOf(chartsToCopy.saved_data, this.total.get());
+    this.saved_data = Arrays.copyOf(chartsToCopy.saved_data, chartsToCopy.saved_data.length);
+    if (chartsToCopy.store != null) {
+      this.store = new ChartStore(chartsToCopy.store);
+    }
+    this.weights.putAll(chartsToCopy.weights);
     this.read_from_memory = true;
   }
 
   public void clear() {
     saved_data = new byte[0][0];
+    weights.clear();
+    if (store != null) {
+      store.delete();
+      store = null;
+    }
     total.set(0);
     reset_index();
     read_from_memory = false;
@@ -83,23 +110,135 @@ public abstract class SerializableCharts<G extends Grammar, T extends Chart<G>>
   @Override
   public T next() throws Exception {
     if (read_from_memory) {
-      int index = this.current_index.getAndIncrement();
-      if (index >= this.total.get()) {
-        return null;
+      byte[] next;
+      int index;
+      if (store != null) {
+        if ((next = nextFromStore()) == null) {
+          return null;
+        }
+        index = this.current_index.getAndIncrement();
+      } else {
+        index = this.current_index.getAndIncrement();
+        if (index >= this.total.get()) {
+          return null;
+        }
+        next = this.saved_data[index];
       }
 
       Logger.percent(index);
-      byte[] next = this.saved_data[index];
       BufferedInputStream BIS = new BufferedInputStream(new GZIPInputStream(new ByteArrayInputStream(next)));
       FSTObjectInput ois = conf.get().getObjectInput(BIS);
 
       @SuppressWarnings("unchecked")
       T chart = (T) ois.readObject();
       BIS.close();
+      chart.weight = weights.getOrDefault(chart.id, 1);
 
       return chart;
     }
-    return super.next();
+    Sentence sentence = nextUniqueSentence();
+    if (sentence == null) {
+      return null;
+    }
+    T chart = createChart(model, sentence);
+    chart.weight = weights.getOrDefault(sentence.id, 1);
+    return chart;
+  }
+
+  /**
+   * @return If sentences with the same deduplicationKey are parsed once and
+   * weighted
+   */
+  boolean deduplicating() {
+    return false;
+  }
+
+  /**
+   * Key identifying sentences which produce identical charts, so they can be
+   * parsed once and weighted.  Sentences with a null key are never merged.
+   * @param sentence Sentence
+   * @return Key or null
+   */
+  long[] deduplicationKey(Sentence sentence) {
+    return null;
+  }
+
+  /**
+   * Returns the next sentence whose key has not been seen this pass.  The
+   * sentences are counted first, so the chart of the first sentence with a
+   * key already carries its full weight while it is parsed ( uniform prior
+   * counts are accumulated during parsing ).
+   * @return Sentence or null when the data has been read
+   */
+  private Sentence nextUniqueSentence() {
+    if (!deduplicating()) {
+      return sentences.next();
+    }
+    synchronized (unique) {
+      if (occurrences.isEmpty()) {
+        countOccurrences();
+      }
+    }
+    Sentence sentence;
+    while ((sentence = sentences.next()) != null) {
+      long[] values = deduplicationKey(sentence);
+      if (values == null) {
+        return sentence;
+      }
+      Key key = new Key(values);
+      synchronized (unique) {
+        if (unique.putIfAbsent(key, sentence.id) == null) {
+          int count = occurrences.get(key);
+          if (count > 1) {
+            weights.put(sentence.id, count);
+          }
+          return sentence;
+        }
+        ++duplicates;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Reads the sentences once to count how many share each key, then rewinds
+   */
+  private void countOccurrences() {
+    Sentence sentence;
+    long[] values;
+    while ((sentence = sentences.next()) != null) {
+      if ((values = deduplicationKey(sentence)) != null) {
+        occurrences.merge(new Key(values), 1, Integer::sum);
+      }
+    }
+    sentences.reset_index();
+  }
+
+  /**
+   * Returns the next record of the current mini-batch, reading a new batch
+   * from the store once it has been used up.  Deserialization happens
+   * outside of the lock.
+   * @return Serialized chart or null if the store has been read
+   * @throws IOException
+   */
+  private synchronized byte[] nextFromStore() throws IOException {
+    if (batch.position == batch.count) {
+      batch.count = store.read(batch.records);
+      batch.position = 0;
+      if (batch.count == 0) {
+        return null;
+      }
+    }
+    byte[] next = batch.records[batch.position];
+    batch.records[batch.position++] = null;
+    return next;
+  }
+
+  /**
+   * @return If serialized charts are written to disk rather than memory
+   */
+  boolean onDisk() {
+    return Configuration.chartStore != null;
   }
 
   /**
@@ -113,19 +252,51 @@ public abstract class SerializableCharts<G extends Grammar, T extends Chart<G>>
    */
   synchronized void readFromMemory() {
     this.read_from_memory = true;
+    synchronized (unique) {
+      if (duplicates > 0) {
+        Logger.logln("\rDeduplicated:", duplicates + " sentences into " + weights.size() + " weighted charts");
+      }
+      unique.clear();
+      occurrences.clear();
+      duplicates = 0;
+    }
   }
 
   @Override
   public void reset_index() {
     super.reset_index();
     this.current_index.set(0);
+    // Weights are recomputed on every pass over the sentences
+    if (!read_from_memory) {
+      synchronized (unique) {
+        unique.clear();
+        occurrences.clear();
+        weights.clear();
+        duplicates = 0;
+      }
+    }
+    if (store != null) {
+      store.rewind();
+    }
+    synchronized (this) {
+      batch.position = 0;
+      batch.count = 0;
+    }
   }
 
   /**
    * Adds data to the internally stored byte[] of serialized charts
    * @param new_data Data to incorporate
    */
-  synchronized void addData(ArrayList<byte[]> new_data) {
+  synchronized void addData(List<byte[]> new_data) throws IOException {
+    if (onDisk()) {
+      if (store == null) {
+        store = new ChartStore(Configuration.chartStore);
+      }
+      store.append(new_data);
+      this.total.addAndGet(new_data.size());
+      return;
+    }
     int offset = this.saved_data.length;
     this.saved_data = Arrays.copyOf(this.saved_data,
         this.saved_data.length + new_data.size());
@@ -139,7 +310,20 @@ public abstract class SerializableCharts<G extends Grammar, T extends Chart<G>>
    * Merge parsed charts that have been serialized with the existing data
    * @param moreCharts Additional charts
    */
-  public synchronized void addData(SerializableCharts<G, T> moreCharts) {
+  public synchronized void addData(SerializableCharts<G, T> moreCharts) throws IOException {
+    if (onDisk() || moreCharts.store != null) {
+      addData(Arrays.asList(moreCharts.saved_data));
+      if (moreCharts.store != null) {
+        ChartStore reader = new ChartStore(moreCharts.store);
+        byte[][] batch = new byte[Configuration.miniBatchSize][];
+        int read;
+        while ((read = reader.read(batch)) > 0) {
+          addData(Arrays.asList(batch).subList(0, read));
+        }
+        reader.rewind();
+      }
+      return;
+    }
     int offset = this.saved_data.length;
     this.saved_data = Arrays.copyOf(this.saved_data,
         this.saved_data.length + moreCharts.saved_data.length);
@@ -148,4 +332,35 @@ public abstract class SerializableCharts<G extends Grammar, T extends Chart<G>>
     this.total.set(this.saved_data.length);
   }
 
+  /**
+   * Hashable wrapper of a deduplication key
+   */
+  private static final class Key {
+    private final long[] values;
+    private final int hash;
+
+    Key(long[] values) {
+      this.values = values;
+      this.hash = Arrays.hashCode(values);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Key && Arrays.equals(values, ((Key) obj).values);
+    }
+  }
+
+  /**
+   * Fixed size buffer of serialized charts read from the store
+   */
+  private static final class MiniBatch {
+    final byte[][] records = new byte[Configuration.miniBatchSize][];
+    int position = 0;
+    int count = 0;
+  }
 }
@@ -1,7 +1,9 @@
 package CCGInduction.parser;
 
+import CCGInduction.Configuration;
 import CCGInduction.grammar.Grammar;
 import CCGInduction.models.Model;
+import CCGInduction.utils.Metrics;
 import org.nustaq.serialization.FSTConfiguration;
 import org.nustaq.serialization.FSTObjectOutput;
 
@@ -57,6 +59,13 @@ public class SerializationParser<G extends Grammar, C extends Chart<G>> extends
       oos.flush();
       buffered.close();
       serialized_data.add(bos.toByteArray());
+      Metrics.observe("serialization.chart_bytes", bos.size());
+      // Disk-backed charts are handed over a mini-batch at a time
+      if (serialized_data.size() >= Configuration.miniBatchSize
+          && ((SerializableCharts<G,C>)charts).onDisk()) {
+        ((SerializableCharts<G,C>)charts).addData(serialized_data);
+        serialized_data.clear();
+      }
     }
   }
 
@@ -70,8 +79,8 @@ public class SerializationParser<G extends Grammar, C extends Chart<G>> extends
   @Override
   public synchronized void cleanup() {
     try {
-      charts.reset_index();
       ((SerializableCharts<G,C>)charts).readFromMemory();
+      charts.reset_index();
       globalModel.fixedGrammar = true;
     } catch (Exception e) {
       this.thrown_exceptions.add(e);
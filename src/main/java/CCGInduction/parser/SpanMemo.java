@@ -0,0 +1,349 @@
+package CCGInduction.parser;
+
+import CCGInduction.Configuration;
+import CCGInduction.grammar.Grammar;
+import CCGInduction.grammar.Rule;
+import CCGInduction.grammar.Rule_Type;
+import CCGInduction.ccg.InducedCAT;
+import CCGInduction.utils.Logger;
+import CCGInduction.utils.Metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cross-chart memo of binary CYK cells for a single parse pass.  The contents
+ * of cell (i,j) only depend on the tokens i..j and on the punctuation,
+ * bracketing and entity constraints of the spans inside it, so a cell whose
+ * signature has been seen in another chart is rebuilt from a recorded copy
+ * instead of trying every split and category pair.  Entries are kept in
+ * segmented LRU maps and evicted once capacity is reached.
+ *
+ * @author bisk1
+ */
+public class SpanMemo {
+  /** Longest span ( in tokens ) which is memoized */
+  private static final int MAX_SPAN = 16;
+  private static final int SEGMENTS = 16;
+  private static final LongAdder hits = Metrics.counter("parser.spanMemo.hit");
+  private static final LongAdder misses = Metrics.counter("parser.spanMemo.miss");
+
+  private final Segment[] segments = new Segment[SEGMENTS];
+  private final LongAdder passHits = new LongAdder();
+  private final LongAdder passMisses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * @param capacity Maximum number of cells to keep
+   */
+  public SpanMemo(int capacity) {
+    int perSegment = Math.max(1, capacity / SEGMENTS);
+    for (int i = 0; i < SEGMENTS; ++i) {
+      segments[i] = new Segment(perSegment);
+    }
+  }
+
+  /**
+   * Signature of span (i,j): per token the word, tag, assigned categories and
+   * sentence boundary/entity flags, followed by one bit per inner span for
+   * each active constraint
+   * @param chart Chart
+   * @param i Start of span
+   * @param j End of span
+   * @return Key or null if the span is not memoized
+   */
+  Key key(Chart<?> chart, int i, int j) {
+    int n = j - i + 1;
+    if (n > MAX_SPAN) {
+      return null;
+    }
+    ArrayList<Long> tokens = new ArrayList<>(4 * n);
+    for (int t = i; t <= j; ++t) {
+      tokens.add(chart.words[t]);
+      tokens.add(chart.tags[t]);
+      long flags = (t == chart.sentence.firstWord ? 1 : 0) | (t == chart.sentence.lastWord ? 2 : 0);
+      if (Configuration.hardEntityNConstraints && chart.fullEntity(t, t)) {
+        flags |= 4;
+      }
+      tokens.add(flags);
+      long[] cats = chart.sentence.get(t).cat();
+      tokens.add(cats == null ? 0L : cats.length);
+      if (cats != null) {
+        for (long cat : cats) {
+          tokens.add(cat);
+        }
+      }
+    }
+    int spans = n * (n - 1) / 2;
+    int bits = 3 * spans;
+    long[] key = new long[1 + tokens.size() + (bits + 63) / 64];
+    key[0] = n;
+    for (int t = 0; t < tokens.size(); ++t) {
+      key[1 + t] = tokens.get(t);
+    }
+    int offset = 64 * (1 + tokens.size());
+    int bit = 0;
+    for (int a = i; a <= j; ++a) {
+      for (int b = a + 1; b <= j; ++b) {
+        if (chart.punctuationBracketing(a, b)) {
+          set(key, offset + bit);
+        }
+        if (Configuration.hardBracketConstraints && chart.crossingBrackets(a, b)) {
+          set(key, offset + bit + 1);
+        }
+        if (Configuration.hardEntityNConstraints && chart.fullEntity(a, b)) {
+          set(key, offset + bit + 2);
+        }
+        bit += 3;
+      }
+    }
+    return new Key(key);
+  }
+
+  private static void set(long[] key, int bit) {
+    key[bit >>> 6] |= 1L << bit;
+  }
+
+  /**
+   * Fills cell (i,j) from the memo
+   * @param key Span signature
+   * @param chart Chart to fill
+   * @param i Start of span
+   * @param j End of span
+   * @return If the cell was found and rebuilt
+   */
+  <G extends Grammar> boolean replay(Key key, Chart<G> chart, int i, int j) {
+    Recipe recipe = segment(key).get(key);
+    if (recipe == null) {
+      miss();
+      return false;
+    }
+    chart.chart[i][j] = new Cell<>(chart, i, j);
+    if (!recipe.replay(chart, chart.chart[i][j])) {
+      miss();
+      return false;
+    }
+    if (Metrics.enabled())
+      hits.increment();
+    passHits.increment();
+    return true;
+  }
+
+  private void miss() {
+    if (Metrics.enabled())
+      misses.increment();
+    passMisses.increment();
+  }
+
+  /**
+   * Records a completed cell
+   * @param key Span signature
+   * @param cell Cell
+   */
+  <G extends Grammar> void put(Key key, Cell<G> cell) {
+    segment(key).put(key, new Recipe(cell));
+  }
+
+  private Segment segment(Key key) {
+    // High bits, the segment's HashMap buckets on the low ones
+    return segments[key.hash >>> 28];
+  }
+
+  /**
+   * Logs the hit rate of the pass
+   * @param name Phase the memo was used for
+   */
+  public void log(String name) {
+    long h = passHits.sum();
+    long m = passMisses.sum();
+    if (h + m == 0) {
+      return;
+    }
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    Logger.logln(String.format("\rSpan memo (%s): %d cells, %.2f%% hit rate, %d evictions",
+        name, size, 100.0 * h / (h + m), evictions.sum()));
+  }
+
+  /**
+   * LRU map guarded by its own lock
+   */
+  private final class Segment extends LinkedHashMap<Key, Recipe> {
+    private static final long serialVersionUID = 1L;
+    private final int capacity;
+
+    Segment(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    public synchronized Recipe get(Object key) {
+      return super.get(key);
+    }
+
+    @Override
+    public synchronized Recipe put(Key key, Recipe value) {
+      return super.put(key, value);
+    }
+
+    @Override
+    public synchronized int size() {
+      return super.size();
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Recipe> eldest) {
+      if (super.size() > capacity) {
+        evictions.increment();
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Hashable wrapper of a span signature
+   */
+  static final class Key {
+    private final long[] values;
+    private final int hash;
+
+    Key(long[] values) {
+      this.values = values;
+      this.hash = Arrays.hashCode(values);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Key && Arrays.equals(values, ((Key) obj).values);
+    }
+  }
+
+  /**
+   * Equivalence class of a chart item, independent of its chart
+   */
+  private static final class Item {
+    final long category;
+    final Rule_Type type;
+    final int arity;
+    final Punctuation punc;
+
+    Item(ChartItem<?> item) {
+      category = item.Category;
+      type = item.type();
+      arity = item.arity();
+      punc = item.punc();
+    }
+
+    <G extends Grammar> ChartItem<G> find(Cell<G> cell) {
+      return cell.getCat(new ChartItem<>(category, type, arity, punc, cell));
+    }
+  }
+
+  /**
+   * Chart independent copy of a cell: its items, their parse counts and
+   * their backpointers with children identified by ( relative ) split point
+   * and equivalence class
+   */
+  private static final class Recipe {
+    private static final byte NO_CAT = 0, SHARED_CAT = 1, COPIED_CAT = 2;
+    final Item[] items;
+    final double[] parses;
+    final byte[] iCATs;
+    final Rule[][] rules;
+    final int[][] splits;
+    final Item[][] left;
+    final Item[][] right;
+
+    <G extends Grammar> Recipe(Cell<G> cell) {
+      ArrayList<ChartItem<G>> values = new ArrayList<>(cell.values());
+      int n = values.size();
+      items = new Item[n];
+      parses = new double[n];
+      iCATs = new byte[n];
+      rules = new Rule[n][];
+      splits = new int[n][];
+      left = new Item[n][];
+      right = new Item[n][];
+      for (int c = 0; c < n; ++c) {
+        ChartItem<G> item = values.get(c);
+        items[c] = new Item(item);
+        parses[c] = item.parses;
+        if (item.iCAT == null) {
+          iCATs[c] = NO_CAT;
+        } else {
+          Grammar grammar = cell.chart.model.grammar;
+          iCATs[c] = item.iCAT == grammar.Categories.get(item.Category) ? SHARED_CAT : COPIED_CAT;
+        }
+        int b = item.children.size();
+        rules[c] = new Rule[b];
+        splits[c] = new int[b];
+        left[c] = new Item[b];
+        right[c] = new Item[b];
+        for (int k = 0; k < b; ++k) {
+          BackPointer<G> bp = item.children.get(k);
+          rules[c][k] = bp.rule;
+          left[c][k] = new Item(bp.leftChild());
+          if (bp.isUnary()) {
+            splits[c][k] = -1;
+          } else {
+            splits[c][k] = bp.leftChild().Y - cell.X;
+            right[c][k] = new Item(bp.rightChild());
+          }
+        }
+      }
+    }
+
+    /**
+     * Recreates the items in cell, whose sub-cells must already be filled
+     * @return False if a child could not be found
+     */
+    <G extends Grammar> boolean replay(Chart<G> chart, Cell<G> cell) {
+      Grammar grammar = chart.model.grammar;
+      ArrayList<ChartItem<G>> created = new ArrayList<>(items.length);
+      for (int c = 0; c < items.length; ++c) {
+        Item key = items[c];
+        ChartItem<G> item = new ChartItem<>(key.category, key.type, key.arity, key.punc, cell);
+        item.parses = parses[c];
+        if (iCATs[c] == SHARED_CAT) {
+          item.iCAT = grammar.Categories.get(key.category);
+        } else if (iCATs[c] == COPIED_CAT) {
+          InducedCAT cat = grammar.Categories.get(key.category);
+          item.iCAT = cat == null ? null : cat.copy();
+        }
+        created.add(cell.addCat(item));
+      }
+      for (int c = 0; c < items.length; ++c) {
+        for (int k = 0; k < rules[c].length; ++k) {
+          ChartItem<G> B, C = null;
+          if (splits[c][k] < 0) {
+            B = left[c][k].find(cell);
+          } else {
+            int split = cell.X + splits[c][k];
+            B = left[c][k].find(chart.chart[cell.X][split]);
+            C = right[c][k].find(chart.chart[split + 1][cell.Y]);
+            if (C == null) {
+              return false;
+            }
+          }
+          if (B == null) {
+            return false;
+          }
+          created.get(c).addChild(rules[c][k], B, C);
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -1,18 +1,16 @@
 package CCGInduction.parser;
 
 import CCGInduction.Configuration;
+import CCGInduction.data.JSON.CoNLLDep;
 import CCGInduction.data.JSON.JSONFormat;
+import CCGInduction.data.JSON.PARGDep;
+import CCGInduction.data.JSON.SynParObj;
 import CCGInduction.grammar.Grammar;
 import CCGInduction.models.Model;
 import CCGInduction.utils.Logger;
-import CCGInduction.utils.TextFile;
+import CCGInduction.utils.OrderedWriter;
 
-import java.io.IOException;
-import java.io.Writer;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author bisk1
@@ -23,19 +21,10 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class TestTimeParser<G extends Grammar, C extends Chart<G>> extends Parser<G, C> {
 
   /**
-   * String queue of printed viterbi parses (hashed by chart id).
-   * This contains AUTO and PARG analyses
+   * Writes the JSON ( and optional AUTO/PARG/CoNLL ) analyses in chart id
+   * order from its own thread
    */
-  private static ConcurrentHashMap<Integer, String> completed_viterbi_parses;
-  /**
-   * File for printing JSON readable parses
-   */
-  private static Writer viterbiFileTestParse;
-  /**
-   * Next chart id to be written to file
-   */
-  private static final AtomicInteger next_index = new AtomicInteger(0);
-  //private static int next_index;
+  private static OrderedWriter output;
   private final String base_filename;
 
   /**
@@ -61,67 +50,81 @@ public class TestTimeParser<G extends Grammar, C extends Chart<G>> extends Parse
       return;
     // Create output files
     Logger.logln("Printing V&C files for " + base_filename);
+    // Never leave a previous test's ( closed ) writer behind
+    output = null;
     try {
-      completed_viterbi_parses = new ConcurrentHashMap<>();
-      viterbiFileTestParse = TextFile.Writer(this.base_filename + ".JSON.gz");
-      next_index.set(0);
+      String[] files = new String[1 + Configuration.testOutput.length];
+      files[0] = this.base_filename + ".JSON.gz";
+      for (int i = 0; i < Configuration.testOutput.length; ++i) {
+        files[i + 1] = this.base_filename + '.' + Configuration.testOutput[i] + ".gz";
+      }
+      output = new OrderedWriter(files, Configuration.testWriterBuffer);
     } catch (Exception e) {
-      this.thrown_exceptions.add(e);
+      // No chart can be written, so don't start parsing
+      throw new IllegalStateException("Cannot open test output " + base_filename, e);
     }
   }
 
   @Override
   public void map(C chart) throws Exception {
-    // Only parse short sentences
-    if (chart.sentence.length_noP() <= Configuration.longestTestSentence) {
-      // Parse the chart
-      super.map(chart);
-      // Score the chart
-      if (chart.success()) {
-        chart.cleanForest(localModel.Test);
-        localModel.inside(chart);
-        // Get TopK
-        chart.TOP.populateTopK(localModel.Test);
-        chart.viterbi(localModel.grammar);
+    String[] records;
+    try {
+      // Only parse short sentences
+      if (chart.sentence.length_noP() <= Configuration.longestTestSentence) {
+        // Parse the chart
+        super.map(chart);
+        // Score the chart
+        if (chart.success()) {
+          chart.cleanForest(localModel.Test);
+          localModel.inside(chart);
+          // Get TopK
+          chart.TOP.populateTopK(localModel.Test);
+          chart.viterbi(localModel.grammar);
+        }
       }
-    }
-
-    if (chart.sentence.JSON == null)
-      JSONFormat.createFromSentence(chart.sentence, localModel.grammar);
-    completed_viterbi_parses.put(chart.id, chart.sentence.JSON.toString());
 
-    // Add ours to queue and check if the next write is ready
-    boolean can_write_more;
-    do {
-      can_write_more = attemptToWrite();
-    } while(can_write_more);
+      if (chart.sentence.JSON == null)
+        JSONFormat.createFromSentence(chart.sentence, localModel.grammar);
+      JSONFormat json = chart.sentence.JSON;
+      records = new String[1 + Configuration.testOutput.length];
+      records[0] = json.toString();
+      SynParObj parse = json.synPars == null || json.synPars.length == 0 ? null : json.synPars[0];
+      for (int i = 0; i < Configuration.testOutput.length; ++i) {
+        records[i + 1] = format(Configuration.testOutput[i], parse, json);
+      }
+    } catch (Exception e) {
+      // This chart's output will never arrive, don't leave the others waiting
+      output.abort(e);
+      throw e;
+    }
+    output.put(chart.id, records);
   }
 
-  private static synchronized boolean attemptToWrite() throws IOException {
-    if (completed_viterbi_parses.containsKey(next_index.intValue())) {
-      // Print JSON object
-      viterbiFileTestParse.write(completed_viterbi_parses.remove(next_index.intValue()) + "\n");
-
-      next_index.incrementAndGet();
-      return completed_viterbi_parses.containsKey(next_index.intValue());
+  /**
+   * Viterbi parse in one of the flat output formats ( AUTO, PARG or CONLL )
+   * @param format Output format
+   * @param parse Top parse ( or null )
+   * @param json Sentence
+   * @return Formatted parse
+   */
+  private static String format(String format, SynParObj parse, JSONFormat json) {
+    switch (format) {
+      case "AUTO":
+        return parse == null || parse.synPar == null ? "%FAIL" : parse.synPar;
+      case "PARG":
+        return JSONFormat.pargString(parse == null || parse.depParse == null ? new PARGDep[0] : parse.depParse, json);
+      case "CONLL":
+        return JSONFormat.conllString(parse == null || parse.conllParse == null ? new CoNLLDep[0] : parse.conllParse, json);
+      default:
+        throw new IllegalArgumentException("Unknown test output: " + format);
     }
-    return false;
   }
 
   @Override
   public synchronized void cleanup() {
     // Close our files
     try {
-      boolean can_write_more;
-      do {
-        can_write_more = attemptToWrite();
-      } while(can_write_more);
-
-      if (!completed_viterbi_parses.isEmpty()) {
-        throw new Exception("Not empty: " + completed_viterbi_parses.keySet().size() + "\n"+
-        next_index.intValue() + "\t" + Arrays.toString(completed_viterbi_parses.keySet().toArray()));
-      }
-      viterbiFileTestParse.close();
+      output.close();
     } catch (Exception e) {
       this.thrown_exceptions.add(e);
     }
@@ -7,6 +7,7 @@ import CCGInduction.parser.Chart;
 import CCGInduction.parser.Charts;
 
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -22,6 +23,7 @@ public abstract class Mapper<G extends Grammar, C extends Chart<G>> implements R
   static final AtomicInteger threads_running = new AtomicInteger(0);
   static final AtomicInteger threads_spawned = new AtomicInteger(0);
   protected static final AtomicBoolean setup = new AtomicBoolean(false);
+  private static final ConcurrentLinkedQueue<Long> finish_times = new ConcurrentLinkedQueue<>();
   protected final Model<G> localModel;
   protected final Model<G> globalModel;
 
@@ -50,16 +52,32 @@ public abstract class Mapper<G extends Grammar, C extends Chart<G>> implements R
       // Synchronized start, waits for a single thread to call setup
       int threads = threads_running.incrementAndGet();
       threads_spawned.incrementAndGet();
-      setup();                            // Synchronized call
-      setup.set(true);
+      // Each mapper is its own monitor, so lock the class for a single setup
+      synchronized (Mapper.class) {
+        setup();
+        setup.set(true);
+      }
       // Process all charts
       C chart;
+      boolean timed = Metrics.enabled();
+      long busy = 0, waiting = 0, start = Metrics.start(), mark = start;
       while ((chart = charts.next()) != null) {
+        long now = timed ? System.nanoTime() : 0L;
+        waiting += now - mark;
         chart.model = localModel;
         map(chart);
+        mark = timed ? System.nanoTime() : 0L;
+        busy += mark - now;
       }
       // Perform a reduce step
       reduce();
+      if (Metrics.enabled()) {
+        String name = "mapper." + getClass().getSimpleName();
+        Metrics.observe(name + ".map.ms", busy / 1e6);
+        Metrics.observe(name + ".next.ms", waiting / 1e6);
+        Metrics.time(name + ".thread.ms", start);
+        finish_times.add(System.nanoTime());
+      }
     } catch (Exception e) {
       e.printStackTrace();
       this.thrown_exceptions.add(e);
@@ -69,6 +87,10 @@ public abstract class Mapper<G extends Grammar, C extends Chart<G>> implements R
     // finished, close out
     if (threads_running.decrementAndGet() == 0
         && threads_spawned.get() == Configuration.threadCount) {
+      // Time threads spent waiting on the slowest thread to finish
+      long last = Metrics.start();
+      for (Long finished; (finished = finish_times.poll()) != null; )
+        Metrics.observe("mapper." + getClass().getSimpleName() + ".idle.ms", (last - finished) / 1e6);
       cleanup();
       setup.set(false);
       threads_spawned.set(0);
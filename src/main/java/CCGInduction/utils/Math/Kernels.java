@@ -0,0 +1,134 @@
+package CCGInduction.utils.Math;
+
+/**
+ * Array at a time log space reductions for the M-step, normalization and the
+ * HMM.  Each kernel is a couple of flat loops over a double[] ( max, then a
+ * sum of exp(x - max) split over independent accumulators ) so that the JIT
+ * can unroll and vectorize them, instead of folding Log.sloppy_add over the
+ * elements one log/exp pair at a time.
+ *
+ * @author bisk1
+ */
+public final class Kernels {
+  private Kernels() {}
+
+  /**
+   * Max-shifted log-sum-exp of array[from,to)
+   *
+   * @param array Log space values
+   * @param from First index
+   * @param to One past the last index
+   * @return log( sum_i exp( array[i] ) )
+   */
+  public static double logSumExp(double[] array, int from, int to) {
+    if (to - from == 1) {
+      return array[from];
+    }
+    double max = max(array, from, to);
+    if (max == Log.ZERO || Double.isInfinite(max)) {
+      return max;
+    }
+    double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+    int i = from;
+    for (; i + 3 < to; i += 4) {
+      s0 += Math.exp(array[i] - max);
+      s1 += Math.exp(array[i + 1] - max);
+      s2 += Math.exp(array[i + 2] - max);
+      s3 += Math.exp(array[i + 3] - max);
+    }
+    for (; i < to; ++i) {
+      s0 += Math.exp(array[i] - max);
+    }
+    return max + Math.log((s0 + s1) + (s2 + s3));
+  }
+
+  /**
+   * @param array Log space values
+   * @return log( sum_i exp( array[i] ) )
+   */
+  public static double logSumExp(double[] array) {
+    return logSumExp(array, 0, array.length);
+  }
+
+  /**
+   * Largest value of array[from,to)
+   *
+   * @param array Values
+   * @param from First index
+   * @param to One past the last index
+   * @return max
+   */
+  public static double max(double[] array, int from, int to) {
+    double max = Double.NEGATIVE_INFINITY;
+    for (int i = from; i < to; ++i) {
+      max = Math.max(max, array[i]);
+    }
+    return max;
+  }
+
+  /**
+   * Normalizes array[from,to) in place ( softmax in log space )
+   *
+   * @param array Log space values
+   * @param from First index
+   * @param to One past the last index
+   * @return Log normalizer which was subtracted
+   */
+  public static double logNormalize(double[] array, int from, int to) {
+    double normalizer = logSumExp(array, from, to);
+    if (normalizer == Log.ZERO || Double.isNaN(normalizer)) {
+      throw new Log.MathException("Invalid normalizer: " + normalizer);
+    }
+    for (int i = from; i < to; ++i) {
+      array[i] -= normalizer;
+    }
+    return normalizer;
+  }
+
+  /**
+   * Log space product of array[from,to), ignoring ZEROs, with compensated
+   * ( Neumaier ) summation in place of sorting the values
+   *
+   * @param array Log space values
+   * @param from First index
+   * @param to One past the last index
+   * @return sum of the non-ZERO values
+   */
+  public static double logProduct(double[] array, int from, int to) {
+    double sum = 0.0;
+    double compensation = 0.0;
+    for (int i = from; i < to; ++i) {
+      double d = array[i];
+      if (d != Log.ZERO) {
+        double t = sum + d;
+        if (Math.abs(sum) >= Math.abs(d)) {
+          compensation += (sum - t) + d;
+        } else {
+          compensation += (d - t) + sum;
+        }
+        sum = t;
+      }
+    }
+    return sum + compensation;
+  }
+
+  /**
+   * Batched digamma: out[i] = digamma( exp( logspace[i] ) ) for i in [0,length).
+   * Values too small to exponentiate give Log.ZERO, as Sample.digamma does.
+   *
+   * @param logspace Log space inputs
+   * @param out Output ( may be logspace )
+   * @param length Number of values
+   */
+  public static void digamma(double[] logspace, double[] out, int length) {
+    for (int i = 0; i < length; ++i) {
+      if (logspace[i] == Log.ZERO) {
+        throw new Log.MathException("Invalid input: " + logspace[i]);
+      }
+      out[i] = Math.exp(logspace[i]);
+    }
+    for (int i = 0; i < length; ++i) {
+      out[i] = out[i] <= 0.0 ? Log.ZERO : Sample.digammaReal(out[i]);
+    }
+  }
+}
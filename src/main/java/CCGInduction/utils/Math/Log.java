@@ -200,28 +200,8 @@ public final strictfp class Log {
       throw new MathException("Can't sum nothing");
     }
 
-    if (array.length == 1)
-      return array[0];
-
-    // Find Max
-    double max = array[0];
-    for (double d : array) {
-      if (d > max) {
-        max = d;
-      }
-    }
-
-    if (equal(max, Log.ZERO)) {
-      return Log.ZERO;
-    }
-
-    double sum = 0.0;
-    for (double d : array) {
-      sum += /* Strict */Math.exp(d - max);
-    }
-
-    double d = max + /* Strict */Math.log(sum);
-    if (equal(d, Log.ONE)) {
+    double d = Kernels.logSumExp(array, 0, array.length);
+    if (array.length > 1 && equal(d, Log.ONE)) {
       d = Log.ONE;
     }
     return d;
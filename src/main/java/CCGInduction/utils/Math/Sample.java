@@ -169,7 +169,16 @@ public final class Sample {
     double x = Math.exp(logspace);
     if (x <= 0.0)
       return Log.ZERO;
+    return digammaReal(x);
+  }
 
+  /**
+   * Compute the digamma of a ( positive ) real space value
+   *
+   * @param x Input value
+   * @return digamma(x)
+   */
+  static double digammaReal(double x) {
     /* Initialize. */
     double y = x;
     double value = 0.0;
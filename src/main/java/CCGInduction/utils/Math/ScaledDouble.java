@@ -0,0 +1,163 @@
+package CCGInduction.utils.Math;
+
+import java.io.Serializable;
+
+/**
+ * Real space alternative to LogDouble: a value is stored as mantissa *
+ * 2^exponent with the mantissa kept in [1,2).  Products only multiply
+ * mantissas and add exponents, sums align exponents with Math.scalb, so
+ * neither needs exp/log.  Conversion from and to log space costs one
+ * transcendental call each.
+ *
+ * @author bisk1
+ */
+public final class ScaledDouble implements Serializable {
+  private static final long serialVersionUID = 5012015L;
+  private static final double LN2 = Math.log(2);
+  private static final double LOG2E = 1.0 / LN2;
+
+  private double mantissa = 0.0;
+  private int exponent = 0;
+
+  /**
+   * Create ScaledDouble with value ZERO
+   */
+  public ScaledDouble() {}
+
+  /**
+   * Create ScaledDouble with value mantissa * 2^exponent
+   * @param mantissa Mantissa ( any non-negative value )
+   * @param exponent Power of two
+   */
+  public ScaledDouble(double mantissa, int exponent) {
+    set(mantissa, exponent);
+  }
+
+  /**
+   * Create ScaledDouble from a log space value
+   * @param logValue Natural log of the value
+   * @return ScaledDouble
+   */
+  public static ScaledDouble fromLog(double logValue) {
+    ScaledDouble value = new ScaledDouble();
+    if (logValue != Log.ZERO) {
+      int e = exponentOf(logValue);
+      value.set(mantissaOf(logValue, e), e);
+    }
+    return value;
+  }
+
+  /**
+   * Power of two of a ( non-zero ) log space value
+   * @param logValue Natural log of the value
+   * @return floor( log2( value ) )
+   */
+  public static int exponentOf(double logValue) {
+    return (int) Math.floor(logValue * LOG2E);
+  }
+
+  /**
+   * Mantissa of a log space value for the given power of two
+   * @param logValue Natural log of the value
+   * @param exponent From exponentOf( logValue )
+   * @return value / 2^exponent
+   */
+  public static double mantissaOf(double logValue, int exponent) {
+    return Math.exp(logValue - exponent * LN2);
+  }
+
+  /**
+   * Assigns a specific value
+   * @param m Mantissa
+   * @param e Power of two
+   */
+  public void set(double m, int e) {
+    mantissa = m;
+    exponent = e;
+    normalize();
+  }
+
+  /**
+   * Increment value by m * 2^e
+   * @param m Mantissa
+   * @param e Power of two
+   */
+  public void add(double m, int e) {
+    if (m == 0.0) {
+      return;
+    }
+    if (mantissa == 0.0) {
+      mantissa = m;
+      exponent = e;
+    } else if (e > exponent) {
+      // Terms more than 2^1074 smaller disappear, as with Log.sloppy_add
+      mantissa = Math.scalb(mantissa, exponent - e) + m;
+      exponent = e;
+    } else {
+      mantissa += Math.scalb(m, e - exponent);
+    }
+    normalize();
+  }
+
+  private void normalize() {
+    if (mantissa == 0.0) {
+      exponent = 0;
+      return;
+    }
+    int shift = Math.getExponent(mantissa);
+    if (shift != 0) {
+      mantissa = Math.scalb(mantissa, -shift);
+      exponent += shift;
+    }
+  }
+
+  /**
+   * @return Mantissa in [1,2) ( or 0 )
+   */
+  public double mantissa() {
+    return mantissa;
+  }
+
+  /**
+   * @return Power of two
+   */
+  public int exponent() {
+    return exponent;
+  }
+
+  /**
+   * @return If the value is ZERO
+   */
+  public boolean isZero() {
+    return mantissa == 0.0;
+  }
+
+  /**
+   * @return Natural log of the value
+   */
+  public double log() {
+    if (mantissa == 0.0) {
+      return Log.ZERO;
+    }
+    return Math.log(mantissa) + exponent * LN2;
+  }
+
+  /**
+   * Log of the ratio of m * 2^e to this value, as for a posterior count
+   * @param m Mantissa of numerator
+   * @param e Power of two of numerator
+   * @return log( ( m * 2^e ) / this )
+   */
+  public double logRatio(double m, int e) {
+    double ratio = Math.scalb(m / mantissa, e - exponent);
+    if (ratio < Double.MIN_NORMAL || Double.isInfinite(ratio)) {
+      return Math.log(m / mantissa) + (e - exponent) * LN2;
+    }
+    return Math.log(ratio);
+  }
+
+  @Override
+  public String toString() {
+    return Double.toString(log());
+  }
+}
@@ -0,0 +1,201 @@
+package CCGInduction.utils;
+
+import CCGInduction.Configuration;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process wide counters and histograms for profiling the hot paths of an
+ * experiment ( parsing, inside-outside, M-step, Mapper threads, GC ).  Values
+ * accumulate until write() dumps them to Folder/Metrics.[n].[action].json and
+ * resets them, giving one machine readable file per action.  Nothing is
+ * recorded unless Configuration.metrics is set.
+ *
+ * @author bisk1
+ */
+public final class Metrics {
+  private static final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+  private static final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+  private static final Gson gson = new GsonBuilder().setPrettyPrinting().serializeSpecialFloatingPointValues().create();
+  private static int writes = 0;
+  private static long lastWrite = System.nanoTime();
+  private static long lastGCCount = 0;
+  private static long lastGCTime = 0;
+
+  private Metrics() {}
+
+  /**
+   * @return If metrics should be recorded
+   */
+  public static boolean enabled() {
+    return Configuration.metrics;
+  }
+
+  /**
+   * Returns a counter which callers on hot paths can hold on to.  The same
+   * instance is reset ( not replaced ) on write.
+   * @param name Counter name
+   * @return Counter
+   */
+  public static LongAdder counter(String name) {
+    return counters.computeIfAbsent(name, k -> new LongAdder());
+  }
+
+  /**
+   * Add delta to a named counter
+   * @param name Counter name
+   * @param delta Value to add
+   */
+  public static void count(String name, long delta) {
+    if (enabled()) {
+      counter(name).add(delta);
+    }
+  }
+
+  /**
+   * Record a single observation in a named histogram
+   * @param name Histogram name
+   * @param value Observation
+   */
+  public static void observe(String name, double value) {
+    if (enabled()) {
+      histograms.computeIfAbsent(name, k -> new Histogram()).add(value);
+    }
+  }
+
+  /**
+   * @return Start time for time(), or 0 without reading the clock when
+   *         metrics are disabled
+   */
+  public static long start() {
+    return enabled() ? System.nanoTime() : 0L;
+  }
+
+  /**
+   * Record the milliseconds elapsed since start ( from start() )
+   * @param name Histogram name
+   * @param start Start time in nanoseconds
+   */
+  public static void time(String name, long start) {
+    if (enabled()) {
+      observe(name, (System.nanoTime() - start) / 1e6);
+    }
+  }
+
+  /**
+   * Writes all metrics recorded since the previous write and resets them
+   * @param action Name of the action the metrics belong to
+   */
+  public static synchronized void write(String action) {
+    if (!enabled()) {
+      return;
+    }
+    long now = System.nanoTime();
+    long gcCount = 0, gcTime = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      gcCount += Math.max(0, gc.getCollectionCount());
+      gcTime += Math.max(0, gc.getCollectionTime());
+    }
+
+    TreeMap<String, Object> out = new TreeMap<>();
+    out.put("action", action);
+    out.put("index", writes);
+    out.put("wall_ms", (now - lastWrite) / 1e6);
+    out.put("gc.collections", gcCount - lastGCCount);
+    out.put("gc.pause_ms", gcTime - lastGCTime);
+    out.put("threads", Configuration.threadCount);
+
+    TreeMap<String, Object> counts = new TreeMap<>();
+    for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+      long value = entry.getValue().sumThenReset();
+      if (value != 0) {
+        counts.put(entry.getKey(), value);
+      }
+    }
+    // Derived cache hit rates for every *.hit / *.miss pair
+    TreeMap<String, Object> rates = new TreeMap<>();
+    for (String name : counts.keySet()) {
+      if (name.endsWith(".hit")) {
+        String prefix = name.substring(0, name.length() - 4);
+        long hit = (Long) counts.get(name);
+        long miss = counts.containsKey(prefix + ".miss") ? (Long) counts.get(prefix + ".miss") : 0;
+        rates.put(prefix + ".hit_rate", (double) hit / (hit + miss));
+      }
+    }
+    counts.putAll(rates);
+    out.put("counters", counts);
+
+    TreeMap<String, Object> hists = new TreeMap<>();
+    for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+      Histogram h = entry.getValue().snapshotAndReset();
+      if (h.count > 0) {
+        hists.put(entry.getKey(), h);
+      }
+    }
+    out.put("histograms", hists);
+
+    String file = Configuration.Folder + "/Metrics." + writes + "." + action + ".json";
+    try (Writer writer = TextFile.Writer(file)) {
+      writer.write(gson.toJson(out));
+      writer.write('\n');
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    ++writes;
+    lastWrite = now;
+    lastGCCount = gcCount;
+    lastGCTime = gcTime;
+  }
+
+  /**
+   * Summary statistics with power-of-two buckets ( bucket i counts values in
+   * [2^(i-1), 2^i), bucket 0 counts values below 1 ).  Trailing empty buckets
+   * are dropped when written.
+   */
+  static final class Histogram {
+    long count = 0;
+    double sum = 0;
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    double mean = 0;
+    long[] buckets = new long[48];
+
+    synchronized void add(double value) {
+      ++count;
+      sum += value;
+      min = Math.min(min, value);
+      max = Math.max(max, value);
+      int bucket = value < 1 ? 0 : Math.min(buckets.length - 1, 64 - Long.numberOfLeadingZeros((long) value));
+      ++buckets[bucket];
+    }
+
+    synchronized Histogram snapshotAndReset() {
+      Histogram copy = new Histogram();
+      copy.count = count;
+      copy.sum = sum;
+      copy.min = min;
+      copy.max = max;
+      copy.mean = count == 0 ? 0 : sum / count;
+      int used = buckets.length;
+      while (used > 0 && buckets[used - 1] == 0)
+        --used;
+      copy.buckets = Arrays.copyOf(buckets, used);
+      count = 0;
+      sum = 0;
+      min = Double.POSITIVE_INFINITY;
+      max = Double.NEGATIVE_INFINITY;
+      Arrays.fill(buckets, 0);
+      return copy;
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package CCGInduction.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Writes records produced out of order by many threads to one or more
+ * files in index order.  Records wait in a bounded reorder buffer: a thread
+ * whose record is more than capacity ahead of the next one to be written
+ * blocks in put() until the writer catches up.  Formatting, compression and
+ * I/O all happen on the writer's own thread, so producers never contend on
+ * the output stream.
+ *
+ * @author bisk1
+ */
+public class OrderedWriter {
+  private final Writer[] streams;
+  private final String[][] buffer;
+  private final Thread thread;
+  /** Index of the next record to be written */
+  private int next = 0;
+  /** Records in the buffer */
+  private int pending = 0;
+  private boolean closed = false;
+  private Exception failure = null;
+
+  /**
+   * Opens the files ( compressed if ending in .gz ) and starts the writer
+   * @param files One file per stream
+   * @param capacity Size of the reorder buffer
+   */
+  public OrderedWriter(String[] files, int capacity) {
+    streams = new Writer[files.length];
+    for (int i = 0; i < files.length; ++i) {
+      streams[i] = TextFile.Writer(files[i]);
+    }
+    buffer = new String[Math.max(1, capacity)][];
+    thread = new Thread(this::drain, "OrderedWriter:" + files[0]);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Hands over the record with the given index, blocking while it is too far
+   * ahead of the writer
+   * @param index Record index ( 0, 1, 2, ... )
+   * @param records One line per stream ( null writes nothing to that stream )
+   * @throws IOException If the writer failed or was aborted
+   * @throws InterruptedException
+   */
+  public synchronized void put(int index, String... records) throws IOException, InterruptedException {
+    if (records.length != streams.length) {
+      throw new IllegalArgumentException("Expected " + streams.length + " records, got " + records.length);
+    }
+    if (index - next >= buffer.length) {
+      long start = Metrics.start();
+      while (failure == null && index - next >= buffer.length) {
+        wait();
+      }
+      Metrics.time("writer.blocked.ms", start);
+    }
+    if (failure != null) {
+      throw new IOException("Writer failed", failure);
+    }
+    if (index < next || buffer[index % buffer.length] != null) {
+      throw new IOException("Duplicate record: " + index);
+    }
+    buffer[index % buffer.length] = records;
+    ++pending;
+    if (index == next) {
+      notifyAll();
+    }
+  }
+
+  /**
+   * Releases every blocked producer, e.g. when a record will never arrive
+   * @param e Cause
+   */
+  public synchronized void abort(Exception e) {
+    if (failure == null) {
+      failure = e;
+    }
+    notifyAll();
+  }
+
+  private void drain() {
+    ArrayList<String[]> ready = new ArrayList<>();
+    try {
+      while (true) {
+        synchronized (this) {
+          while (failure == null && buffer[next % buffer.length] == null && !closed) {
+            wait();
+          }
+          if (failure != null || buffer[next % buffer.length] == null) {
+            return;
+          }
+          while (buffer[next % buffer.length] != null) {
+            ready.add(buffer[next % buffer.length]);
+            buffer[next % buffer.length] = null;
+            ++next;
+            --pending;
+          }
+          notifyAll();
+        }
+        for (String[] records : ready) {
+          for (int i = 0; i < streams.length; ++i) {
+            if (records[i] != null) {
+              streams[i].write(records[i]);
+              streams[i].write('\n');
+            }
+          }
+        }
+        ready.clear();
+      }
+    } catch (IOException | InterruptedException e) {
+      abort(e);
+    }
+  }
+
+  /**
+   * Writes everything that is contiguous, then closes the files
+   * @throws Exception If records are missing or writing failed
+   */
+  public void close() throws Exception {
+    synchronized (this) {
+      closed = true;
+      notifyAll();
+    }
+    thread.join();
+    for (Writer stream : streams) {
+      stream.close();
+    }
+    synchronized (this) {
+      if (failure != null) {
+        throw failure;
+      }
+      if (pending != 0) {
+        ArrayList<Integer> waiting = new ArrayList<>();
+        for (int i = 0; i < buffer.length; ++i) {
+          if (buffer[i] != null) {
+            waiting.add(next + Math.floorMod(i - next, buffer.length));
+          }
+        }
+        throw new Exception("Not empty: " + pending + "\n" + next + "\t" + Arrays.toString(waiting.toArray()));
+      }
+    }
+  }
+}
@@ -2,6 +2,8 @@ package CCGInduction;
 
 import junit.framework.TestCase;
 
+import java.util.Arrays;
+
 public class ConfigTest extends TestCase {
 
   private String configurationFile;
@@ -14,4 +16,22 @@ public class ConfigTest extends TestCase {
     new Configuration(configurationFile);
     assertTrue(Configuration.testFile[0].equals("src/main/resources/english.example"));
   }
+
+  public void testSnapshot() throws Exception {
+    new Configuration(configurationFile);
+    Configuration.Snapshot snapshot = Configuration.snapshot();
+    double[] alphaPower = Configuration.alphaPower.clone();
+    double logDiscount = Configuration.logDiscount;
+
+    Configuration.set("alphaPower", "[-1,-2,-3]");
+    Configuration.set("discount", "0.5");
+    Configuration.trainFile[0] = "changed";
+    assertEquals(-2.0, Configuration.alphaPower[1]);
+    assertEquals(Math.log(0.5), Configuration.logDiscount);
+
+    snapshot.restore();
+    assertTrue(Arrays.equals(alphaPower, Configuration.alphaPower));
+    assertEquals(logDiscount, Configuration.logDiscount);
+    assertFalse(Configuration.trainFile[0].equals("changed"));
+  }
 }
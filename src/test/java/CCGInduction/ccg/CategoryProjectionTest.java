@@ -0,0 +1,26 @@
+package CCGInduction.ccg;
+
+import junit.framework.TestCase;
+
+public class CategoryProjectionTest extends TestCase {
+  private final InducedCAT Transitive = InducedCAT.valueOf("(S[dcl]\\NP)/NP");   // (S[dcl]\NP)/NP
+  private final InducedCAT ControlVerb = InducedCAT.valueOf("((S\\N)/(S\\N))/N"); // ((S\N)/(S\N))/N
+
+  /**
+   * Test each level drops the information of the level below it
+   * @throws Exception
+   */
+  public void testProject() throws Exception {
+    assertEquals("(S\\NP)/NP", CategoryProjection.FEATURES.project(Transitive));
+    assertEquals("(S\\NP)/NP", CategoryProjection.ATOMS.project(Transitive));
+    assertEquals("(X\\X)/X", CategoryProjection.ARITY.project(Transitive));
+
+    assertEquals("((S\\N)/(S\\N))/N", CategoryProjection.FEATURES.project(ControlVerb));
+    assertEquals("((S\\N)/S)/N", CategoryProjection.ATOMS.project(ControlVerb));
+    assertEquals("((X\\X)/X)/X", CategoryProjection.ARITY.project(ControlVerb));
+
+    // Conjunction is kept at every level
+    InducedCAT conj = InducedCAT.valueOf("S\\N[conj]");
+    assertEquals("X\\X[conj]", CategoryProjection.ARITY.project(conj));
+  }
+}
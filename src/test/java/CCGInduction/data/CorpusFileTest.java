@@ -0,0 +1,51 @@
+package CCGInduction.data;
+
+import CCGInduction.Configuration;
+import CCGInduction.grammar.Grammar;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.Iterator;
+
+public class CorpusFileTest extends TestCase {
+
+  /**
+   * Sentences written to a corpus file must read back token for token
+   * @throws Exception
+   */
+  public void testRoundTrip() throws Exception {
+    new Configuration("config/sample-config.properties");
+    Grammar grammar = new Grammar();
+    Sentences text = new Sentences(grammar, false, 0, 200, "src/main/resources/english.example");
+    text.loadIntoMemory();
+
+    File corpus = File.createTempFile("train", ".corpus");
+    corpus.deleteOnExit();
+    text.writeColumns(corpus.getPath());
+    assertTrue(CorpusFile.is(corpus.getPath()));
+    assertFalse(CorpusFile.is("src/main/resources/english.example"));
+
+    Sentences columns = new Sentences(grammar, false, 0, 200, corpus.getPath());
+    columns.loadIntoMemory();
+    assertEquals(text.size(), columns.size());
+    Iterator<Sentence> read = columns.iterator();
+    for (Sentence expected : text) {
+      Sentence actual = read.next();
+      assertEquals(expected.length_wP(), actual.length_wP());
+      assertEquals(expected.length_noP(), actual.length_noP());
+      for (int i = 0; i < expected.length_wP(); ++i) {
+        LexicalToken e = expected.getWP(i), a = actual.getWP(i);
+        assertEquals(e.word(grammar), a.word(grammar));
+        assertEquals(e.rawWord(), a.rawWord());
+        assertEquals(e.lemma(), a.lemma());
+        assertEquals(e.coarse(), a.coarse());
+        assertEquals(e.fine(), a.fine());
+        assertEquals(e.universal(), a.universal());
+        assertEquals(e.FBid(), a.FBid());
+      }
+      for (int i = 0; i < expected.length_noP(); ++i) {
+        assertEquals(expected.get(i).word(), actual.get(i).word());
+      }
+    }
+  }
+}
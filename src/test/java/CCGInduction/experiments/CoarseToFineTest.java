@@ -0,0 +1,58 @@
+package CCGInduction.experiments;
+
+import CCGInduction.Configuration;
+import CCGInduction.data.JSON.JSONFormat;
+import CCGInduction.utils.Logger;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.ArrayList;
+
+public class CoarseToFineTest extends TestCase {
+
+  /**
+   * Pruning with the default threshold must keep every sentence's best parse
+   * @throws Exception
+   */
+  public void testBestParseKept() throws Exception {
+    String[] args = new String[] {
+        "config/sample-config.properties", "threshold=0.01",
+        "source=induction", "longestSentence=20", "longestTestSentence=200", "threadCount=1",
+        "folder=ExperimentOutput4/",
+        "trainingRegimen=readTrainingFiles,HDPArgumentModel,I,I,B2Mod,IO"
+    };
+    Configuration.Snapshot defaults = Configuration.snapshot();
+    UnsupervisedInduction experiment = new UnsupervisedInduction(new Configuration(args));
+    new File(Configuration.Folder).mkdirs();
+    new Logger(Configuration.Folder + "/Output.log");
+    for (Action action : Configuration.trainingRegimen) {
+      experiment.perform(action);
+    }
+    experiment.perform(Action.Test);
+    Configuration.set("coarseToFine", "ARITY,ATOMS,FEATURES");
+    experiment.perform(Action.Test);
+    Logger.close();
+    defaults.restore();
+
+    ArrayList<JSONFormat> full = JSONFormat.readJSON("ExperimentOutput4/Test.0.1.JSON.gz");
+    ArrayList<JSONFormat> pruned = JSONFormat.readJSON("ExperimentOutput4/Test.1.1.JSON.gz");
+    assertEquals(full.size(), pruned.size());
+    int parsed = 0;
+    for (int i = 0; i < full.size(); ++i) {
+      if (full.get(i).synPars == null) {
+        assertNull(pruned.get(i).synPars);
+        continue;
+      }
+      assertNotNull(pruned.get(i).synPars);
+      assertEquals(full.get(i).synPars[0].synPar, pruned.get(i).synPars[0].synPar);
+      assertEquals(full.get(i).synPars[0].score, pruned.get(i).synPars[0].score, 1e-9);
+      ++parsed;
+    }
+    assertTrue(parsed > 0);
+
+    File dir = new File("ExperimentOutput4");
+    for (File c : dir.listFiles())
+      c.delete();
+    dir.delete();
+  }
+}
@@ -0,0 +1,76 @@
+package CCGInduction.experiments;
+
+import CCGInduction.Configuration;
+import CCGInduction.grammar.Grammar;
+import CCGInduction.learning.CondOutcomePair;
+import CCGInduction.learning.Distribution;
+import CCGInduction.models.Model;
+import CCGInduction.utils.Logger;
+import CCGInduction.utils.TextFile;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+public class DeduplicationTest extends TestCase {
+
+  /**
+   * A corpus repeated three times must train the same model whether or not
+   * identical sentences are collapsed into weighted charts
+   * @throws Exception
+   */
+  public void testDuplicatedCorpus() throws Exception {
+    File corpus = File.createTempFile("duplicated", ".txt");
+    corpus.deleteOnExit();
+    List<String> lines = TextFile.Read("src/main/resources/english.example");
+    Writer writer = TextFile.Writer(corpus.getPath());
+    for (int copy = 0; copy < 3; ++copy) {
+      for (String line : lines) {
+        writer.write(line + "\n");
+      }
+    }
+    writer.close();
+
+    Model<Grammar> full = train(corpus, false);
+    double fullLL = full.LL.prod();
+    Model<Grammar> weighted = train(corpus, true);
+    assertEquals(fullLL, weighted.LL.prod(), 1e-6 * Math.abs(fullLL));
+
+    assertEquals(full.Distributions.size(), weighted.Distributions.size());
+    for (int d = 0; d < full.Distributions.size(); ++d) {
+      Map<CondOutcomePair, ?> expected = full.Distributions.get(d).Counts;
+      Distribution actual = weighted.Distributions.get(d);
+      assertEquals(actual.toString(), expected.keySet(), actual.Counts.keySet());
+      for (CondOutcomePair pair : actual.Counts.keySet()) {
+        double count = full.Distributions.get(d).Counts.get(pair).value();
+        assertEquals(actual.toString(), count, actual.Counts.get(pair).value(), 1e-6 * Math.max(1, Math.abs(count)));
+      }
+    }
+
+    File dir = new File("ExperimentOutput3");
+    for (File c : dir.listFiles())
+      c.delete();
+    dir.delete();
+  }
+
+  private static Model<Grammar> train(File corpus, boolean deduplicate) throws Exception {
+    String[] args = new String[] {
+        "config/sample-config.properties", "threshold=0.01",
+        "source=induction", "longestSentence=20", "threadCount=1",
+        "folder=ExperimentOutput3/",
+        "trainFile=" + corpus.getPath(),
+        "deduplicateCharts=" + deduplicate,
+        "trainingRegimen=readTrainingFiles,HDPArgumentModel,I,I,B2Mod,IO"
+    };
+    UnsupervisedInduction experiment = new UnsupervisedInduction(new Configuration(args));
+    new File(Configuration.Folder).mkdirs();
+    new Logger(Configuration.Folder + "/Output.log");
+    for (Action action : Configuration.trainingRegimen) {
+      experiment.perform(action);
+    }
+    Logger.close();
+    return experiment.model;
+  }
+}
@@ -0,0 +1,169 @@
+package CCGInduction.experiments;
+
+import CCGInduction.Configuration;
+import CCGInduction.grammar.Grammar;
+import CCGInduction.learning.CondOutcomePair;
+import CCGInduction.learning.CountsArray;
+import CCGInduction.learning.Distribution;
+import CCGInduction.models.ArgumentModel;
+import CCGInduction.models.Model;
+import CCGInduction.parser.CoarseToFineChart;
+import CCGInduction.utils.Logger;
+import CCGInduction.utils.Math.LogDouble;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+
+public class HardEMTest extends TestCase {
+  private Configuration.Snapshot defaults;
+  private UnsupervisedInduction experiment;
+
+  @Override
+  public void setUp() throws Exception {
+    String[] args = new String[] {
+        "config/sample-config.properties", "threshold=0.01",
+        "source=induction", "longestSentence=20", "threadCount=1",
+        "folder=ExperimentOutput5/",
+        "trainingRegimen=readTrainingFiles,HDPArgumentModel,I,I,B2Mod,HardEM"
+    };
+    defaults = Configuration.snapshot();
+    experiment = new UnsupervisedInduction(new Configuration(args));
+    new File(Configuration.Folder).mkdirs();
+    new Logger(Configuration.Folder + "/Output.log");
+    for (Action action : Configuration.trainingRegimen) {
+      experiment.perform(action);
+    }
+  }
+
+  @Override
+  public void tearDown() {
+    Logger.close();
+    defaults.restore();
+    File dir = new File("ExperimentOutput5");
+    for (File c : dir.listFiles())
+      c.delete();
+    dir.delete();
+  }
+
+  /**
+   * Only the rules of the best derivation of an ambiguous chart are counted
+   * @throws Exception
+   */
+  public void testBestDerivation() throws Exception {
+    int id = ambiguous();
+    Configuration.set("trainK", "1");
+    CoarseToFineChart<Grammar> chart = chart(id);
+    CountsArray viterbi = counts();
+    experiment.model.viterbiCounts(chart, viterbi);
+    double likelihood = chart.likelihood;
+
+    // Read the best and second best derivations off the k-best list
+    Configuration.set("trainK", "2");
+    chart = chart(id);
+    experiment.model.viterbiCounts(chart, counts());
+    assertEquals(2, chart.TOP.topK.size());
+    assertEquals(likelihood, chart.TOP.topK.get(0).prob(), 1e-9);
+    CountsArray best = derivation(chart, 0);
+    CountsArray second = derivation(chart, 1);
+
+    assertEquals(best, viterbi, true);
+    assertEquals(second, viterbi, false);
+  }
+
+  /**
+   * The k-best derivations share the chart's weight between them
+   * @throws Exception
+   */
+  public void testKBestWeights() throws Exception {
+    int id = ambiguous();
+    Configuration.set("trainK", "5");
+    CoarseToFineChart<Grammar> chart = chart(id);
+    chart.weight = 3;
+    CountsArray counts = counts();
+    experiment.model.viterbiCounts(chart, counts);
+    assertTrue(chart.TOP.topK.size() > 1);
+
+    // Every derivation counts the rule below TOP exactly once
+    Distribution p_Type = distribution("p_Type");
+    double total = 0;
+    for (Map.Entry<CondOutcomePair, LogDouble> count : counts.get(p_Type).entrySet()) {
+      if (Arrays.equals(count.getKey().conditioning_variables, new long[] {chart.TOP.Category})) {
+        total += Math.exp(count.getValue().value());
+      }
+    }
+    assertEquals(3.0, total, 1e-9);
+  }
+
+  /**
+   * @return id of the first chart whose two best derivations differ in
+   * probability ( and so in their rules )
+   */
+  private int ambiguous() throws Exception {
+    Configuration.set("trainK", "2");
+    experiment.charts.reset_index();
+    CoarseToFineChart<Grammar> chart;
+    while ((chart = experiment.charts.next()) != null) {
+      if (chart.success() && !Model.singleDerivation(chart.TOP)) {
+        chart.model = experiment.model;
+        experiment.model.viterbiCounts(chart, counts());
+        if (chart.TOP.topK.get(0).prob() > chart.TOP.topK.get(1).prob() + 1e-9) {
+          return chart.id();
+        }
+      }
+    }
+    fail("No ambiguous chart");
+    return -1;
+  }
+
+  /**
+   * @return A fresh copy of the chart
+   */
+  private CoarseToFineChart<Grammar> chart(int id) throws Exception {
+    experiment.charts.reset_index();
+    CoarseToFineChart<Grammar> chart;
+    while ((chart = experiment.charts.next()) != null && chart.id() != id);
+    assertNotNull(chart);
+    chart.model = experiment.model;
+    return chart;
+  }
+
+  private CountsArray counts() {
+    CountsArray counts = new CountsArray();
+    experiment.model.Distributions.forEach(counts::addDist);
+    return counts;
+  }
+
+  /**
+   * Counts of the index'th best derivation with the chart's weight
+   */
+  private CountsArray derivation(CoarseToFineChart<Grammar> chart, int index) {
+    CountsArray counts = counts();
+    ArgumentModel model = (ArgumentModel) experiment.model;
+    chart.TOP.derivation(index, (parent, bp) -> model.count(parent, bp, Math.log(chart.weight), counts));
+    return counts;
+  }
+
+  private Distribution distribution(String identifier) {
+    for (Distribution d : experiment.model.Distributions) {
+      if (d.identifier.equals(identifier)) {
+        return d;
+      }
+    }
+    fail("No distribution " + identifier);
+    return null;
+  }
+
+  private void assertEquals(CountsArray expected, CountsArray actual, boolean equal) {
+    boolean same = true;
+    for (Distribution d : experiment.model.Distributions) {
+      Map<CondOutcomePair, LogDouble> e = expected.get(d), a = actual.get(d);
+      same &= e.keySet().equals(a.keySet());
+      for (CondOutcomePair pair : e.keySet()) {
+        same &= a.containsKey(pair) && Math.abs(e.get(pair).value() - a.get(pair).value()) < 1e-9;
+      }
+    }
+    assertEquals(equal, same);
+  }
+}
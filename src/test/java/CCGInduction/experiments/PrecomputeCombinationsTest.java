@@ -0,0 +1,67 @@
+package CCGInduction.experiments;
+
+import CCGInduction.Configuration;
+import CCGInduction.grammar.Grammar;
+import CCGInduction.grammar.valid;
+import CCGInduction.models.Model;
+import CCGInduction.utils.IntPair;
+import CCGInduction.utils.Logger;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.Map;
+
+public class PrecomputeCombinationsTest extends TestCase {
+
+  /**
+   * Deciding combinability up front must not add rules, categories or cached
+   * combinations to the grammar, so the trained model is unchanged
+   * @throws Exception
+   */
+  public void testGrammarUnchanged() throws Exception {
+    Model<Grammar> lazy = train(false);
+    Model<Grammar> precomputed = train(true);
+
+    assertEquals(lazy.grammar.Categories.keySet(), precomputed.grammar.Categories.keySet());
+    assertEquals(lazy.grammar.Rules.keySet(), precomputed.grammar.Rules.keySet());
+    for (IntPair pair : lazy.grammar.Rules.keySet()) {
+      assertEquals(lazy.grammar.Rules.get(pair).keySet(), precomputed.grammar.Rules.get(pair).keySet());
+    }
+    // Pairs the table rejects are never tried, so they aren't cached as Invalid
+    for (Map.Entry<IntPair, valid> check : lazy.grammar.combinationCheck.entrySet()) {
+      if (check.getValue() != valid.Invalid) {
+        assertEquals(check.getValue(), precomputed.grammar.combinationCheck.get(check.getKey()));
+      }
+    }
+    for (Map.Entry<IntPair, valid> check : precomputed.grammar.combinationCheck.entrySet()) {
+      assertEquals(check.getValue(), lazy.grammar.combinationCheck.get(check.getKey()));
+    }
+    double LL = lazy.LL.prod();
+    assertEquals(LL, precomputed.LL.prod(), 1e-9 * Math.abs(LL));
+
+    File dir = new File("ExperimentOutput6");
+    for (File c : dir.listFiles())
+      c.delete();
+    dir.delete();
+  }
+
+  private static Model<Grammar> train(boolean precompute) throws Exception {
+    String[] args = new String[] {
+        "config/sample-config.properties", "threshold=0.01",
+        "source=induction", "longestSentence=20", "threadCount=1",
+        "folder=ExperimentOutput6/",
+        "precomputeCombinations=" + precompute,
+        "trainingRegimen=readTrainingFiles,HDPArgumentModel,I,I,B2Mod,IO"
+    };
+    Configuration.Snapshot defaults = Configuration.snapshot();
+    UnsupervisedInduction experiment = new UnsupervisedInduction(new Configuration(args));
+    new File(Configuration.Folder).mkdirs();
+    new Logger(Configuration.Folder + "/Output.log");
+    for (Action action : Configuration.trainingRegimen) {
+      experiment.perform(action);
+    }
+    Logger.close();
+    defaults.restore();
+    return experiment.model;
+  }
+}
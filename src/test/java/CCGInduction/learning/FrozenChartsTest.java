@@ -0,0 +1,66 @@
+package CCGInduction.learning;
+
+import CCGInduction.Configuration;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class FrozenChartsTest extends TestCase {
+  private final List<Distribution> order = new ArrayList<>();
+  private double freezeThreshold, freezeBound;
+  private int freezeInterval;
+
+  protected void setUp() {
+    freezeThreshold = Configuration.freezeThreshold;
+    freezeBound = Configuration.freezeBound;
+    freezeInterval = Configuration.freezeInterval;
+    Configuration.freezeThreshold = 1e-3;
+    Configuration.freezeBound = 0.01;
+    Configuration.freezeInterval = 0;
+  }
+
+  protected void tearDown() {
+    Configuration.freezeThreshold = freezeThreshold;
+    Configuration.freezeBound = freezeBound;
+    Configuration.freezeInterval = freezeInterval;
+  }
+
+  /**
+   * Only the charts which stopped changing are replayed
+   */
+  public void testReplayStable() {
+    FrozenCharts frozen = new FrozenCharts();
+    frozen.nextIteration(0, Double.POSITIVE_INFINITY);
+    frozen.record(0, -10.0, new CountsArray(), order);
+    frozen.record(1, -20.0, new CountsArray(), order);
+    frozen.nextIteration(1, 0.0);
+    frozen.record(0, -10.0, new CountsArray(), order);
+    frozen.record(1, -15.0, new CountsArray(), order);
+
+    frozen.nextIteration(2, 0.0);
+    assertFalse(frozen.thawed());
+    assertEquals(-10.0, frozen.replay(0, new CountsArray(), order));
+    assertNull(frozen.replay(1, new CountsArray(), order));
+    assertEquals(1, frozen.replayed());
+  }
+
+  /**
+   * When every chart is frozen the pass recomputes them all rather than only
+   * replaying counts, which would leave the likelihood exactly unchanged
+   */
+  public void testNoFullyFrozenPass() {
+    FrozenCharts frozen = new FrozenCharts();
+    for (int iteration = 0; iteration < 2; ++iteration) {
+      frozen.nextIteration(iteration, iteration == 0 ? Double.POSITIVE_INFINITY : 0.0);
+      frozen.record(0, -10.0, new CountsArray(), order);
+      frozen.record(1, -20.0, new CountsArray(), order);
+    }
+
+    frozen.nextIteration(2, 0.0);
+    assertTrue(frozen.thawed());
+    assertNull(frozen.replay(0, new CountsArray(), order));
+    assertNull(frozen.replay(1, new CountsArray(), order));
+    assertEquals(0, frozen.replayed());
+  }
+}
@@ -1,7 +1,9 @@
 package CCGInduction.utils;
 
 import CCGInduction.data.JSON.JSONFormat;
+import CCGInduction.data.JSON.WordObj;
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import junit.framework.TestCase;
 import org.junit.Rule;
 import org.junit.rules.TemporaryFolder;
@@ -10,11 +12,13 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.List;
 
 public class JSONFormatTest extends TestCase {
   @Rule
   public final TemporaryFolder testFolder = new TemporaryFolder();
   private static ArrayList<JSONFormat> AUTOJSON, NAACLJSON;
+  private static ArrayList<String> serialized;
 
   public void setUp() throws Exception {
     testFolder.create();
@@ -165,6 +169,11 @@ public class JSONFormatTest extends TestCase {
     NAACLJSON = new ArrayList<>(2);
     NAACLJSON.add(gson.fromJson(NAACLserialized1, JSONFormat.class));
     NAACLJSON.add(gson.fromJson(NAACLserialized2, JSONFormat.class));
+    serialized = new ArrayList<>(4);
+    serialized.add(AUTOserialized1);
+    serialized.add(AUTOserialized2);
+    serialized.add(NAACLserialized1);
+    serialized.add(NAACLserialized2);
   }
 
   public void testReadAUTO() throws Exception {
@@ -182,4 +191,56 @@ public class JSONFormatTest extends TestCase {
     assertTrue(read.get(0).equals(NAACLJSON.get(0)));
     assertTrue(read.get(1).equals(NAACLJSON.get(1)));
   }
-}
\ No newline at end of file
+
+  public void testCodecMatchesGson() throws Exception {
+    Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+    JSONFormat quoted = new JSONFormat();
+    quoted.addWord("\"<a href='x'>\"", "\u00e9\u2028", "CD", null, "NUM", new String[]{"N\\N", null}, "O");
+    quoted.addWord("42", "forty-two", "CD", "C", "NUM", "N", null);
+    quoted.sentence = "tab\tnew\nline";
+    quoted.negationCount = 3;
+    serialized.add(gson.toJson(quoted));
+    for (String line : serialized) {
+      JSONFormat expected = gson.fromJson(line, JSONFormat.class);
+      JSONFormat read = JSONFormat.deSerialize(line);
+      assertEquals(expected, read);
+      assertEquals(expected.negationCount, read.negationCount);
+
+      String written = read.toString();
+      // Numbers are written as their lemma, without modifying the words
+      assertEquals(expected, read);
+      for (WordObj word : expected.words) {
+        if (word.lemma != null && ("NUM".equals(word.upos) || "CD".equals(word.pos))) {
+          word.word = word.lemma;
+          word.lemma = null;
+        }
+      }
+      assertEquals(gson.toJson(expected), written);
+    }
+  }
+
+  /**
+   * The converter writes words exactly as Gson did, numbers included
+   * @throws Exception
+   */
+  public void testConverterMatchesGson() throws Exception {
+    File conll = testFolder.newFile("numbers.naacl");
+    OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(conll), "UTF-8");
+    writer.write(
+    "1       Two     two     CD      CD      NUM     _       _       _\n" +
+    "2       dogs    dog     NN      NNS     NOUN    _       _       _\n" +
+    "3       barked  bark    VB      VBD     VERB    _       _       _\n");
+    writer.write("\n");
+    writer.close();
+
+    JSONFormat.main(new String[] {"NAACL", conll.getPath()});
+    Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+    ArrayList<JSONFormat> expected = JSONFormat.readCoNLL(conll.getPath(), true);
+    List<String> written = TextFile.Read(conll.getPath() + ".json.gz");
+    assertEquals(expected.size(), written.size());
+    for (int i = 0; i < expected.size(); ++i) {
+      assertEquals(gson.toJson(expected.get(i)), written.get(i));
+    }
+    assertTrue(written.get(0).contains("\"word\":\"Two\",\"lemma\":\"two\""));
+  }
+}
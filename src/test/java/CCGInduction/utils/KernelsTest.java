@@ -0,0 +1,63 @@
+package CCGInduction.utils;
+
+import CCGInduction.learning.DoubleArray;
+import CCGInduction.utils.Math.Kernels;
+import CCGInduction.utils.Math.Log;
+import CCGInduction.utils.Math.Sample;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class KernelsTest extends TestCase {
+  private final Random random = new Random(20150213);
+
+  private double[] logValues(int n) {
+    double[] values = new double[n];
+    for (int i = 0; i < n; ++i) {
+      values[i] = -random.nextDouble() * 50;
+    }
+    return values;
+  }
+
+  public void testLogSumExp() throws Exception {
+    for (int n = 1; n < 20; ++n) {
+      double[] values = logValues(n);
+      double folded = Log.ZERO;
+      for (double v : values) {
+        folded = Log.sloppy_add(folded, v);
+      }
+      assertEquals(folded, Kernels.logSumExp(values), 1e-12);
+    }
+    assertEquals(Log.ZERO, Kernels.logSumExp(new double[] {Log.ZERO, Log.ZERO}));
+  }
+
+  public void testLogNormalize() throws Exception {
+    double[] values = logValues(13);
+    values[4] = Log.ZERO;
+    Kernels.logNormalize(values, 0, values.length);
+    assertEquals(Log.ONE, Kernels.logSumExp(values), 1e-12);
+    assertEquals(Log.ZERO, values[4]);
+  }
+
+  public void testProdKeepsOrder() throws Exception {
+    DoubleArray array = new DoubleArray();
+    double[] values = logValues(10);
+    double sum = 0.0;
+    for (double v : values) {
+      array.add(v);
+      sum += v;
+    }
+    assertEquals(sum, array.prod(), 1e-9);
+    assertEquals(Arrays.toString(values), array.toString());
+  }
+
+  public void testDigamma() throws Exception {
+    double[] values = new double[] {-800, -3, -0.5, 0.0, 1.0, 2.5, 7.0};
+    double[] out = new double[values.length];
+    Kernels.digamma(values, out, values.length);
+    for (int i = 0; i < values.length; ++i) {
+      assertEquals(Sample.digamma(values[i]), out[i]);
+    }
+  }
+}
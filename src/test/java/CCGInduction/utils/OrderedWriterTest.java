@@ -0,0 +1,80 @@
+package CCGInduction.utils;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.File;
+
+public class OrderedWriterTest extends TestCase {
+
+  /**
+   * Records handed over out of order are written in index order, and a
+   * producer too far ahead of the writer waits until the gap is filled
+   * @throws Exception
+   */
+  public void testOutOfOrder() throws Exception {
+    File first = File.createTempFile("OrderedWriter", ".txt");
+    File second = File.createTempFile("OrderedWriter", ".txt");
+    final OrderedWriter writer = new OrderedWriter(new String[] {first.getPath(), second.getPath()}, 2);
+
+    // 3 is more than capacity ahead of 0, so its producer must block
+    final Exception[] failed = new Exception[1];
+    Thread ahead = new Thread(() -> {
+      try {
+        writer.put(3, "3", "three");
+      } catch (Exception e) {
+        failed[0] = e;
+      }
+    });
+    ahead.start();
+    while (ahead.getState() != Thread.State.WAITING) {
+      assertTrue(ahead.isAlive());
+      Thread.sleep(1);
+    }
+
+    writer.put(1, "1", null);
+    writer.put(0, "0", "zero");
+    writer.put(2, "2", null);
+    ahead.join(10000);
+    assertFalse("Producer still blocked", ahead.isAlive());
+    assertNull(failed[0]);
+    writer.put(5, "5", "five");
+    writer.put(4, "4", null);
+    writer.close();
+
+    assertEquals("0 1 2 3 4 5", read(first));
+    assertEquals("zero three five", read(second));
+    first.delete();
+    second.delete();
+  }
+
+  /**
+   * Closing with a record missing reports it rather than dropping the rest
+   * @throws Exception
+   */
+  public void testMissing() throws Exception {
+    File file = File.createTempFile("OrderedWriter", ".txt");
+    OrderedWriter writer = new OrderedWriter(new String[] {file.getPath()}, 4);
+    writer.put(0, "0");
+    writer.put(2, "2");
+    try {
+      writer.close();
+      fail("Missing record not reported");
+    } catch (Exception e) {
+      assertTrue(e.getMessage().startsWith("Not empty: 1"));
+    }
+    assertEquals("0", read(file));
+    file.delete();
+  }
+
+  private static String read(File file) throws Exception {
+    BufferedReader reader = TextFile.Reader(file.getPath());
+    StringBuilder lines = new StringBuilder();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      lines.append(lines.length() == 0 ? "" : " ").append(line);
+    }
+    reader.close();
+    return lines.toString();
+  }
+}
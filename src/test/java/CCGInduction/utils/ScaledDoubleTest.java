@@ -0,0 +1,41 @@
+package CCGInduction.utils;
+
+import CCGInduction.utils.Math.Log;
+import CCGInduction.utils.Math.ScaledDouble;
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+public class ScaledDoubleTest extends TestCase {
+
+  public void testFromLog() throws Exception {
+    for (double v : new double[] {0.0, -1e-12, -0.5, -1.0, -745.2, -3000.0}) {
+      ScaledDouble scaled = ScaledDouble.fromLog(v);
+      assertEquals(v, scaled.log(), 1e-12);
+      assertTrue(scaled.mantissa() >= 1.0 && scaled.mantissa() < 2.0);
+    }
+    assertTrue(ScaledDouble.fromLog(Log.ZERO).isZero());
+    assertEquals(Log.ZERO, new ScaledDouble().log());
+  }
+
+  public void testAgainstLogSpace() throws Exception {
+    // Sums of products far below Double.MIN_VALUE, as in long sentences
+    Random random = new Random(20150501);
+    for (int trial = 0; trial < 100; ++trial) {
+      double logSum = Log.ZERO;
+      ScaledDouble sum = new ScaledDouble();
+      for (int term = 0; term < 50; ++term) {
+        double a = -random.nextDouble() * 1000;
+        double b = -random.nextDouble() * 1000;
+        logSum = Log.add(logSum, Log.mul(a, b));
+        ScaledDouble A = ScaledDouble.fromLog(a);
+        ScaledDouble B = ScaledDouble.fromLog(b);
+        sum.add(A.mantissa() * B.mantissa(), A.exponent() + B.exponent());
+      }
+      assertEquals(logSum, sum.log(), 1e-9 * Math.abs(logSum));
+
+      ScaledDouble part = ScaledDouble.fromLog(logSum - 3.0);
+      assertEquals(-3.0, sum.logRatio(part.mantissa(), part.exponent()), 1e-9);
+    }
+  }
+}